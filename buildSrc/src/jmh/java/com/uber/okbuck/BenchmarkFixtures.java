@@ -0,0 +1,100 @@
+package com.uber.okbuck;
+
+import com.google.common.hash.Hashing;
+import com.google.common.io.MoreFiles;
+import com.google.common.io.RecursiveDeleteOption;
+import com.uber.okbuck.core.dependency.DependencyFactory;
+import com.uber.okbuck.core.dependency.ExternalDependency;
+import com.uber.okbuck.core.util.ProjectUtil;
+import com.uber.okbuck.extension.ExternalDependenciesExtension;
+import com.uber.okbuck.extension.OkBuckExtension;
+import com.uber.okbuck.extension.ResolutionAction;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Field;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.jar.JarOutputStream;
+import java.util.zip.ZipEntry;
+import org.gradle.api.Project;
+import org.gradle.testfixtures.ProjectBuilder;
+
+/** Synthetic projects and dependencies the benchmarks run against. */
+public final class BenchmarkFixtures {
+
+  /** Number of artifacts per maven group, which share a directory in the external cache. */
+  private static final int DEPENDENCIES_PER_GROUP = 10;
+
+  private BenchmarkFixtures() {}
+
+  /** Creates a root project in the given directory with okbuck applied. */
+  public static Project okbuckProject(File rootDir) {
+    Project project = ProjectBuilder.builder().withProjectDir(rootDir).build();
+    project.getPluginManager().apply(OkBuckGradlePlugin.class);
+    return project;
+  }
+
+  /**
+   * Creates external dependencies backed by small jars laid out like the gradle cache, ex.
+   * group/name/version/sha1/name-version.jar.
+   *
+   * @param project The root project with okbuck applied
+   * @param count The number of dependencies to create
+   * @return The dependencies, ordered by index
+   */
+  public static List<ExternalDependency> externalDependencies(Project project, int count)
+      throws IOException {
+    OkBuckExtension okbuckExt = ProjectUtil.getOkBuckExtension(project);
+    File gradleCache = new File(project.getBuildDir(), "gradle-cache");
+
+    List<ExternalDependency> dependencies = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      String group = "com.example.group" + i / DEPENDENCIES_PER_GROUP;
+      String name = "lib" + i;
+      String version = "1.0." + i % 7;
+      String sha1 = Hashing.sha1().hashInt(i).toString();
+      String jarName = name + "-" + version + ".jar";
+      File jar =
+          new File(gradleCache, String.join(File.separator, group, name, version, sha1, jarName));
+      writeJar(jar, name);
+      dependencies.add(
+          DependencyFactory.from(
+              group,
+              name,
+              version,
+              jar,
+              null,
+              okbuckExt.getExternalDependenciesExtension(),
+              okbuckExt.getJetifierExtension()));
+    }
+    return dependencies;
+  }
+
+  /** Sets the resolution action of external dependencies, ex. "all", "latest" or "single". */
+  public static void setResolutionAction(ExternalDependenciesExtension extension, String action) {
+    try {
+      // The extension is only configured through the gradle dsl
+      Field field = ExternalDependenciesExtension.class.getDeclaredField("resolutionAction");
+      field.setAccessible(true);
+      field.set(extension, ResolutionAction.valueOf(action.toUpperCase(Locale.ROOT)));
+    } catch (ReflectiveOperationException e) {
+      throw new IllegalStateException("Could not set resolution action " + action, e);
+    }
+  }
+
+  public static void delete(File dir) throws IOException {
+    MoreFiles.deleteRecursively(dir.toPath(), RecursiveDeleteOption.ALLOW_INSECURE);
+  }
+
+  private static void writeJar(File jar, String name) throws IOException {
+    Files.createDirectories(jar.getParentFile().toPath());
+    try (OutputStream out = Files.newOutputStream(jar.toPath());
+        JarOutputStream jarOut = new JarOutputStream(out)) {
+      jarOut.putNextEntry(new ZipEntry("com/example/" + name + "/Empty.class"));
+      jarOut.closeEntry();
+    }
+  }
+}
@@ -0,0 +1,71 @@
+package com.uber.okbuck.composer.base;
+
+import com.uber.okbuck.BenchmarkFixtures;
+import com.uber.okbuck.core.dependency.ExternalDependency;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/** Benchmarks composing the targets of the external dependencies of every module. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class BuckRuleComposerBenchmark {
+
+  @Param({"10", "100"})
+  public int moduleCount;
+
+  @Param({"10", "100", "1000"})
+  public int depCount;
+
+  private File rootDir;
+  private List<Set<ExternalDependency>> moduleDependencies;
+
+  @Setup(Level.Trial)
+  public void setup() throws IOException {
+    rootDir = Files.createTempDirectory("okbuck-jmh").toFile();
+    List<ExternalDependency> dependencies =
+        BenchmarkFixtures.externalDependencies(
+            BenchmarkFixtures.okbuckProject(rootDir), moduleCount + depCount);
+
+    moduleDependencies = new ArrayList<>(moduleCount);
+    for (int module = 0; module < moduleCount; module++) {
+      moduleDependencies.add(
+          new LinkedHashSet<>(dependencies.subList(module, module + depCount)));
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    BenchmarkFixtures.delete(rootDir);
+  }
+
+  @Benchmark
+  public void external(Blackhole blackhole) {
+    for (Set<ExternalDependency> dependencies : moduleDependencies) {
+      blackhole.consume(BuckRuleComposer.external(dependencies));
+    }
+  }
+}
@@ -0,0 +1,91 @@
+package com.uber.okbuck.core.dependency;
+
+import com.uber.okbuck.BenchmarkFixtures;
+import com.uber.okbuck.core.util.ProjectUtil;
+import com.uber.okbuck.extension.OkBuckExtension;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.gradle.api.Project;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks creating the dependency model of a run, where every configuration resolves the same
+ * external dependencies. Run it with the gc profiler to compare the memory used by the model, ex.
+ * -PjmhProfilers=gc.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class DependencyFactoryBenchmark {
+
+  @Param({"10", "100"})
+  public int configurationCount;
+
+  @Param({"100", "1000"})
+  public int depCount;
+
+  private File rootDir;
+  private OkBuckExtension okbuckExt;
+  private List<ExternalDependency> dependencies;
+
+  @Setup(Level.Trial)
+  public void setup() throws IOException {
+    rootDir = Files.createTempDirectory("okbuck-jmh").toFile();
+    Project project = BenchmarkFixtures.okbuckProject(rootDir);
+    okbuckExt = ProjectUtil.getOkBuckExtension(project);
+    dependencies = BenchmarkFixtures.externalDependencies(project, depCount);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    DependencyFactory.resetInternedDependencies();
+    BenchmarkFixtures.delete(rootDir);
+  }
+
+  /** Returns the dependencies of every configuration, as scopes hold on to them during a run. */
+  @Benchmark
+  public List<Set<ExternalDependency>> resolveConfigurations() {
+    DependencyFactory.resetInternedDependencies();
+    List<Set<ExternalDependency>> configurations = new ArrayList<>(configurationCount);
+    for (int configuration = 0; configuration < configurationCount; configuration++) {
+      Set<ExternalDependency> resolved = new HashSet<>();
+      for (ExternalDependency dependency : dependencies) {
+        ExternalDependency created =
+            DependencyFactory.from(
+                dependency.getGroup(),
+                dependency.getName(),
+                dependency.getVersion(),
+                dependency.getRealDependencyFile(),
+                null,
+                okbuckExt.getExternalDependenciesExtension(),
+                okbuckExt.getJetifierExtension());
+        created.getTargetName();
+        created.getTargetPath();
+        resolved.add(created);
+      }
+      configurations.add(resolved);
+    }
+    return configurations;
+  }
+}
@@ -0,0 +1,171 @@
+package com.uber.okbuck.core.manager;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.uber.okbuck.BenchmarkFixtures;
+import com.uber.okbuck.core.model.base.RuleType;
+import com.uber.okbuck.core.util.ProjectUtil;
+import com.uber.okbuck.template.core.Rule;
+import com.uber.okbuck.template.jvm.JvmRule;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.gradle.api.Project;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks rendering and writing the buck files of modules whose rules have large dependency
+ * lists. Each invocation processes the buck files of all modules.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class BuckFileManagerBenchmark {
+
+  @Param({"10", "100"})
+  public int moduleCount;
+
+  @Param({"10", "100", "1000"})
+  public int depCount;
+
+  private File rootDir;
+  private BuckFileManager buckFileManager;
+  private List<List<Rule>> moduleRules;
+  private List<List<Rule>> changedModuleRules;
+  private List<File> buckFiles;
+  private boolean changed;
+
+  @Setup(Level.Trial)
+  public void setup() throws IOException {
+    rootDir = Files.createTempDirectory("okbuck-jmh").toFile();
+    Project project = BenchmarkFixtures.okbuckProject(rootDir);
+    buckFileManager =
+        new BuckFileManager(ProjectUtil.getOkBuckExtension(project).getRuleOverridesExtension());
+
+    moduleRules = new ArrayList<>(moduleCount);
+    changedModuleRules = new ArrayList<>(moduleCount);
+    buckFiles = new ArrayList<>(moduleCount);
+    for (int module = 0; module < moduleCount; module++) {
+      moduleRules.add(rules(module, "1.8"));
+      changedModuleRules.add(rules(module, "1.7"));
+      buckFiles.add(new File(rootDir, "module" + module + File.separator + "BUCK"));
+    }
+    writeBuckFiles();
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    BenchmarkFixtures.delete(rootDir);
+  }
+
+  /** Regeneration where no buck file changed, which only compares contents. */
+  @Benchmark
+  public void writeUnchangedBuckFiles(Blackhole blackhole) {
+    for (int module = 0; module < moduleCount; module++) {
+      blackhole.consume(
+          buckFileManager.writeToBuckFile(moduleRules.get(module), buckFiles.get(module)));
+    }
+  }
+
+  /** Regeneration where every buck file changed and is rewritten. */
+  @Benchmark
+  public void writeChangedBuckFiles(Blackhole blackhole) {
+    changed = !changed;
+    List<List<Rule>> rules = changed ? changedModuleRules : moduleRules;
+    for (int module = 0; module < moduleCount; module++) {
+      blackhole.consume(buckFileManager.writeToBuckFile(rules.get(module), buckFiles.get(module)));
+    }
+  }
+
+  @Benchmark
+  public void renderRules(Blackhole blackhole) {
+    for (List<Rule> rules : moduleRules) {
+      for (Rule rule : rules) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        rule.render(out);
+        blackhole.consume(out.size());
+      }
+    }
+  }
+
+  @Benchmark
+  public void getLoadStatements(Blackhole blackhole) {
+    for (List<Rule> rules : moduleRules) {
+      blackhole.consume(buckFileManager.getLoadStatements(rules));
+    }
+  }
+
+  private void writeBuckFiles() {
+    for (int module = 0; module < moduleCount; module++) {
+      buckFileManager.writeToBuckFile(moduleRules.get(module), buckFiles.get(module));
+    }
+  }
+
+  private List<Rule> rules(int module, String sourceCompatibility) {
+    ImmutableSet.Builder<String> deps = ImmutableSet.builder();
+    ImmutableSet.Builder<String> aptDeps = ImmutableSet.builder();
+    for (int dep = 0; dep < depCount; dep++) {
+      deps.add(
+          String.format(
+              "//.okbuck/ext/com/example/group%d:lib%d.jar", (module + dep) / 10, module + dep));
+      if (dep % 10 == 0) {
+        aptDeps.add(String.format("//.okbuck/ext/com/example/processors:processor%d.jar", dep));
+      }
+    }
+    Set<String> dependencies = deps.build();
+    return ImmutableList.of(
+        jvmRule(
+            RuleType.ANDROID_MODULE,
+            "src_main",
+            dependencies,
+            aptDeps.build(),
+            sourceCompatibility),
+        jvmRule(
+            RuleType.JAVA_TEST, "test_main", dependencies, ImmutableSet.of(), sourceCompatibility));
+  }
+
+  private static Rule jvmRule(
+      RuleType ruleType,
+      String name,
+      Set<String> deps,
+      Set<String> aptDeps,
+      String sourceCompatibility) {
+    return new JvmRule()
+        .srcs(ImmutableSet.of("src/main/java"))
+        .exts(ruleType.getProperties())
+        .resources(ImmutableSet.of("src/main/resources"))
+        .sourceCompatibility(sourceCompatibility)
+        .targetCompatibility(sourceCompatibility)
+        .aptDeps(aptDeps)
+        .providedDeps(ImmutableSet.of())
+        .exportedDeps(ImmutableSet.of())
+        .testTargets(ImmutableSet.of())
+        .options(ImmutableMap.of())
+        .ruleType(ruleType.getBuckName())
+        .defaultVisibility()
+        .deps(deps)
+        .name(name);
+  }
+}
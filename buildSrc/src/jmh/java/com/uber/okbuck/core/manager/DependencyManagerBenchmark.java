@@ -0,0 +1,112 @@
+package com.uber.okbuck.core.manager;
+
+import com.uber.okbuck.BenchmarkFixtures;
+import com.uber.okbuck.OkBuckGradlePlugin;
+import com.uber.okbuck.core.annotation.AnnotationProcessorCache;
+import com.uber.okbuck.core.dependency.ExternalDependency;
+import com.uber.okbuck.core.dependency.VersionlessDependency;
+import com.uber.okbuck.core.util.ProjectUtil;
+import com.uber.okbuck.extension.OkBuckExtension;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.gradle.api.Project;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks the filter, validate and process steps of {@link DependencyManager} on a synthetic
+ * dependency map, as registered by modules that each depend on a random subset of the external
+ * dependencies. Updating the dependency graph is left out since it requires gradle resolution.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class DependencyManagerBenchmark {
+
+  private static final int DEPENDENCIES_PER_MODULE = 30;
+
+  @Param({"100", "1000"})
+  public int moduleCount;
+
+  @Param({"500", "5000"})
+  public int depCount;
+
+  @Param({"all", "latest", "single"})
+  public String resolutionAction;
+
+  private File rootDir;
+  private DependencyManager dependencyManager;
+  private Map<VersionlessDependency, Collection<ExternalDependency>> dependencyMap;
+
+  @Setup(Level.Trial)
+  public void setup() throws IOException {
+    rootDir = Files.createTempDirectory("okbuck-jmh").toFile();
+    Project project = BenchmarkFixtures.okbuckProject(rootDir);
+    OkBuckExtension okbuckExt = ProjectUtil.getOkBuckExtension(project);
+    BenchmarkFixtures.setResolutionAction(
+        okbuckExt.getExternalDependenciesExtension(), resolutionAction);
+
+    BuckFileManager buckFileManager = new BuckFileManager(okbuckExt.getRuleOverridesExtension());
+    OkBuckGradlePlugin plugin = ProjectUtil.getPlugin(project);
+    plugin.annotationProcessorCache =
+        new AnnotationProcessorCache(project, buckFileManager, ".okbuck/workspace/processor/BUCK");
+    dependencyManager = new DependencyManager(project, okbuckExt, buckFileManager);
+    plugin.dependencyManager = dependencyManager;
+
+    List<ExternalDependency> dependencies =
+        BenchmarkFixtures.externalDependencies(project, depCount);
+    Random random = new Random(depCount);
+    for (int module = 0; module < moduleCount; module++) {
+      for (int i = 0; i < DEPENDENCIES_PER_MODULE; i++) {
+        dependencyManager.addDependency(
+            dependencies.get(random.nextInt(dependencies.size())), random.nextInt(20) == 0);
+      }
+    }
+    // Every dependency is used by at least one module
+    dependencies.forEach(dependency -> dependencyManager.addDependency(dependency, false));
+
+    dependencyMap = dependencyManager.filterDependencies();
+    // Populate the external dependency cache so that processing measures regeneration
+    dependencyManager.processDependencies(dependencyMap);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    BenchmarkFixtures.delete(rootDir);
+  }
+
+  @Benchmark
+  public Map<VersionlessDependency, Collection<ExternalDependency>> filterDependencies() {
+    return dependencyManager.filterDependencies();
+  }
+
+  @Benchmark
+  public void validateDependencies() {
+    dependencyManager.validateDependencies(dependencyMap);
+  }
+
+  @Benchmark
+  public void processDependencies() {
+    dependencyManager.processDependencies(dependencyMap);
+  }
+}
@@ -0,0 +1,128 @@
+package com.uber.okbuck.core.manager;
+
+import com.uber.okbuck.BenchmarkFixtures;
+import com.uber.okbuck.core.dependency.ExternalDependency;
+import com.uber.okbuck.core.dependency.VersionlessDependency;
+import com.uber.okbuck.core.util.ProjectUtil;
+import com.uber.okbuck.extension.OkBuckExtension;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import org.gradle.api.Project;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks registering the dependencies of scopes with {@link DependencyManager} from many
+ * threads, as projects generating in parallel do. Each invocation registers the dependencies of
+ * one module. Runs with as many threads as there are processors, pick another count with
+ * -PjmhThreads.
+ *
+ * <p>Doubles as a stress test of the registry: after each iteration the registered dependencies
+ * and whether they skip prebuilt rules are checked against what the threads registered.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Threads(Threads.MAX)
+public class DependencyRegistryBenchmark {
+
+  private static final int DEPENDENCIES_PER_MODULE = 30;
+
+  @Param({"500", "5000"})
+  public int depCount;
+
+  private File rootDir;
+  private Project project;
+  private OkBuckExtension okbuckExt;
+  private List<ExternalDependency> dependencies;
+
+  private DependencyManager dependencyManager;
+  private AtomicIntegerArray registered;
+  private AtomicIntegerArray registeredWithPrebuilt;
+
+  @Setup(Level.Trial)
+  public void setup() throws IOException {
+    rootDir = Files.createTempDirectory("okbuck-jmh").toFile();
+    project = BenchmarkFixtures.okbuckProject(rootDir);
+    okbuckExt = ProjectUtil.getOkBuckExtension(project);
+    BenchmarkFixtures.setResolutionAction(okbuckExt.getExternalDependenciesExtension(), "all");
+    dependencies = BenchmarkFixtures.externalDependencies(project, depCount);
+  }
+
+  @Setup(Level.Iteration)
+  public void setupRegistry() {
+    dependencyManager =
+        new DependencyManager(
+            project, okbuckExt, new BuckFileManager(okbuckExt.getRuleOverridesExtension()));
+    registered = new AtomicIntegerArray(depCount);
+    registeredWithPrebuilt = new AtomicIntegerArray(depCount);
+  }
+
+  @TearDown(Level.Iteration)
+  public void verifyRegistry() {
+    Map<VersionlessDependency, Collection<ExternalDependency>> dependencyMap =
+        dependencyManager.filterDependencies();
+    int expected = 0;
+    for (int i = 0; i < depCount; i++) {
+      if (registered.get(i) == 0) {
+        continue;
+      }
+      expected++;
+      ExternalDependency dependency = dependencies.get(i);
+      Collection<ExternalDependency> versions = dependencyMap.get(dependency.getVersionless());
+      if (versions == null || versions.size() != 1 || !versions.contains(dependency)) {
+        throw new IllegalStateException("Lost the registration of " + dependency);
+      }
+      boolean skipsPrebuilt = registeredWithPrebuilt.get(i) == 0;
+      if (dependencyManager.skipsPrebuilt(dependency.getVersionless()) != skipsPrebuilt) {
+        throw new IllegalStateException("Wrong prebuilt state for " + dependency);
+      }
+    }
+    if (dependencyMap.size() != expected) {
+      throw new IllegalStateException(
+          "Registered " + dependencyMap.size() + " dependencies instead of " + expected);
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    BenchmarkFixtures.delete(rootDir);
+  }
+
+  @Benchmark
+  public void registerModule() {
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    for (int i = 0; i < DEPENDENCIES_PER_MODULE; i++) {
+      int index = random.nextInt(depCount);
+      // Some dependencies are mostly used by scopes that skip prebuilt rules
+      boolean skipPrebuilt = index % 10 == 0 && random.nextInt(50) != 0;
+      dependencyManager.addDependency(dependencies.get(index), skipPrebuilt);
+      registered.set(index, 1);
+      if (!skipPrebuilt) {
+        registeredWithPrebuilt.set(index, 1);
+      }
+    }
+  }
+}
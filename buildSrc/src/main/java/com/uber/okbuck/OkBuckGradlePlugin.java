@@ -1,12 +1,21 @@
 package com.uber.okbuck;
 
 import com.facebook.infer.annotation.Initializer;
+import com.google.common.base.CharMatcher;
+import com.google.common.base.Splitter;
+import com.google.common.base.Throwables;
 import com.google.common.collect.Sets;
 import com.uber.okbuck.core.annotation.AnnotationProcessorCache;
+import com.uber.okbuck.core.dependency.ConfigurationResolver;
 import com.uber.okbuck.core.dependency.DependencyCache;
+import com.uber.okbuck.core.dependency.DependencyFactory;
+import com.uber.okbuck.core.dependency.JarServicesIndex;
+import com.uber.okbuck.core.dependency.ResolutionCache;
 import com.uber.okbuck.core.manager.BuckFileManager;
 import com.uber.okbuck.core.manager.BuckManager;
 import com.uber.okbuck.core.manager.DependencyManager;
+import com.uber.okbuck.core.manager.FinalizeScheduler;
+import com.uber.okbuck.core.manager.FingerprintManager;
 import com.uber.okbuck.core.manager.GroovyManager;
 import com.uber.okbuck.core.manager.JetifierManager;
 import com.uber.okbuck.core.manager.KotlinManager;
@@ -15,14 +24,15 @@ import com.uber.okbuck.core.manager.ManifestMergerManager;
 import com.uber.okbuck.core.manager.RobolectricManager;
 import com.uber.okbuck.core.manager.ScalaManager;
 import com.uber.okbuck.core.manager.TransformManager;
-import com.uber.okbuck.core.model.base.ProjectType;
 import com.uber.okbuck.core.task.OkBuckCleanTask;
 import com.uber.okbuck.core.task.OkBuckTask;
 import com.uber.okbuck.core.util.D8Util;
 import com.uber.okbuck.core.util.FileUtil;
-import com.uber.okbuck.core.util.MoreCollectors;
+import com.uber.okbuck.core.util.HeapMonitor;
+import com.uber.okbuck.core.util.OutputManifest;
 import com.uber.okbuck.core.util.ProjectCache;
-import com.uber.okbuck.core.util.ProjectUtil;
+import com.uber.okbuck.core.util.Tracer;
+import com.uber.okbuck.extension.ExperimentalExtension;
 import com.uber.okbuck.extension.KotlinExtension;
 import com.uber.okbuck.extension.OkBuckExtension;
 import com.uber.okbuck.extension.ScalaExtension;
@@ -32,19 +42,22 @@ import com.uber.okbuck.template.common.ExportFile;
 import com.uber.okbuck.template.core.Rule;
 import com.uber.okbuck.wrapper.BuckWrapperTask;
 import java.io.File;
-import java.io.FileOutputStream;
-import java.io.IOException;
-import java.io.OutputStream;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import org.gradle.api.Plugin;
 import org.gradle.api.Project;
 import org.gradle.api.Task;
 import org.gradle.api.artifacts.Configuration;
+import org.gradle.api.logging.Logger;
 
 // Dependency Tree
 //
@@ -95,11 +108,22 @@ public class OkBuckGradlePlugin implements Plugin<Project> {
 
   public static final String OKBUCK_STATE = OKBUCK_STATE_DIR + "/STATE";
   public static final String OKBUCK_SHA256 = OKBUCK_STATE_DIR + "/SHA256";
+  public static final String OKBUCK_FINGERPRINTS = OKBUCK_STATE_DIR + "/FINGERPRINTS";
+  public static final String OKBUCK_SERVICES = OKBUCK_STATE_DIR + "/SERVICES";
+  public static final String OKBUCK_OUTPUTS = OKBUCK_STATE_DIR + "/OUTPUTS";
+  public static final String OKBUCK_RESOLUTIONS = OKBUCK_STATE_DIR + "/RESOLUTIONS";
+
+  private static final String TRACE_DIR = OKBUCK + "/trace";
+
+  /** Projects whose inputs changed since the last run, see {@link #regenerateOnly}. */
+  private static final String OKBUCK_CHANGED = "okbuck.changed";
 
   public final Set<String> exportedPaths = Sets.newConcurrentHashSet();
 
   public DependencyCache depCache;
+  public ConfigurationResolver configurationResolver;
   public DependencyManager dependencyManager;
+  public JarServicesIndex jarServicesIndex;
   public AnnotationProcessorCache annotationProcessorCache;
   public LintManager lintManager;
   public KotlinManager kotlinManager;
@@ -107,6 +131,8 @@ public class OkBuckGradlePlugin implements Plugin<Project> {
   public GroovyManager groovyManager;
   public JetifierManager jetifierManager;
   public TransformManager transformManager;
+  public FingerprintManager fingerprintManager;
+  public ResolutionCache resolutionCache;
 
   ManifestMergerManager manifestMergerManager;
   RobolectricManager robolectricManager;
@@ -118,6 +144,9 @@ public class OkBuckGradlePlugin implements Plugin<Project> {
   @Override
   public void apply(Project rootProject) {
 
+    // Peak heap usage is reported per run, even when the daemon is reused
+    HeapMonitor.start();
+
     // Create extensions
     OkBuckExtension okbuckExt =
         rootProject.getExtensions().create(OKBUCK, OkBuckExtension.class, rootProject);
@@ -148,9 +177,17 @@ public class OkBuckGradlePlugin implements Plugin<Project> {
           annotationProcessorCache =
               new AnnotationProcessorCache(rootBuckProject, buckFileManager, PROCESSOR_BUCK_FILE);
 
+          // Create configuration resolver
+          configurationResolver = new ConfigurationResolver();
+
           // Create Dependency manager
           dependencyManager = new DependencyManager(rootBuckProject, okbuckExt, buckFileManager);
 
+          // Create jar services index
+          jarServicesIndex =
+              new JarServicesIndex(
+                  rootBuckProject.file(OKBUCK_SERVICES), dependencyManager.getSha256Cache());
+
           // Create Lint Manager
           lintManager = new LintManager(rootBuckProject, LINT_BUCK_FILE, buckFileManager);
 
@@ -178,6 +215,15 @@ public class OkBuckGradlePlugin implements Plugin<Project> {
           // Create Manifest Merger Manager
           manifestMergerManager = new ManifestMergerManager(rootBuckProject, buckFileManager);
 
+          // Create Fingerprint Manager
+          fingerprintManager =
+              new FingerprintManager(
+                  rootBuckProject, okbuckExt, buckFileManager, OKBUCK_FINGERPRINTS);
+
+          // Create resolution cache
+          resolutionCache =
+              new ResolutionCache(rootBuckProject, fingerprintManager, OKBUCK_RESOLUTIONS);
+
           KotlinExtension kotlin = okbuckExt.getKotlinExtension();
           ScalaExtension scala = okbuckExt.getScalaExtension();
 
@@ -188,18 +234,37 @@ public class OkBuckGradlePlugin implements Plugin<Project> {
           rootOkBuckTask.dependsOn(setupOkbuck);
           rootOkBuckTask.doLast(
               task -> {
-                annotationProcessorCache.finalizeProcessors();
-                dependencyManager.finalizeDependencies();
-                jetifierManager.finalizeDependencies();
-                lintManager.finalizeDependencies();
-                kotlinManager.finalizeDependencies();
-                scalaManager.finalizeDependencies();
-                groovyManager.finalizeDependencies();
-                robolectricManager.finalizeDependencies();
-                transformManager.finalizeDependencies();
-                buckManager.finalizeDependencies();
-                manifestMergerManager.finalizeDependencies();
-                writeExportedFileRules(rootBuckProject, okbuckExt);
+                if (okbuckExt.getExperimentalExtension().parallelGeneration) {
+                  generateBuckFiles(okbuckExt, buckFileManager);
+                }
+                reportResolution(rootBuckProject);
+                finalizeManagers(rootBuckProject, okbuckExt);
+                Tracer.trace(
+                    "finalize",
+                    "exportedFiles",
+                    () -> writeExportedFileRules(rootBuckProject, buckFileManager));
+                Tracer.trace(
+                    "finalize", "BuckFileManager", buckFileManager::finalizeDeferredBuckFiles);
+                Tracer.trace(
+                    "finalize", "FingerprintManager", fingerprintManager::finalizeFingerprints);
+                try (Tracer.Span ignored = Tracer.span("finalize", "OutputManifest")) {
+                  rootBuckProject
+                      .getLogger()
+                      .info("okbuck: {} stale output(s) deleted", OutputManifest.finish());
+                }
+                rootBuckProject
+                    .getLogger()
+                    .info(
+                        "okbuck: {} buck file(s) written, {} buck file(s) unchanged",
+                        buckFileManager.getWrittenFileCount(),
+                        buckFileManager.getSkippedFileCount());
+                rootBuckProject
+                    .getLogger()
+                    .info(
+                        "okbuck: {} external dependency instance(s) shared by {} lookup(s)",
+                        DependencyFactory.getInternedCount(),
+                        DependencyFactory.getRequestCount());
+                reportPeakHeap(rootBuckProject);
 
                 // Reset root project's scope cache at the very end
                 ProjectCache.resetScopeCache(rootProject);
@@ -209,6 +274,15 @@ public class OkBuckGradlePlugin implements Plugin<Project> {
                 // the target cache is accessed by other projects and have to
                 // be available until okbuck tasks of all the projects finishes.
                 ProjectCache.resetTargetCacheForAll(rootProject);
+
+                FileUtil.resetAvailableCache();
+                DependencyFactory.resetInternedDependencies();
+
+                if (Tracer.isEnabled()) {
+                  File traceDir = new File(rootBuckProject.getBuildDir(), TRACE_DIR);
+                  Tracer.finish(traceDir);
+                  rootBuckProject.getLogger().lifecycle("okbuck: trace written to {}", traceDir);
+                }
               });
 
           WrapperExtension wrapper = okbuckExt.getWrapperExtension();
@@ -255,50 +329,92 @@ public class OkBuckGradlePlugin implements Plugin<Project> {
           // Configure setup task
           setupOkbuck.doLast(
               task -> {
-                // Init all project's target cache at the very start since a project
-                // can access other project's target cache. Hence, all target cache
-                // needs to be initialized before any okbuck task starts.
-                ProjectCache.initTargetCacheForAll(rootProject);
-
-                // Init root project's scope cache.
-                ProjectCache.initScopeCache(rootProject);
-
-                depCache = new DependencyCache(rootBuckProject, dependencyManager, FORCED_OKBUCK);
-
-                // Fetch Lint deps if needed
-                if (!okbuckExt.getLintExtension().disabled
-                    && okbuckExt.getLintExtension().version != null) {
-                  lintManager.fetchLintDeps(okbuckExt.getLintExtension().version);
-                }
-
-                // Fetch transform deps if needed
-                if (!okbuckExt.getTransformExtension().transforms.isEmpty()) {
-                  transformManager.fetchTransformDeps();
+                if (okbuckExt.getExperimentalExtension().trace) {
+                  Tracer.start();
+                } else {
+                  // A failed traced run in the same daemon may have left its recording behind
+                  Tracer.stop();
                 }
-
-                // Setup d8 deps
-                D8Util.copyDeps(buckFileManager);
-
-                // Fetch robolectric deps if needed
-                if (okbuckExt.getTestExtension().robolectric) {
-                  robolectricManager.download();
-                }
-
-                if (JetifierManager.isJetifierEnabled(rootProject)) {
-                  jetifierManager.setupJetifier(okbuckExt.getJetifierExtension().version);
+                try (Tracer.Span ignored = Tracer.span("setup", "setupOkbuck")) {
+                  // Init all project's target cache at the very start since a project
+                  // can access other project's target cache. Hence, all target cache
+                  // needs to be initialized before any okbuck task starts.
+                  ProjectCache.initTargetCacheForAll(rootProject);
+
+                  // Directories may have changed since the last run in this daemon
+                  FileUtil.resetAvailableCache();
+                  DependencyFactory.resetInternedDependencies();
+
+                  // Record everything this run generates to remove what it no longer does
+                  OutputManifest.start(
+                      rootProject.getProjectDir().toPath(),
+                      rootBuckProject.file(OKBUCK_OUTPUTS).toPath());
+
+                  Object changed = rootProject.findProperty(OKBUCK_CHANGED);
+                  if (changed != null) {
+                    regenerateOnly(rootBuckProject, okbuckExt, changed.toString());
+                  }
+
+                  // Init root project's scope cache.
+                  ProjectCache.initScopeCache(rootProject);
+
+                  Tracer.trace(
+                      "setup",
+                      "forcedDependencies",
+                      () ->
+                          depCache =
+                              new DependencyCache(
+                                  rootBuckProject, dependencyManager, FORCED_OKBUCK));
+
+                  // Fetch Lint deps if needed
+                  if (!okbuckExt.getLintExtension().disabled
+                      && okbuckExt.getLintExtension().version != null) {
+                    Tracer.trace(
+                        "setup",
+                        "lint",
+                        () -> lintManager.fetchLintDeps(okbuckExt.getLintExtension().version));
+                  }
+
+                  // Fetch transform deps if needed
+                  if (!okbuckExt.getTransformExtension().transforms.isEmpty()) {
+                    Tracer.trace("setup", "transform", transformManager::fetchTransformDeps);
+                  }
+
+                  // Setup d8 deps
+                  Tracer.trace("setup", "d8", () -> D8Util.copyDeps(buckFileManager));
+
+                  // Fetch robolectric deps if needed
+                  if (okbuckExt.getTestExtension().robolectric) {
+                    Tracer.trace("setup", "robolectric", robolectricManager::download);
+                  }
+
+                  if (JetifierManager.isJetifierEnabled(rootProject)) {
+                    Tracer.trace(
+                        "setup",
+                        "jetifier",
+                        () ->
+                            jetifierManager.setupJetifier(
+                                okbuckExt.getJetifierExtension().version));
+                  }
+
+                  extraConfigurations.forEach(
+                      (cacheName, extraConfiguration) ->
+                          Tracer.trace(
+                              "setup",
+                              "extraDepCache " + cacheName,
+                              () ->
+                                  new DependencyCache(
+                                          rootBuckProject,
+                                          dependencyManager,
+                                          okbuckExt.extraDepCachesMap.getOrDefault(
+                                              cacheName, false))
+                                      .build(extraConfiguration)));
+
+                  Tracer.trace("setup", "buck", buckManager::setupBuckBinary);
+
+                  Tracer.trace(
+                      "setup", "manifestMerger", manifestMergerManager::fetchManifestMergerDeps);
                 }
-
-                extraConfigurations.forEach(
-                    (cacheName, extraConfiguration) ->
-                        new DependencyCache(
-                                rootBuckProject,
-                                dependencyManager,
-                                okbuckExt.extraDepCachesMap.getOrDefault(cacheName, false))
-                            .build(extraConfiguration));
-
-                buckManager.setupBuckBinary();
-
-                manifestMergerManager.fetchManifestMergerDeps();
               });
 
           // Create clean task
@@ -320,13 +436,10 @@ public class OkBuckGradlePlugin implements Plugin<Project> {
                     Task okbuckProjectTask = bp.getTasks().maybeCreate(OKBUCK);
                     okbuckProjectTask.doLast(
                         task -> {
-                          ProjectCache.initScopeCache(bp);
-                          BuckFileGenerator.generate(
-                              bp,
-                              buckFileManager,
-                              okbuckExt.getVisibilityExtension(),
-                              okbuckExt.getTestExtension());
-                          ProjectCache.resetScopeCache(bp);
+                          // The root okbuck task generates all projects in parallel mode
+                          if (!okbuckExt.getExperimentalExtension().parallelGeneration) {
+                            generateBuckFile(bp, okbuckExt, buckFileManager);
+                          }
                         });
                     okbuckProjectTask.dependsOn(setupOkbuck);
                     okBuckClean.dependsOn(okbuckProjectTask);
@@ -334,20 +447,214 @@ public class OkBuckGradlePlugin implements Plugin<Project> {
         });
   }
 
-  private void writeExportedFileRules(Project rootBuckProject, OkBuckExtension okBuckExtension) {
-    Set<String> currentProjectPaths =
+  private void generateBuckFile(
+      Project project, OkBuckExtension okBuckExtension, BuckFileManager buckFileManager) {
+    ProjectCache.initScopeCache(project);
+    try (Tracer.Span ignored = Tracer.span("generate", project.getPath())) {
+      generateOrReuseBuckFile(project, okBuckExtension, buckFileManager);
+    }
+    ProjectCache.resetScopeCache(project);
+  }
+
+  private void generateOrReuseBuckFile(
+      Project project, OkBuckExtension okBuckExtension, BuckFileManager buckFileManager) {
+    if (!fingerprintManager.reuse(project)) {
+      fingerprintManager.generate(
+          project,
+          () ->
+              BuckFileGenerator.generate(
+                  project,
+                  buckFileManager,
+                  okBuckExtension.getVisibilityExtension(),
+                  okBuckExtension.getTestExtension()));
+    }
+  }
+
+  /**
+   * Generates the buck files of all projects on a bounded work stealing pool. Targets of all
+   * projects are built first since generating a project looks up the targets of the projects it
+   * depends on.
+   */
+  private void generateBuckFiles(OkBuckExtension okBuckExtension, BuckFileManager buckFileManager) {
+    List<Project> projects =
         okBuckExtension
             .buckProjects
             .stream()
-            .filter(project -> ProjectUtil.getType(project) != ProjectType.UNKNOWN)
-            .map(
-                project ->
-                    rootBuckProject
-                        .getProjectDir()
-                        .toPath()
-                        .relativize(project.getProjectDir().toPath())
-                        .toString())
-            .collect(MoreCollectors.toImmutableSet());
+            .filter(p -> p.getBuildFile().exists())
+            .collect(Collectors.toList());
+    int threads = Math.max(1, okBuckExtension.getExperimentalExtension().generationThreads);
+
+    if (okBuckExtension.getIntellijExtension().resolveSourcesInBackground()) {
+      dependencyManager.getSourcesResolver().resolveInBackground();
+    }
+
+    ForkJoinPool pool = new ForkJoinPool(threads);
+    try {
+      pool.submit(
+              () ->
+                  projects
+                      .parallelStream()
+                      .forEach(
+                          project ->
+                              Tracer.trace(
+                                  "targets",
+                                  project.getPath(),
+                                  () -> ProjectCache.getTargetCache(project).getTargets())))
+          .get();
+      pool.submit(
+              () ->
+                  projects
+                      .parallelStream()
+                      .forEach(
+                          project -> generateBuckFile(project, okBuckExtension, buckFileManager)))
+          .get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while generating buck files", e);
+    } catch (ExecutionException e) {
+      Throwables.throwIfUnchecked(e.getCause());
+      throw new IllegalStateException("Failed to generate buck files", e.getCause());
+    } finally {
+      pool.shutdown();
+      // Sources requested from now on are resolved when dependencies are finalized
+      dependencyManager.getSourcesResolver().stopBackground();
+    }
+  }
+
+  /**
+   * Limits the run to the changed projects given with -Pokbuck.changed and the projects that depend
+   * on them. Changed projects are given as a comma separated list of project paths, ex. ":app", or
+   * of project directories relative to the root project, ex. "app". All projects are checked as
+   * usual if any of them is unknown.
+   */
+  private void regenerateOnly(
+      Project rootBuckProject, OkBuckExtension okbuckExt, String changedProjects) {
+    Project rootProject = rootBuckProject.getRootProject();
+    Map<String, String> pathsByDir = new HashMap<>();
+    Stream.concat(Stream.of(rootProject), okbuckExt.buckProjects.stream())
+        .forEach(
+            project ->
+                pathsByDir.put(
+                    FileUtil.getRelativePath(rootProject.getProjectDir(), project.getProjectDir()),
+                    project.getPath()));
+
+    Set<String> changedPaths = new HashSet<>();
+    Splitter splitter = Splitter.on(',').trimResults().omitEmptyStrings();
+    for (String changed : splitter.split(changedProjects)) {
+      String path;
+      if (changed.startsWith(":")) {
+        Project project = rootProject.findProject(changed);
+        path = project != null ? project.getPath() : null;
+      } else {
+        path = pathsByDir.get(CharMatcher.is('/').trimTrailingFrom(changed));
+      }
+      if (path == null) {
+        rootBuckProject
+            .getLogger()
+            .lifecycle("okbuck: unknown changed project {}, checking all projects", changed);
+        return;
+      }
+      changedPaths.add(path);
+    }
+
+    int affected = fingerprintManager.regenerateOnly(changedPaths);
+    if (affected < 0) {
+      rootBuckProject
+          .getLogger()
+          .lifecycle("okbuck: no project graph recorded by a previous run, checking all projects");
+    } else {
+      rootBuckProject
+          .getLogger()
+          .lifecycle(
+              "okbuck: {} changed project(s), regenerating {} affected project(s)",
+              changedPaths.size(),
+              affected);
+    }
+  }
+
+  private static void reportPeakHeap(Project rootBuckProject) {
+    long peakHeapBytes = HeapMonitor.stop();
+    if (peakHeapBytes >= 0) {
+      rootBuckProject
+          .getLogger()
+          .info("okbuck: peak heap after gc {}MB", peakHeapBytes / (1024 * 1024));
+    }
+  }
+
+  /**
+   * Finalizes the managers once all projects are generated. Managers that don't depend on each
+   * other's output are finalized concurrently with parallel finalization.
+   */
+  private void finalizeManagers(Project rootBuckProject, OkBuckExtension okbuckExt) {
+    FinalizeScheduler scheduler =
+        new FinalizeScheduler()
+            // Scopes of processors can register dependencies and query the jar services index
+            .add("AnnotationProcessorCache", annotationProcessorCache::finalizeProcessors)
+            .add(
+                "DependencyManager",
+                dependencyManager::finalizeDependencies,
+                "AnnotationProcessorCache")
+            .add("JarServicesIndex", jarServicesIndex::persist, "AnnotationProcessorCache")
+            // Sources jars are resolved by the dependency manager and recorded with resolutions
+            .add("ResolutionCache", resolutionCache::persist, "DependencyManager")
+            .add("JetifierManager", jetifierManager::finalizeDependencies)
+            .add("LintManager", lintManager::finalizeDependencies)
+            .add("KotlinManager", kotlinManager::finalizeDependencies)
+            .add("ScalaManager", scalaManager::finalizeDependencies)
+            .add("GroovyManager", groovyManager::finalizeDependencies)
+            .add("RobolectricManager", robolectricManager::finalizeDependencies)
+            .add("TransformManager", transformManager::finalizeDependencies)
+            .add("BuckManager", buckManager::finalizeDependencies)
+            .add("ManifestMergerManager", manifestMergerManager::finalizeDependencies);
+
+    ExperimentalExtension experimental = okbuckExt.getExperimentalExtension();
+    long start = System.nanoTime();
+    scheduler.run(experimental.parallelFinalize ? experimental.generationThreads : 1);
+
+    Logger logger = rootBuckProject.getLogger();
+    logger.info(
+        "okbuck: {} jar(s) found in the services index, {} jar(s) scanned",
+        jarServicesIndex.getHitCount(),
+        jarServicesIndex.getMissCount());
+    logger.info(
+        "okbuck: {} configuration(s) restored from the resolution cache, "
+            + "{} configuration(s) resolved",
+        resolutionCache.getHitCount(),
+        resolutionCache.getMissCount());
+    logger.info(
+        "okbuck: managers finalized in {}ms, {}ms along the longest chain",
+        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start),
+        scheduler.getCriticalPathMillis());
+    scheduler
+        .getStepMillis()
+        .forEach((name, millis) -> logger.info("okbuck: {} finalized in {}ms", name, millis));
+  }
+
+  private void reportResolution(Project rootBuckProject) {
+    Map<String, Long> projectResolutionMillis = configurationResolver.getProjectResolutionMillis();
+    rootBuckProject
+        .getLogger()
+        .info(
+            "okbuck: {} configuration(s) resolved, {} shared an identical graph, {}ms resolving",
+            configurationResolver.getResolutionCount(),
+            configurationResolver.getSharedResolutionCount(),
+            projectResolutionMillis.values().stream().mapToLong(Long::longValue).sum());
+    projectResolutionMillis.forEach(
+        (path, millis) ->
+            rootBuckProject.getLogger().info("okbuck: {} spent {}ms resolving", path, millis));
+  }
+
+  /**
+   * Marks a file to be exported from the buck package that contains it.
+   *
+   * @param exportedPath path of the file relative to the root project.
+   */
+  public void addExportedPath(String exportedPath) {
+    exportedPaths.add(exportedPath);
+    FingerprintManager.recordExportedPath(exportedPath);
+  }
+
+  private void writeExportedFileRules(Project rootBuckProject, BuckFileManager buckFileManager) {
     Map<String, Set<Rule>> pathToRules = new HashMap<>();
     for (String exportedPath : exportedPaths) {
       File exportedFile = rootBuckProject.file(exportedPath);
@@ -360,16 +667,14 @@ public class OkBuckGradlePlugin implements Plugin<Project> {
     for (Map.Entry<String, Set<Rule>> entry : pathToRules.entrySet()) {
       File buckFile =
           rootBuckProject.getRootDir().toPath().resolve(entry.getKey()).resolve(BUCK).toFile();
-      try (OutputStream os =
-          new FileOutputStream(buckFile, currentProjectPaths.contains(entry.getKey()))) {
-        entry
-            .getValue()
-            .stream()
-            .sorted((rule1, rule2) -> rule1.name().compareToIgnoreCase(rule2.name()))
-            .forEach(rule -> rule.render(os));
-      } catch (IOException e) {
-        throw new RuntimeException(e);
-      }
+      // Appended to the project's buck file if there is one, otherwise written on their own
+      buckFileManager.appendToDeferredBuckFile(
+          buckFile,
+          entry
+              .getValue()
+              .stream()
+              .sorted((rule1, rule2) -> rule1.name().compareToIgnoreCase(rule2.name()))
+              .collect(Collectors.toList()));
     }
   }
 }
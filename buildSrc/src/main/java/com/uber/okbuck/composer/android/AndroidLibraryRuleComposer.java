@@ -92,7 +92,7 @@ public final class AndroidLibraryRuleComposer extends AndroidBuckRuleComposer {
         lintConfigPath =
             FileUtil.getRelativePath(
                 target.getRootProject().getProjectDir(), target.getLintOptions().getLintConfig());
-        ProjectUtil.getPlugin(target.getRootProject()).exportedPaths.add(lintConfigPath);
+        ProjectUtil.getPlugin(target.getRootProject()).addExportedPath(lintConfigPath);
       } else {
         lintConfigPath = null;
       }
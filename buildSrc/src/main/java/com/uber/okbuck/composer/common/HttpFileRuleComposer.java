@@ -2,10 +2,10 @@ package com.uber.okbuck.composer.common;
 
 import com.google.common.base.Preconditions;
 import com.uber.okbuck.core.dependency.ExternalDependency;
+import com.uber.okbuck.core.dependency.Sha256Cache;
 import com.uber.okbuck.template.common.HttpFile;
 import com.uber.okbuck.template.core.Rule;
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -18,15 +18,17 @@ public class HttpFileRuleComposer {
    * @return List of rules
    */
   public static List<Rule> compose(
-      Collection<ExternalDependency> dependencies, HashMap<String, String> shaSum256) {
+      Collection<ExternalDependency> dependencies, Sha256Cache sha256Cache) {
     return dependencies
         .stream()
         .sorted(ExternalDependency.compareByName)
         .map(
             dependency -> {
-              String sha256Key =
-                  ExternalDependency.getGradleSha(dependency.getRealDependencyFile());
-              String sha256 = Preconditions.checkNotNull(shaSum256.get(sha256Key));
+              String sha256 =
+                  Preconditions.checkNotNull(
+                      sha256Cache.get(dependency.getRealDependencyFile()),
+                      "Missing sha256 of %s",
+                      dependency.getRealDependencyFile());
 
               Rule rule =
                   new HttpFile()
@@ -7,11 +7,11 @@ import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableSet;
 import com.uber.okbuck.composer.jvm.JvmBuckRuleComposer;
 import com.uber.okbuck.core.dependency.ExternalDependency;
+import com.uber.okbuck.core.dependency.Sha256Cache;
 import com.uber.okbuck.core.model.base.RuleType;
 import com.uber.okbuck.template.core.Rule;
 import com.uber.okbuck.template.java.Prebuilt;
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -25,7 +25,7 @@ public class PrebuiltRuleComposer extends JvmBuckRuleComposer {
    */
   @SuppressWarnings("NullAway")
   public static List<Rule> compose(
-      Collection<ExternalDependency> dependencies, HashMap<String, String> shaSum256) {
+      Collection<ExternalDependency> dependencies, Sha256Cache sha256Cache) {
     return dependencies
         .stream()
         .peek(
@@ -37,9 +37,11 @@ public class PrebuiltRuleComposer extends JvmBuckRuleComposer {
         .sorted(ExternalDependency.compareByName)
         .map(
             dependency -> {
-              String sha256Key =
-                  ExternalDependency.getGradleSha(dependency.getRealDependencyFile());
-              String sha256 = Preconditions.checkNotNull(shaSum256.get(sha256Key));
+              String sha256 =
+                  Preconditions.checkNotNull(
+                      sha256Cache.get(dependency.getRealDependencyFile()),
+                      "Missing sha256 of %s",
+                      dependency.getRealDependencyFile());
 
               Prebuilt rule =
                   new Prebuilt()
@@ -51,9 +53,9 @@ public class PrebuiltRuleComposer extends JvmBuckRuleComposer {
                   .getRealSourceFile()
                   .ifPresent(
                       file -> {
-                        String sourcesSha256Key = ExternalDependency.getGradleSha(file);
                         String sourcesSha256 =
-                            Preconditions.checkNotNull(shaSum256.get(sourcesSha256Key));
+                            Preconditions.checkNotNull(
+                                sha256Cache.get(file), "Missing sha256 of %s", file);
                         rule.sourcesSha256(sourcesSha256);
                       });
 
@@ -6,6 +6,7 @@ import com.google.common.collect.ImmutableSet;
 import com.uber.okbuck.composer.java.JavaAnnotationProcessorRuleComposer;
 import com.uber.okbuck.core.dependency.DependencyUtils;
 import com.uber.okbuck.core.manager.BuckFileManager;
+import com.uber.okbuck.core.manager.FingerprintManager;
 import com.uber.okbuck.core.model.base.Scope;
 import com.uber.okbuck.core.util.ProjectUtil;
 import com.uber.okbuck.extension.ExternalDependenciesExtension;
@@ -18,7 +19,6 @@ import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 import javax.annotation.Nullable;
-import kotlin.jvm.Synchronized;
 import org.gradle.api.Project;
 import org.gradle.api.artifacts.Configuration;
 import org.gradle.api.artifacts.Dependency;
@@ -43,8 +43,7 @@ public class AnnotationProcessorCache {
     this.dependencyToScopeMap = new ConcurrentHashMap<>();
   }
 
-  @Synchronized
-  private Map<Set<Dependency>, Scope> getAutoValueDependencyToScopeMap() {
+  private synchronized Map<Set<Dependency>, Scope> getAutoValueDependencyToScopeMap() {
     if (autoValueDependencyToScopeMap == null) {
       Project rootProject = project.getRootProject();
       ExternalDependenciesExtension extension = ProjectUtil.getExternalDependencyExtension(project);
@@ -79,6 +78,7 @@ public class AnnotationProcessorCache {
    * @return A list of scopes generated by the configuration.
    */
   public List<Scope> getAnnotationProcessorScopes(Project project, Configuration configuration) {
+    FingerprintManager.recordProcessorConfiguration(configuration, true);
     ImmutableList.Builder<Scope> scopesBuilder = ImmutableList.builder();
 
     Map<Dependency, Scope> singleDependencyToScope =
@@ -155,6 +155,7 @@ public class AnnotationProcessorCache {
    * @return A boolean whether the configuration has any empty annotation processors.
    */
   public boolean hasEmptyAnnotationProcessors(Project project, Configuration configuration) {
+    FingerprintManager.recordProcessorConfiguration(configuration, false);
     Map<Dependency, Scope> depToScope =
         createProcessorScopes(project, configuration.getAllDependencies());
 
@@ -175,12 +176,14 @@ public class AnnotationProcessorCache {
         .collect(
             Collectors.groupingBy(
                 scope ->
-                    rootPath.resolve(
-                        scope
-                            .getAnnotationProcessorPlugin()
-                            .pluginDependency()
-                            .get()
-                            .getTargetPath())));
+                    rootPath
+                        .resolve(
+                            scope
+                                .getAnnotationProcessorPlugin()
+                                .pluginDependency()
+                                .get()
+                                .getTargetPath())
+                        .normalize()));
   }
 
   public void finalizeProcessors() {
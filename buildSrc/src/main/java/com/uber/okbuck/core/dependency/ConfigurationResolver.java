@@ -0,0 +1,254 @@
+package com.uber.okbuck.core.dependency;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.uber.okbuck.core.util.Tracer;
+import java.io.File;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import org.gradle.api.Project;
+import org.gradle.api.artifacts.Configuration;
+import org.gradle.api.artifacts.Dependency;
+import org.gradle.api.artifacts.FileCollectionDependency;
+import org.gradle.api.artifacts.ModuleDependency;
+import org.gradle.api.artifacts.ProjectDependency;
+import org.gradle.api.artifacts.component.ComponentIdentifier;
+import org.gradle.api.artifacts.component.ProjectComponentIdentifier;
+import org.gradle.api.artifacts.result.ResolutionResult;
+import org.gradle.api.artifacts.result.ResolvedArtifactResult;
+import org.gradle.api.artifacts.result.ResolvedComponentResult;
+import org.gradle.api.attributes.Attribute;
+import org.gradle.api.attributes.AttributeContainer;
+import org.gradle.api.specs.Spec;
+
+/**
+ * Resolves the artifacts of configurations for all projects of the build.
+ *
+ * <p>Each configuration is resolved with one artifact view per artifact type, whose results are
+ * then split into project and external artifacts. Configurations that request the same attributes,
+ * resolve to the same components and declare the same local files and artifact selections select
+ * the same artifacts, so they share a single resolution across variants and projects. Time spent
+ * resolving is tracked per project.
+ */
+public final class ConfigurationResolver {
+
+  private static final Attribute<String> ARTIFACT_TYPE =
+      Attribute.of("artifactType", String.class);
+
+  /** Used to filter out external & local aar dependencies when resolving a configuration. */
+  private static final Spec<ComponentIdentifier> EXTERNAL_DEP_FILTER =
+      componentIdentifier -> !(componentIdentifier instanceof ProjectComponentIdentifier);
+
+  private final Map<String, ResolvedArtifacts> resolved = new ConcurrentHashMap<>();
+  private final Map<String, AtomicLong> projectResolutionNanos = new ConcurrentHashMap<>();
+  private final AtomicInteger resolutions = new AtomicInteger();
+  private final AtomicInteger sharedResolutions = new AtomicInteger();
+
+  /**
+   * Resolves the jar and aar artifacts of the given configuration.
+   *
+   * @param project The project owning the configuration
+   * @param configuration The configuration to resolve
+   * @return The project and external artifacts of the configuration
+   */
+  public ResolvedArtifacts resolve(Project project, Configuration configuration) {
+    long start = System.nanoTime();
+    try (Tracer.Span ignored =
+        Tracer.span("resolve", project.getPath() + ":" + configuration.getName())) {
+      String graphKey = getGraphKey(configuration);
+      ResolvedArtifacts cached = resolved.get(graphKey);
+      if (cached != null) {
+        sharedResolutions.incrementAndGet();
+        return cached;
+      }
+      return resolved.computeIfAbsent(
+          graphKey,
+          key -> {
+            resolutions.incrementAndGet();
+            return ResolvedArtifacts.of(configuration);
+          });
+    } finally {
+      projectResolutionNanos
+          .computeIfAbsent(project.getPath(), path -> new AtomicLong())
+          .addAndGet(System.nanoTime() - start);
+    }
+  }
+
+  /** Returns the number of configurations whose artifacts had to be resolved. */
+  public int getResolutionCount() {
+    return resolutions.get();
+  }
+
+  /** Returns the number of configurations that reused the artifacts of an identical graph. */
+  public int getSharedResolutionCount() {
+    return sharedResolutions.get();
+  }
+
+  /** Returns the time spent in resolution per project path, slowest first, in milliseconds. */
+  public Map<String, Long> getProjectResolutionMillis() {
+    ImmutableMap.Builder<String, Long> builder = ImmutableMap.builder();
+    projectResolutionNanos
+        .entrySet()
+        .stream()
+        .sorted(
+            Comparator.comparingLong((Map.Entry<String, AtomicLong> e) -> e.getValue().get())
+                .reversed())
+        .forEach(
+            entry ->
+                builder.put(
+                    entry.getKey(), TimeUnit.NANOSECONDS.toMillis(entry.getValue().get())));
+    return builder.build();
+  }
+
+  /**
+   * Identifies the resolved graph of a configuration by its requested attributes, the components it
+   * resolved to, excluding the root component which is the consuming project itself, and the
+   * dependencies whose artifacts are not told apart by their component: local files, classifier or
+   * extension selections and project dependencies on a given configuration.
+   */
+  private static String getGraphKey(Configuration configuration) {
+    ResolutionResult result = configuration.getIncoming().getResolutionResult();
+    ComponentIdentifier root = result.getRoot().getId();
+
+    Set<String> components =
+        result
+            .getAllComponents()
+            .stream()
+            .map(ResolvedComponentResult::getId)
+            .filter(id -> !id.equals(root))
+            .map(ComponentIdentifier::getDisplayName)
+            .collect(Collectors.toCollection(TreeSet::new));
+
+    AttributeContainer attributes = configuration.getAttributes();
+    Set<String> requestedAttributes =
+        attributes
+            .keySet()
+            .stream()
+            .map(attribute -> attribute.getName() + "=" + attributes.getAttribute(attribute))
+            .collect(Collectors.toCollection(TreeSet::new));
+
+    Set<String> selections =
+        configuration
+            .getAllDependencies()
+            .stream()
+            .map(ConfigurationResolver::getSelection)
+            .filter(selection -> !selection.isEmpty())
+            .collect(Collectors.toCollection(TreeSet::new));
+
+    return requestedAttributes + "|" + components + "|" + selections;
+  }
+
+  /**
+   * Returns what a dependency selects beyond its component, or an empty string if it selects the
+   * default artifacts of its component.
+   */
+  private static String getSelection(Dependency dependency) {
+    if (dependency instanceof FileCollectionDependency) {
+      return ((FileCollectionDependency) dependency)
+          .getFiles()
+          .getFiles()
+          .stream()
+          .map(File::getAbsolutePath)
+          .sorted()
+          .collect(Collectors.joining(",", "files=", ""));
+    }
+
+    StringBuilder builder = new StringBuilder();
+    if (dependency instanceof ProjectDependency) {
+      String targetConfiguration = ((ProjectDependency) dependency).getTargetConfiguration();
+      if (targetConfiguration != null) {
+        builder.append(":configuration=").append(targetConfiguration);
+      }
+    }
+    if (dependency instanceof ModuleDependency) {
+      ((ModuleDependency) dependency)
+          .getArtifacts()
+          .stream()
+          .map(
+              artifact ->
+                  ":artifact="
+                      + artifact.getName()
+                      + ":"
+                      + artifact.getClassifier()
+                      + "@"
+                      + artifact.getExtension())
+          .sorted()
+          .forEach(builder::append);
+    }
+    if (builder.length() == 0) {
+      return "";
+    }
+    return dependency.getGroup()
+        + ":"
+        + dependency.getName()
+        + ":"
+        + dependency.getVersion()
+        + builder;
+  }
+
+  /** The artifacts a configuration resolved to. */
+  public static final class ResolvedArtifacts {
+
+    private final ImmutableSet<ResolvedArtifactResult> projectJars;
+    private final ImmutableSet<ResolvedArtifactResult> externalArtifacts;
+
+    private ResolvedArtifacts(
+        ImmutableSet<ResolvedArtifactResult> projectJars,
+        ImmutableSet<ResolvedArtifactResult> externalArtifacts) {
+      this.projectJars = projectJars;
+      this.externalArtifacts = externalArtifacts;
+    }
+
+    static ResolvedArtifacts of(Configuration configuration) {
+      Set<ResolvedArtifactResult> aars = getArtifacts(configuration, "aar", EXTERNAL_DEP_FILTER);
+      Set<ResolvedArtifactResult> jars = getArtifacts(configuration, "jar", id -> true);
+
+      // All aar artifacts should come before jar artifacts
+      ImmutableSet.Builder<ResolvedArtifactResult> externalArtifacts = ImmutableSet.builder();
+      externalArtifacts.addAll(aars);
+      ImmutableSet.Builder<ResolvedArtifactResult> projectJars = ImmutableSet.builder();
+      jars.forEach(
+          artifact -> {
+            if (artifact.getId().getComponentIdentifier() instanceof ProjectComponentIdentifier) {
+              projectJars.add(artifact);
+            } else {
+              externalArtifacts.add(artifact);
+            }
+          });
+      return new ResolvedArtifacts(projectJars.build(), externalArtifacts.build());
+    }
+
+    /** Jar artifacts of the projects the configuration depends on. */
+    public ImmutableSet<ResolvedArtifactResult> getProjectJars() {
+      return projectJars;
+    }
+
+    /** Aar artifacts followed by jar artifacts of external and local dependencies. */
+    public ImmutableSet<ResolvedArtifactResult> getExternalArtifacts() {
+      return externalArtifacts;
+    }
+
+    private static Set<ResolvedArtifactResult> getArtifacts(
+        Configuration configuration, String artifactType, Spec<ComponentIdentifier> filter) {
+      return configuration
+          .getIncoming()
+          .artifactView(
+              config -> {
+                config.attributes(container -> container.attribute(ARTIFACT_TYPE, artifactType));
+                config.componentFilter(filter);
+              })
+          .getArtifacts()
+          .getArtifacts()
+          .stream()
+          .filter(artifact -> !artifact.getFile().getName().equals("classes.jar"))
+          .collect(ImmutableSet.toImmutableSet());
+    }
+  }
+}
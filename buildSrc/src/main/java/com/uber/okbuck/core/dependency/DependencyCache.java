@@ -7,18 +7,11 @@ import com.uber.okbuck.core.util.ProjectUtil;
 import com.uber.okbuck.extension.ExternalDependenciesExtension;
 import com.uber.okbuck.extension.JetifierExtension;
 import com.uber.okbuck.extension.OkBuckExtension;
-import java.io.File;
-import java.io.IOException;
-import java.util.Arrays;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.jar.JarEntry;
-import java.util.jar.JarFile;
 import java.util.stream.Collectors;
 import javax.annotation.Nullable;
-import org.apache.commons.io.IOUtils;
 import org.gradle.api.Project;
 import org.gradle.api.artifacts.Configuration;
 import org.gradle.api.artifacts.DependencySet;
@@ -66,10 +59,12 @@ public class DependencyCache {
   }
 
   public final ExternalDependency get(ExternalDependency externalDependency) {
-    LOG.info("Requested dependency {}", externalDependency);
     ExternalDependency dependency =
         forcedDeps.getOrDefault(externalDependency.getVersionless(), externalDependency);
-    LOG.info("Picked dependency {}", dependency);
+    // Called for every dependency of every scope, only log when a forced version was picked
+    if (!dependency.equals(externalDependency) && LOG.isInfoEnabled()) {
+      LOG.info("Picked dependency {} for requested dependency {}", dependency, externalDependency);
+    }
 
     dependencyManager.addDependency(dependency, skipPrebuilt);
 
@@ -96,17 +91,10 @@ public class DependencyCache {
     ExternalDependency dependency =
         forcedDeps.getOrDefault(externalDependency.getVersionless(), externalDependency);
 
-    try {
-      String processors =
-          getJarFileContent(
-              dependency.getRealDependencyFile(),
-              "META-INF/services/javax.annotation.processing.Processor");
-
-      return ImmutableSet.copyOf(processors.split(","));
-
-    } catch (IOException e) {
-      throw new RuntimeException(e);
-    }
+    return ImmutableSet.copyOf(
+        getJarServicesIndex()
+            .getServiceProviders(
+                dependency.getRealDependencyFile(), "javax.annotation.processing.Processor"));
   }
 
   /**
@@ -118,38 +106,16 @@ public class DependencyCache {
   public boolean hasAutoValueExtension(ExternalDependency externalDependency) {
     ExternalDependency dependency =
         forcedDeps.getOrDefault(externalDependency.getVersionless(), externalDependency);
-    try {
-      String extensions =
-          getJarFileContent(
-              dependency.getRealDependencyFile(),
-              "META-INF/services/com.google.auto.value.extension.AutoValueExtension");
-      return !extensions.isEmpty();
-    } catch (IOException e) {
-      throw new RuntimeException(e);
-    }
+
+    return !getJarServicesIndex()
+        .getServiceProviders(
+            dependency.getRealDependencyFile(),
+            "com.google.auto.value.extension.AutoValueExtension")
+        .isEmpty();
   }
 
-  private static String getJarFileContent(File dependencyFile, String filePathString)
-      throws IOException {
-    String content;
-
-    JarFile jarFile = new JarFile(dependencyFile);
-    JarEntry jarEntry = (JarEntry) jarFile.getEntry(filePathString);
-    if (jarEntry != null) {
-      List<String> entries =
-          Arrays.stream(
-                  IOUtils.toString(jarFile.getInputStream(jarEntry), "UTF-8").trim().split("\\n"))
-              .filter(
-                  entry -> {
-                    return !entry.startsWith("#")
-                        && !entry.trim().isEmpty(); // filter out comments and empty lines
-                  })
-              .collect(Collectors.toList());
-      content = String.join(",", entries);
-    } else {
-      content = "";
-    }
-    return content;
+  private JarServicesIndex getJarServicesIndex() {
+    return ProjectUtil.getPlugin(rootProject).jarServicesIndex;
   }
 
   /**
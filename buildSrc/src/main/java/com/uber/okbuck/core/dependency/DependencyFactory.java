@@ -4,8 +4,13 @@ import com.uber.okbuck.extension.ExternalDependenciesExtension;
 import com.uber.okbuck.extension.JetifierExtension;
 import java.io.File;
 import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 import javax.annotation.Nullable;
 import org.apache.commons.io.FilenameUtils;
@@ -17,6 +22,14 @@ public final class DependencyFactory {
 
   private static final String LOCAL_DEP_VERSION = "1.0.0-LOCAL";
 
+  /**
+   * The external dependencies created in this run. Identical dependencies are requested for every
+   * configuration that resolves them, and all of them share a single instance.
+   */
+  private static final Map<Key, ExternalDependency> INTERNED = new ConcurrentHashMap<>();
+
+  private static final LongAdder REQUESTS = new LongAdder();
+
   private DependencyFactory() {}
 
   /**
@@ -38,29 +51,33 @@ public final class DependencyFactory {
       @Nullable File dependencySourceFile,
       ExternalDependenciesExtension externalDependenciesExtension,
       JetifierExtension jetifierExtension) {
-    String classifier = DependencyUtils.getModuleClassifier(dependencyFile.getName(), version);
-
-    if (isLocalDependency(dependencyFile.getAbsolutePath())) {
-      return new LocalExternalDependency(
-          group,
-          name,
-          version,
-          classifier,
-          dependencyFile,
-          dependencySourceFile,
-          externalDependenciesExtension,
-          jetifierExtension);
-    }
-
-    return new ExternalDependency(
-        group,
-        name,
-        version,
-        classifier,
-        dependencyFile,
-        dependencySourceFile,
-        externalDependenciesExtension,
-        jetifierExtension);
+    boolean local = isLocalDependency(dependencyFile.getAbsolutePath());
+    return intern(
+        new Key(local, group, name, version, dependencyFile, dependencySourceFile),
+        key -> {
+          String classifier =
+              DependencyUtils.getModuleClassifier(dependencyFile.getName(), version);
+          if (local) {
+            return new LocalExternalDependency(
+                group,
+                name,
+                version,
+                classifier,
+                dependencyFile,
+                dependencySourceFile,
+                externalDependenciesExtension,
+                jetifierExtension);
+          }
+          return new ExternalDependency(
+              group,
+              name,
+              version,
+              classifier,
+              dependencyFile,
+              dependencySourceFile,
+              externalDependenciesExtension,
+              jetifierExtension);
+        });
   }
 
   /**
@@ -77,15 +94,47 @@ public final class DependencyFactory {
       ExternalDependenciesExtension externalDependenciesExtension,
       JetifierExtension jetifierExtension) {
 
-    return new LocalExternalDependency(
-        LOCAL_GROUP,
-        FilenameUtils.getBaseName(localDependency.getName()),
-        LOCAL_DEP_VERSION,
-        null,
-        localDependency,
-        localSourceDependency,
-        externalDependenciesExtension,
-        jetifierExtension);
+    String name = FilenameUtils.getBaseName(localDependency.getName());
+    return (LocalExternalDependency)
+        intern(
+            new Key(
+                true, LOCAL_GROUP, name, LOCAL_DEP_VERSION, localDependency, localSourceDependency),
+            key ->
+                new LocalExternalDependency(
+                    LOCAL_GROUP,
+                    name,
+                    LOCAL_DEP_VERSION,
+                    null,
+                    localDependency,
+                    localSourceDependency,
+                    externalDependenciesExtension,
+                    jetifierExtension));
+  }
+
+  /** Returns the number of distinct external dependencies created in this run. */
+  public static int getInternedCount() {
+    return INTERNED.size();
+  }
+
+  /** Returns the number of external dependencies requested in this run. */
+  public static long getRequestCount() {
+    return REQUESTS.sum();
+  }
+
+  /**
+   * Forgets the dependencies created so far. Dependencies depend on the configuration of the
+   * extensions, so they can't be shared across runs.
+   */
+  public static void resetInternedDependencies() {
+    INTERNED.clear();
+    REQUESTS.reset();
+  }
+
+  private static ExternalDependency intern(
+      Key key, Function<Key, ExternalDependency> dependencyFactory) {
+    REQUESTS.increment();
+    ExternalDependency dependency = INTERNED.get(key);
+    return dependency != null ? dependency : INTERNED.computeIfAbsent(key, dependencyFactory);
   }
 
   /**
@@ -159,4 +208,53 @@ public final class DependencyFactory {
   private static boolean isLocalDependency(String dependencyFilePath) {
     return dependencyFilePath.contains("-SNAPSHOT") || dependencyFilePath.contains("-LOCAL");
   }
+
+  /** Identifies an external dependency by its coordinates and files. */
+  private static final class Key {
+    private final boolean local;
+    private final String group;
+    private final String name;
+    private final String version;
+    private final File file;
+    @Nullable private final File sourceFile;
+    private final int hashCode;
+
+    private Key(
+        boolean local,
+        String group,
+        String name,
+        String version,
+        File file,
+        @Nullable File sourceFile) {
+      this.local = local;
+      this.group = group;
+      this.name = name;
+      this.version = version;
+      this.file = file;
+      this.sourceFile = sourceFile;
+      this.hashCode = Objects.hash(local, group, name, version, file, sourceFile);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof Key)) {
+        return false;
+      }
+      Key that = (Key) o;
+      return local == that.local
+          && group.equals(that.group)
+          && name.equals(that.name)
+          && version.equals(that.version)
+          && file.equals(that.file)
+          && Objects.equals(sourceFile, that.sourceFile);
+    }
+
+    @Override
+    public int hashCode() {
+      return hashCode;
+    }
+  }
 }
@@ -0,0 +1,181 @@
+package com.uber.okbuck.core.dependency;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Graph of the external dependencies of the build, used to export the dependencies of prebuilt
+ * rules.
+ *
+ * <p>Each versionless dependency is interned to an int id and the edges are stored in compact
+ * adjacency arrays, so the graph of a large build takes little memory and the dependencies of a
+ * node are served as a view over its edges without copying them.
+ */
+public final class DependencyGraph {
+
+  private final ExternalDependency[] nodes;
+  private final int[] offsets;
+  private final int[] edges;
+
+  private DependencyGraph(ExternalDependency[] nodes, int[] offsets, int[] edges) {
+    this.nodes = nodes;
+    this.offsets = offsets;
+    this.edges = edges;
+  }
+
+  /**
+   * Creates a builder for the graph of the given dependencies. Only versionless dependencies with
+   * a single version can have or be dependencies.
+   *
+   * @param dependencyMap The resolved versions of each versionless dependency
+   * @return The graph builder
+   */
+  public static Builder builder(
+      Map<VersionlessDependency, Collection<ExternalDependency>> dependencyMap) {
+    return new Builder(dependencyMap);
+  }
+
+  /** Returns the number of edges of the graph. */
+  public int getEdgeCount() {
+    return edges.length;
+  }
+
+  Set<ExternalDependency> getDeps(int id) {
+    return new Deps(offsets[id], offsets[id + 1]);
+  }
+
+  /** Unmodifiable view of the dependencies of a node. */
+  private final class Deps extends AbstractSet<ExternalDependency> {
+    private final int start;
+    private final int end;
+
+    private Deps(int start, int end) {
+      this.start = start;
+      this.end = end;
+    }
+
+    @Override
+    public Iterator<ExternalDependency> iterator() {
+      return new Iterator<ExternalDependency>() {
+        private int next = start;
+
+        @Override
+        public boolean hasNext() {
+          return next < end;
+        }
+
+        @Override
+        public ExternalDependency next() {
+          if (!hasNext()) {
+            throw new NoSuchElementException();
+          }
+          return nodes[edges[next++]];
+        }
+      };
+    }
+
+    @Override
+    public int size() {
+      return end - start;
+    }
+  }
+
+  public static final class Builder {
+
+    private static final int NO_ID = -1;
+
+    private final Map<VersionlessDependency, Integer> ids;
+    private final ExternalDependency[] nodes;
+    private int[] sources = new int[1024];
+    private int[] targets = new int[1024];
+    private int edgeCount;
+
+    private Builder(Map<VersionlessDependency, Collection<ExternalDependency>> dependencyMap) {
+      ids = new HashMap<>(dependencyMap.size() * 2);
+      nodes = new ExternalDependency[dependencyMap.size()];
+      dependencyMap.forEach(
+          (versionless, dependencies) -> {
+            int id = ids.size();
+            ids.put(versionless, id);
+            if (dependencies.size() == 1) {
+              nodes[id] = dependencies.iterator().next();
+            }
+          });
+    }
+
+    /**
+     * Returns the id of the versionless dependency, or -1 if it is not one of the dependencies of
+     * the graph.
+     */
+    public int getId(VersionlessDependency versionless) {
+      Integer id = ids.get(versionless);
+      return id != null ? id : NO_ID;
+    }
+
+    /** Returns whether the dependency with the given id has a single version. */
+    public boolean isSingleVersion(int id) {
+      return nodes[id] != null;
+    }
+
+    /** Adds an edge between two dependencies, both of which must have a single version. */
+    public void addEdge(int source, int target) {
+      if (!isSingleVersion(source) || !isSingleVersion(target)) {
+        throw new IllegalArgumentException(
+            "Dependencies with multiple versions can't be part of the graph");
+      }
+      if (edgeCount == sources.length) {
+        sources = Arrays.copyOf(sources, edgeCount * 2);
+        targets = Arrays.copyOf(targets, edgeCount * 2);
+      }
+      sources[edgeCount] = source;
+      targets[edgeCount] = target;
+      edgeCount++;
+    }
+
+    /** Builds the graph, deduplicating edges, and serves the deps of its dependencies from it. */
+    public DependencyGraph build() {
+      int[] offsets = new int[nodes.length + 1];
+      for (int i = 0; i < edgeCount; i++) {
+        offsets[sources[i] + 1]++;
+      }
+      for (int id = 0; id < nodes.length; id++) {
+        offsets[id + 1] += offsets[id];
+      }
+
+      int[] edges = new int[edgeCount];
+      int[] positions = Arrays.copyOf(offsets, nodes.length);
+      for (int i = 0; i < edgeCount; i++) {
+        edges[positions[sources[i]]++] = targets[i];
+      }
+
+      // Sort and deduplicate the edges of each node, compacting them in place
+      int[] compactOffsets = new int[nodes.length + 1];
+      int size = 0;
+      for (int id = 0; id < nodes.length; id++) {
+        Arrays.sort(edges, offsets[id], offsets[id + 1]);
+        for (int i = offsets[id]; i < offsets[id + 1]; i++) {
+          if (i == offsets[id] || edges[i] != edges[i - 1]) {
+            edges[size++] = edges[i];
+          }
+        }
+        compactOffsets[id + 1] = size;
+      }
+
+      DependencyGraph graph =
+          new DependencyGraph(nodes, compactOffsets, Arrays.copyOf(edges, size));
+      for (int id = 0; id < nodes.length; id++) {
+        ExternalDependency node = nodes[id];
+        if (node != null) {
+          node.setGraph(graph, id);
+        }
+      }
+      return graph;
+    }
+  }
+}
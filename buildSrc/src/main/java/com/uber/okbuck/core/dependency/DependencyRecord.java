@@ -0,0 +1,82 @@
+package com.uber.okbuck.core.dependency;
+
+import com.uber.okbuck.extension.ExternalDependenciesExtension;
+import com.uber.okbuck.extension.JetifierExtension;
+import java.io.File;
+import java.util.Objects;
+import javax.annotation.Nullable;
+
+/**
+ * A serializable snapshot of an {@link ExternalDependency}. Used to persist dependencies across
+ * runs and recreate an identical {@link ExternalDependency} from them later.
+ */
+public final class DependencyRecord {
+
+  private String group = "";
+  private String name = "";
+  private String version = "";
+  private String file = "";
+  @Nullable private String sourceFile;
+
+  private DependencyRecord() {}
+
+  public static DependencyRecord of(ExternalDependency dependency) {
+    DependencyRecord record = new DependencyRecord();
+    record.group = dependency.getGroup();
+    record.name = dependency.getName();
+    record.version = dependency.getVersion();
+    record.file = dependency.getRealDependencyFile().getAbsolutePath();
+    record.sourceFile = dependency.getRawSourceFile().map(File::getAbsolutePath).orElse(null);
+    return record;
+  }
+
+  /** Returns whether the files backing this dependency are still present. */
+  public boolean isValid() {
+    return new File(file).exists() && (sourceFile == null || new File(sourceFile).exists());
+  }
+
+  /** Recreates the external dependency described by this record. */
+  public ExternalDependency toDependency(
+      ExternalDependenciesExtension externalDependenciesExtension,
+      JetifierExtension jetifierExtension) {
+    File dependencyFile = new File(file);
+    ExternalDependency dependency =
+        DependencyFactory.LOCAL_GROUP.equals(group)
+            ? DependencyFactory.fromLocal(
+                dependencyFile, null, externalDependenciesExtension, jetifierExtension)
+            : DependencyFactory.from(
+                group,
+                name,
+                version,
+                dependencyFile,
+                null,
+                externalDependenciesExtension,
+                jetifierExtension);
+    // Sources are set like resolved ones so the dependency equals a freshly resolved one
+    if (sourceFile != null) {
+      dependency.setResolvedSourceFile(new File(sourceFile));
+    }
+    return dependency;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (o == null || getClass() != o.getClass()) {
+      return false;
+    }
+    DependencyRecord that = (DependencyRecord) o;
+    return group.equals(that.group)
+        && name.equals(that.name)
+        && version.equals(that.version)
+        && file.equals(that.file)
+        && Objects.equals(sourceFile, that.sourceFile);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(group, name, version, file, sourceFile);
+  }
+}
@@ -1,23 +1,35 @@
 package com.uber.okbuck.core.dependency;
 
 import com.google.common.base.Strings;
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.hash.Hasher;
 import com.google.common.hash.Hashing;
-import com.google.common.io.Files;
 import com.uber.okbuck.core.util.ProjectUtil;
 import com.uber.okbuck.extension.ExternalDependenciesExtension;
 import com.uber.okbuck.extension.JetifierExtension;
 import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
 import java.util.jar.JarFile;
 import java.util.stream.Collectors;
 import javax.annotation.Nullable;
 import org.apache.commons.io.FilenameUtils;
 import org.gradle.api.Project;
 import org.gradle.api.artifacts.Configuration;
+import org.gradle.api.artifacts.Dependency;
+import org.gradle.api.artifacts.ExternalModuleDependency;
 import org.gradle.api.artifacts.UnknownConfigurationException;
 import org.gradle.api.artifacts.component.ComponentIdentifier;
 import org.gradle.api.artifacts.component.ModuleComponentIdentifier;
@@ -32,6 +44,10 @@ public final class DependencyUtils {
   private static final ImmutableSet<String> WHITELIST_LOCAL_PATTERNS =
       ImmutableSet.of("generated-gradle-jars/gradle-api-", "wrapper/dists");
 
+  // Each hashing thread reads files through its own buffer rather than allocating one per file
+  private static final ThreadLocal<ByteBuffer> HASH_BUFFER =
+      ThreadLocal.withInitial(() -> ByteBuffer.allocate(64 * 1024));
+
   private DependencyUtils() {}
 
   @Nullable
@@ -76,13 +92,65 @@ public final class DependencyUtils {
   }
 
   public static String shaSum256(File file) {
-    try {
-      return Files.asByteSource(file).hash(Hashing.sha256()).toString();
+    Hasher hasher = Hashing.sha256().newHasher();
+    ByteBuffer buffer = HASH_BUFFER.get();
+    try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+      buffer.clear();
+      while (channel.read(buffer) != -1) {
+        hasher.putBytes(buffer.array(), 0, buffer.position());
+        buffer.clear();
+      }
+      return hasher.hash().toString();
     } catch (IOException e) {
       throw new RuntimeException(String.format("Failed to calculate shaSum256 of %s", file));
     }
   }
 
+  /**
+   * Calculates the sha256 of the given files on a pool of the given number of threads. Files that
+   * resolve to the same canonical file are only hashed once.
+   *
+   * @param files files to hash
+   * @param threads maximum number of threads to hash with
+   * @return the sha256 of each of the given files
+   */
+  public static Map<File, String> shaSum256(Collection<File> files, int threads) {
+    Map<File, File> canonicalFiles = new HashMap<>();
+    files.forEach(file -> canonicalFiles.computeIfAbsent(file, DependencyUtils::canonicalFile));
+    Set<File> filesToHash = new HashSet<>(canonicalFiles.values());
+
+    Map<File, String> canonicalShaSums = new ConcurrentHashMap<>();
+    ForkJoinPool pool = new ForkJoinPool(Math.max(1, threads));
+    try {
+      pool.submit(
+              () ->
+                  filesToHash
+                      .parallelStream()
+                      .forEach(file -> canonicalShaSums.put(file, shaSum256(file))))
+          .get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while calculating shaSum256", e);
+    } catch (ExecutionException e) {
+      Throwables.throwIfUnchecked(e.getCause());
+      throw new IllegalStateException("Failed to calculate shaSum256", e.getCause());
+    } finally {
+      pool.shutdown();
+    }
+
+    Map<File, String> shaSums = new HashMap<>();
+    canonicalFiles.forEach((file, canonical) -> shaSums.put(file, canonicalShaSums.get(canonical)));
+    return shaSums;
+  }
+
+  private static File canonicalFile(File file) {
+    try {
+      return file.getCanonicalFile();
+    } catch (IOException e) {
+      return file.getAbsoluteFile();
+    }
+  }
+
   @Nullable
   static String getModuleClassifier(String fileNameString, @Nullable String version) {
     if (version == null) {
@@ -125,6 +193,14 @@ public final class DependencyUtils {
       ExternalDependenciesExtension externalDependenciesExtension,
       JetifierExtension jetifierExtension) {
     enforceChangingDeps(project, configuration);
+
+    ResolutionCache resolutionCache = ProjectUtil.getResolutionCache(project);
+    ResolutionCache.Resolution cached =
+        resolutionCache.get(project, configuration, ResolutionCache.Kind.EXTERNAL);
+    if (cached != null) {
+      return cached.getExternalDeps(externalDependenciesExtension, jetifierExtension);
+    }
+
     try {
       Set<ResolvedArtifactResult> consumableArtifacts =
           configuration
@@ -139,38 +215,45 @@ public final class DependencyUtils {
               .filter(artifact -> DependencyUtils.isConsumable(artifact.getFile()))
               .collect(Collectors.toSet());
 
-      Map<ComponentIdentifier, ResolvedArtifactResult> componentIdToSourcesArtifactMap =
-          new HashMap<>(ProjectUtil.downloadSources(project, consumableArtifacts));
-
-      return consumableArtifacts
-          .stream()
-          .map(
-              artifact -> {
-                ComponentIdentifier identifier = artifact.getId().getComponentIdentifier();
-                ResolvedArtifactResult sourcesArtifact =
-                    componentIdToSourcesArtifactMap.get(identifier);
-
-                if (identifier instanceof ModuleComponentIdentifier
-                    && ((ModuleComponentIdentifier) identifier).getVersion().length() > 0) {
-                  ModuleComponentIdentifier moduleIdentifier =
-                      (ModuleComponentIdentifier) identifier;
-                  return DependencyFactory.from(
-                      moduleIdentifier.getGroup(),
-                      moduleIdentifier.getModule(),
-                      moduleIdentifier.getVersion(),
-                      artifact.getFile(),
-                      sourcesArtifact != null ? sourcesArtifact.getFile() : null,
-                      externalDependenciesExtension,
-                      jetifierExtension);
-                } else {
-                  return DependencyFactory.fromLocal(
-                      artifact.getFile(),
-                      sourcesArtifact != null ? sourcesArtifact.getFile() : null,
-                      externalDependenciesExtension,
-                      jetifierExtension);
-                }
-              })
-          .collect(Collectors.toSet());
+      SourcesResolver sourcesResolver = ProjectUtil.getSourcesResolver(project);
+
+      Set<ExternalDependency> dependencies =
+          consumableArtifacts
+              .stream()
+              .map(
+                  artifact -> {
+                    ComponentIdentifier identifier = artifact.getId().getComponentIdentifier();
+
+                    ExternalDependency dependency;
+                    if (identifier instanceof ModuleComponentIdentifier
+                        && ((ModuleComponentIdentifier) identifier).getVersion().length() > 0) {
+                      ModuleComponentIdentifier moduleIdentifier =
+                          (ModuleComponentIdentifier) identifier;
+                      dependency =
+                          DependencyFactory.from(
+                              moduleIdentifier.getGroup(),
+                              moduleIdentifier.getModule(),
+                              moduleIdentifier.getVersion(),
+                              artifact.getFile(),
+                              null,
+                              externalDependenciesExtension,
+                              jetifierExtension);
+                    } else {
+                      dependency =
+                          DependencyFactory.fromLocal(
+                              artifact.getFile(),
+                              null,
+                              externalDependenciesExtension,
+                              jetifierExtension);
+                    }
+                    sourcesResolver.request(project, identifier, dependency);
+                    return dependency;
+                  })
+              .collect(Collectors.toSet());
+
+      resolutionCache.put(
+          project, configuration, ResolutionCache.Kind.EXTERNAL, ImmutableList.of(), dependencies);
+      return dependencies;
     } catch (DefaultLenientConfiguration.ArtifactResolveException e) {
       throw artifactResolveException(e);
     }
@@ -213,6 +296,31 @@ public final class DependencyUtils {
         });
   }
 
+  /**
+   * Returns whether the dependency may resolve to a different version or artifact without any
+   * change to the build: a changing module or a dynamic version such as 1.+, latest.release, a
+   * range or a snapshot. Some of them are let through by {@link #enforceChangingDeps}, ex. those in
+   * dynamicDependenciesToIgnore, so what they resolve to can't be reused across runs.
+   */
+  public static boolean isDynamic(Dependency dependency) {
+    if (dependency instanceof ExternalModuleDependency
+        && ((ExternalModuleDependency) dependency).isChanging()) {
+      return true;
+    }
+    if (!(dependency instanceof org.gradle.api.artifacts.ExternalDependency)) {
+      return false;
+    }
+    String version = dependency.getVersion();
+    return version != null
+        && (version.endsWith("+")
+            || version.startsWith("latest.")
+            || version.contains(",")
+            || version.startsWith("[")
+            || version.startsWith("]")
+            || version.startsWith("(")
+            || version.endsWith("-SNAPSHOT"));
+  }
+
   private static IllegalStateException artifactResolveException(Exception e) {
     return new IllegalStateException(
         "Failed to resolve an artifact. Make sure you have a repositories block defined. "
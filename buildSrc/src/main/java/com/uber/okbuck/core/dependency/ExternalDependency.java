@@ -6,13 +6,15 @@ import static com.uber.okbuck.core.dependency.BaseExternalDependency.JAR;
 import com.google.common.base.Strings;
 import com.google.common.collect.ComparisonChain;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
 import com.uber.okbuck.extension.ExternalDependenciesExtension;
 import com.uber.okbuck.extension.JetifierExtension;
 import java.io.File;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.Comparator;
-import java.util.HashSet;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
@@ -27,11 +29,17 @@ import org.gradle.api.artifacts.Dependency;
 public class ExternalDependency {
   private static final String SOURCE_FILE = "-sources.jar";
 
-  private final BaseExternalDependency base;
-  private final Path cachePath;
+  /** Dependencies of the same group share their target path. */
+  private static final Interner<String> TARGET_PATHS = Interners.newWeakInterner();
 
-  private boolean enableJetifier;
-  private Set<ExternalDependency> dependencies = new HashSet<>();
+  private final BaseExternalDependency base;
+  private final String targetName;
+  private final String versionlessTargetName;
+  private final String targetPath;
+  private final boolean enableJetifier;
+  @Nullable private DependencyGraph graph;
+  private int graphId;
+  @Nullable private volatile File resolvedSourceFile;
 
   public static Comparator<ExternalDependency> compareByName =
       (o1, o2) ->
@@ -106,10 +114,24 @@ public class ExternalDependency {
     if (this.base.versionless().classifier().isPresent()) {
       return Optional.empty();
     } else {
-      return this.base.realDependencySourceFile();
+      return getRawSourceFile();
     }
   }
 
+  /**
+   * Gets the sources jar file the dependency was created with or resolved later, regardless of its
+   * classifier.
+   */
+  Optional<File> getRawSourceFile() {
+    Optional<File> sourceFile = this.base.realDependencySourceFile();
+    return sourceFile.isPresent() ? sourceFile : Optional.ofNullable(resolvedSourceFile);
+  }
+
+  /** Sets the sources jar file resolved for the dependency after it was created. */
+  void setResolvedSourceFile(File sourceFile) {
+    this.resolvedSourceFile = sourceFile;
+  }
+
   public static String getGradleSha(File file) {
     return file.getParentFile().getName();
   }
@@ -126,7 +148,7 @@ public class ExternalDependency {
 
   /** Returns the target name of the dependency. */
   public String getTargetName() {
-    return this.base.targetName() + "." + getPackaging();
+    return targetName;
   }
 
   /** Returns the target name of the dependency without packaging. */
@@ -136,12 +158,12 @@ public class ExternalDependency {
 
   /** Returns the versionless target name of the dependency. */
   public String getVersionlessTargetName() {
-    return this.base.versionlessTargetName() + "." + getPackaging();
+    return versionlessTargetName;
   }
 
   /** Returns the target path of the dependency. */
   public String getTargetPath() {
-    return cachePath.resolve(this.base.basePath()).toString();
+    return targetPath;
   }
 
   /** Returns the cached file name of the sources jar file. */
@@ -159,12 +181,16 @@ public class ExternalDependency {
     return enableJetifier;
   }
 
-  public void setDeps(Set<ExternalDependency> dependencies) {
-    this.dependencies = dependencies;
+  /** Returns the dependencies of the dependency, which are only known if exported deps are on. */
+  public Set<ExternalDependency> getDeps() {
+    DependencyGraph dependencyGraph = graph;
+    return dependencyGraph != null ? dependencyGraph.getDeps(graphId) : ImmutableSet.of();
   }
 
-  public Set<ExternalDependency> getDeps() {
-    return dependencies;
+  /** Serves the dependencies of the dependency from its node in the given graph. */
+  void setGraph(DependencyGraph graph, int graphId) {
+    this.graph = graph;
+    this.graphId = graphId;
   }
 
   String getSourceFileNameFrom(String prebuiltName) {
@@ -199,8 +225,12 @@ public class ExternalDependency {
             .setRealDependencySourceFile(Optional.ofNullable(dependencySourceFile))
             .build();
 
+    // Target names and paths are requested for every rule the dependency is part of
+    this.targetName = base.targetName() + "." + getPackaging();
+    this.versionlessTargetName = base.versionlessTargetName() + "." + getPackaging();
+    Path cachePath = Paths.get(externalDependenciesExtension.getCache());
+    this.targetPath = TARGET_PATHS.intern(cachePath.resolve(base.basePath()).toString());
     this.enableJetifier = jetifierExtension.shouldJetify(group, name, getPackaging());
-    this.cachePath = Paths.get(externalDependenciesExtension.getCache());
   }
 
   public static Set<ExternalDependency> filterAar(Set<ExternalDependency> dependencies) {
@@ -0,0 +1,180 @@
+package com.uber.okbuck.core.dependency;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.collect.ImmutableList;
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.reflect.TypeToken;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Index of the {@code META-INF/services} entries of dependency jars, keyed by the sha256 of the jar
+ * and persisted across runs. Each jar is only scanned once, after which its service providers are
+ * looked up from the index. Only the jars looked up in the last run are kept.
+ */
+public final class JarServicesIndex {
+
+  private static final Logger LOG = LoggerFactory.getLogger(JarServicesIndex.class);
+
+  private static final String SERVICES_DIR = "META-INF/services/";
+
+  private final File indexFile;
+  private final Sha256Cache sha256Cache;
+  private final Map<String, Map<String, List<String>>> index;
+  private final Map<String, Map<String, List<String>>> current = new ConcurrentHashMap<>();
+  private final Map<String, Map<String, List<String>>> pathToServices = new ConcurrentHashMap<>();
+  private final AtomicInteger hits = new AtomicInteger();
+  private final AtomicInteger misses = new AtomicInteger();
+
+  public JarServicesIndex(File indexFile, Sha256Cache sha256Cache) {
+    this.indexFile = indexFile;
+    this.sha256Cache = sha256Cache;
+    this.index = new ConcurrentHashMap<>(readIndex(indexFile));
+  }
+
+  /**
+   * Returns the service providers the jar declares for the given service.
+   *
+   * @param jar The dependency jar
+   * @param service The fully qualified name of the service
+   * @return The provider class names listed in the jar's service file
+   */
+  public List<String> getServiceProviders(File jar, String service) {
+    return pathToServices
+        .computeIfAbsent(jar.getAbsolutePath(), path -> getServices(jar))
+        .getOrDefault(service, ImmutableList.of());
+  }
+
+  public int getHitCount() {
+    return hits.get();
+  }
+
+  public int getMissCount() {
+    return misses.get();
+  }
+
+  /**
+   * Persists the services of the jars looked up in this run, unless they are the same as the
+   * previous ones.
+   */
+  public void persist() {
+    if (misses.get() == 0 && current.keySet().equals(index.keySet())) {
+      return;
+    }
+    Path path = indexFile.toPath().toAbsolutePath();
+    try {
+      Files.createDirectories(path.getParent());
+      Path temp = Files.createTempFile(path.getParent(), path.getFileName().toString(), ".tmp");
+      try {
+        try (Writer writer = Files.newBufferedWriter(temp, UTF_8)) {
+          new Gson().toJson(new TreeMap<>(current), writer);
+        }
+        try {
+          Files.move(
+              temp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+          Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+        }
+      } finally {
+        Files.deleteIfExists(temp);
+      }
+    } catch (IOException e) {
+      throw new IllegalStateException("Could not write " + indexFile, e);
+    }
+  }
+
+  private Map<String, List<String>> getServices(File jar) {
+    String cachedSha256 = sha256Cache.get(jar);
+    String sha256 = cachedSha256 != null ? cachedSha256 : DependencyUtils.shaSum256(jar);
+    if (cachedSha256 == null) {
+      sha256Cache.put(jar, sha256);
+    }
+
+    Map<String, List<String>> indexedServices = index.get(sha256);
+    if (indexedServices != null) {
+      hits.incrementAndGet();
+      current.put(sha256, indexedServices);
+      return indexedServices;
+    }
+
+    misses.incrementAndGet();
+    Map<String, List<String>> services = scan(jar);
+    current.put(sha256, services);
+    return services;
+  }
+
+  private static Map<String, List<String>> scan(File jar) {
+    Map<String, List<String>> services = new LinkedHashMap<>();
+    try (ZipFile zipFile = new ZipFile(jar)) {
+      Enumeration<? extends ZipEntry> entries = zipFile.entries();
+      while (entries.hasMoreElements()) {
+        ZipEntry entry = entries.nextElement();
+        String name = entry.getName();
+        if (entry.isDirectory()
+            || !name.startsWith(SERVICES_DIR)
+            || name.length() == SERVICES_DIR.length()) {
+          continue;
+        }
+        try (BufferedReader reader =
+            new BufferedReader(new InputStreamReader(zipFile.getInputStream(entry), UTF_8))) {
+          services.put(
+              name.substring(SERVICES_DIR.length()),
+              reader
+                  .lines()
+                  .map(String::trim)
+                  // filter out comments and empty lines
+                  .filter(line -> !line.startsWith("#") && !line.isEmpty())
+                  .collect(ImmutableList.toImmutableList()));
+        }
+      }
+    } catch (IOException e) {
+      throw new RuntimeException("Could not read services of " + jar, e);
+    }
+    return services;
+  }
+
+  private static Map<String, Map<String, List<String>>> readIndex(File indexFile) {
+    if (!indexFile.isFile()) {
+      return new HashMap<>();
+    }
+    try (Reader reader = Files.newBufferedReader(indexFile.toPath(), UTF_8)) {
+      Map<String, Map<String, List<String>>> index =
+          new Gson()
+              .fromJson(
+                  reader, new TypeToken<HashMap<String, Map<String, List<String>>>>() {}.getType());
+      return index != null
+          ? index
+              .entrySet()
+              .stream()
+              .filter(entry -> entry.getKey() != null && entry.getValue() != null)
+              .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue))
+          : new HashMap<>();
+    } catch (IOException | JsonParseException e) {
+      LOG.warn("Ignoring unreadable jar services index {}", indexFile, e);
+      return new HashMap<>();
+    }
+  }
+}
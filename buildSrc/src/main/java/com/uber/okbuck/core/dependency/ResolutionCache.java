@@ -0,0 +1,270 @@
+package com.uber.okbuck.core.dependency;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.collect.ImmutableList;
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.reflect.TypeToken;
+import com.uber.okbuck.core.manager.FingerprintManager;
+import com.uber.okbuck.extension.ExternalDependenciesExtension;
+import com.uber.okbuck.extension.JetifierExtension;
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import javax.annotation.Nullable;
+import org.gradle.api.Project;
+import org.gradle.api.artifacts.Configuration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Persists the resolved dependencies of configurations across runs, keyed by a fingerprint of the
+ * inputs of their resolution. A configuration whose fingerprint did not change and whose resolved
+ * files are still present is rehydrated from the cache instead of being resolved by gradle, which
+ * also lets okbuck run offline once the gradle cache is warm.
+ *
+ * <p>The fingerprint covers declared dependencies only, so configurations of projects depending on
+ * dynamic or changing dependencies are always resolved by gradle and never cached.
+ */
+public final class ResolutionCache {
+
+  private static final Logger LOG = LoggerFactory.getLogger(ResolutionCache.class);
+
+  /** How a configuration was resolved, configurations can be resolved both ways. */
+  public enum Kind {
+    /** The project and external artifacts of a scope. */
+    SCOPE,
+    /** The external artifacts only. */
+    EXTERNAL
+  }
+
+  private final File cacheFile;
+  private final FingerprintManager fingerprintManager;
+  private final Map<String, Resolution> previous;
+  private final Map<String, Resolution> current = new ConcurrentHashMap<>();
+  private final AtomicInteger hits = new AtomicInteger();
+  private final AtomicInteger misses = new AtomicInteger();
+
+  public ResolutionCache(
+      Project rootProject, FingerprintManager fingerprintManager, String cacheFile) {
+    this.cacheFile = rootProject.file(cacheFile);
+    this.fingerprintManager = fingerprintManager;
+    this.previous = readCache(this.cacheFile);
+  }
+
+  /**
+   * Returns the resolution of the configuration recorded by a previous run, if the inputs of its
+   * resolution did not change and all the files it resolved to are still present.
+   *
+   * @param project The project owning the configuration
+   * @param configuration The configuration to look up
+   * @param kind How the configuration is resolved
+   * @return The cached resolution or null if the configuration needs to be resolved
+   */
+  @Nullable
+  public Resolution get(Project project, Configuration configuration, Kind kind) {
+    if (!isCacheable(project, configuration)) {
+      return null;
+    }
+    String key = key(project, configuration, kind);
+    Resolution resolution = previous.get(key);
+    if (resolution == null
+        || !resolution.fingerprint.equals(
+            fingerprintManager.getConfigurationFingerprint(project, configuration))
+        || !resolution.isValid(project)) {
+      misses.incrementAndGet();
+      return null;
+    }
+    current.put(key, resolution);
+    hits.incrementAndGet();
+    return resolution;
+  }
+
+  /**
+   * Records the resolution of a configuration for the next runs.
+   *
+   * @param project The project owning the configuration
+   * @param configuration The resolved configuration
+   * @param kind How the configuration was resolved
+   * @param projectDeps The projects the configuration resolved to, with their variant if any
+   * @param externalDeps The external dependencies the configuration resolved to
+   */
+  public void put(
+      Project project,
+      Configuration configuration,
+      Kind kind,
+      List<ProjectDep> projectDeps,
+      Collection<ExternalDependency> externalDeps) {
+    if (!isCacheable(project, configuration)) {
+      return;
+    }
+    Resolution resolution =
+        new Resolution(
+            fingerprintManager.getConfigurationFingerprint(project, configuration),
+            projectDeps,
+            externalDeps);
+    current.put(key(project, configuration, kind), resolution);
+  }
+
+  public int getHitCount() {
+    return hits.get();
+  }
+
+  public int getMissCount() {
+    return misses.get();
+  }
+
+  /**
+   * Persists the resolutions of the configurations looked up in this run, unless they are the same
+   * as the previous ones. Resolutions of configurations that were not looked up, ex. of projects
+   * that were removed, are dropped. Must be called once sources jars were resolved, since they are
+   * recorded with the dependencies.
+   */
+  public void persist() {
+    if (misses.get() == 0 && current.keySet().equals(previous.keySet())) {
+      return;
+    }
+    current.values().forEach(Resolution::recordResolvedDependencies);
+    Map<String, Resolution> resolutions = new TreeMap<>(current);
+
+    Path path = cacheFile.toPath().toAbsolutePath();
+    try {
+      Files.createDirectories(path.getParent());
+      Path temp = Files.createTempFile(path.getParent(), path.getFileName().toString(), ".tmp");
+      try {
+        try (Writer writer = Files.newBufferedWriter(temp, UTF_8)) {
+          new Gson().toJson(resolutions, writer);
+        }
+        try {
+          Files.move(
+              temp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+          Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+        }
+      } finally {
+        Files.deleteIfExists(temp);
+      }
+    } catch (IOException e) {
+      throw new IllegalStateException("Could not write " + cacheFile, e);
+    }
+  }
+
+  /**
+   * Detached configurations are named after a counter, so they can't be matched across runs. What
+   * dynamic dependencies resolve to can change without any change to the fingerprint.
+   */
+  private boolean isCacheable(Project project, Configuration configuration) {
+    return configuration.equals(project.getConfigurations().findByName(configuration.getName()))
+        && !fingerprintManager.hasDynamicDependencies(project);
+  }
+
+  private static String key(Project project, Configuration configuration, Kind kind) {
+    return kind + " " + project.getPath() + ":" + configuration.getName();
+  }
+
+  private static Map<String, Resolution> readCache(File cacheFile) {
+    if (!cacheFile.isFile()) {
+      return new HashMap<>();
+    }
+    try (Reader reader = Files.newBufferedReader(cacheFile.toPath(), UTF_8)) {
+      Map<String, Resolution> resolutions =
+          new Gson().fromJson(reader, new TypeToken<HashMap<String, Resolution>>() {}.getType());
+      return resolutions != null
+          ? resolutions
+              .entrySet()
+              .stream()
+              .filter(entry -> entry.getKey() != null && entry.getValue() != null)
+              .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue))
+          : new HashMap<>();
+    } catch (IOException | JsonParseException e) {
+      LOG.warn("Ignoring unreadable resolution cache {}", cacheFile, e);
+      return new HashMap<>();
+    }
+  }
+
+  /** A project a configuration resolved to, with the variant it resolved to if any. */
+  public static final class ProjectDep {
+    private String path = "";
+    @Nullable private String variant;
+
+    private ProjectDep() {}
+
+    public ProjectDep(String path, @Nullable String variant) {
+      this.path = path;
+      this.variant = variant;
+    }
+
+    public String getPath() {
+      return path;
+    }
+
+    @Nullable
+    public String getVariant() {
+      return variant;
+    }
+  }
+
+  /** The projects and external dependencies a configuration resolved to. */
+  public static final class Resolution {
+    private String fingerprint = "";
+    private List<ProjectDep> projectDeps = new ArrayList<>();
+    private List<DependencyRecord> externalDeps = new ArrayList<>();
+
+    private transient Collection<ExternalDependency> resolvedDependencies = ImmutableList.of();
+
+    private Resolution() {}
+
+    private Resolution(
+        String fingerprint,
+        List<ProjectDep> projectDeps,
+        Collection<ExternalDependency> resolvedDependencies) {
+      this.fingerprint = fingerprint;
+      this.projectDeps = projectDeps;
+      this.resolvedDependencies = resolvedDependencies;
+    }
+
+    public List<ProjectDep> getProjectDeps() {
+      return projectDeps;
+    }
+
+    /** Recreates the external dependencies the configuration resolved to, in order. */
+    public Set<ExternalDependency> getExternalDeps(
+        ExternalDependenciesExtension externalDependenciesExtension,
+        JetifierExtension jetifierExtension) {
+      return externalDeps
+          .stream()
+          .map(record -> record.toDependency(externalDependenciesExtension, jetifierExtension))
+          .collect(Collectors.toCollection(LinkedHashSet::new));
+    }
+
+    private boolean isValid(Project project) {
+      return projectDeps.stream().allMatch(dep -> project.findProject(dep.path) != null)
+          && externalDeps.stream().allMatch(DependencyRecord::isValid);
+    }
+
+    /** Recorded once the run is over since sources jars are only set on dependencies at the end. */
+    private void recordResolvedDependencies() {
+      if (!resolvedDependencies.isEmpty()) {
+        externalDeps =
+            resolvedDependencies.stream().map(DependencyRecord::of).collect(Collectors.toList());
+      }
+    }
+  }
+}
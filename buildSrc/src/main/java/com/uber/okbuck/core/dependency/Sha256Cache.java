@@ -0,0 +1,254 @@
+package com.uber.okbuck.core.dependency;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.base.Joiner;
+import com.google.common.base.Splitter;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+import javax.annotation.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Persistent cache of the sha256 of dependency files.
+ *
+ * <p>Entries are keyed by the path of the file and are only used while the size, modification time
+ * and gradle sha of the file still match, so a file that changed is hashed again instead of
+ * producing a wrong sha256. Each entry is stored on its own line along with a checksum, so corrupt
+ * lines are detected and dropped. New entries are appended to the file, which is rewritten without
+ * the obsolete entries once they make up a quarter of it.
+ */
+public final class Sha256Cache {
+
+  private static final Logger LOG = LoggerFactory.getLogger(Sha256Cache.class);
+
+  private static final String HEADER = "# okbuck sha256 cache v1";
+  private static final char SEPARATOR = '\t';
+  private static final Joiner JOINER = Joiner.on(SEPARATOR);
+  private static final Splitter SPLITTER = Splitter.on(SEPARATOR);
+  private static final Pattern SHA256 = Pattern.compile("[0-9a-f]{64}");
+
+  private final File file;
+  private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+  private final List<Entry> newEntries = new ArrayList<>();
+  private final AtomicInteger staleEntries = new AtomicInteger();
+
+  private int lines;
+  private int corruptEntries;
+  private boolean compact;
+
+  private Sha256Cache(File file) {
+    this.file = file;
+  }
+
+  /**
+   * Loads the cache from the given file. A missing file or one in an unknown format results in an
+   * empty cache which replaces the file when persisted.
+   */
+  public static Sha256Cache load(File file) {
+    Sha256Cache cache = new Sha256Cache(file);
+    if (!file.isFile()) {
+      cache.compact = true;
+      return cache;
+    }
+
+    List<String> lines;
+    try {
+      lines = Files.readAllLines(file.toPath(), UTF_8);
+    } catch (IOException e) {
+      LOG.warn("Could not read sha256 cache {}", file, e);
+      cache.compact = true;
+      return cache;
+    }
+
+    if (lines.isEmpty() || !lines.get(0).equals(HEADER)) {
+      cache.compact = true;
+      return cache;
+    }
+
+    for (String line : lines.subList(1, lines.size())) {
+      cache.lines++;
+      Entry entry = Entry.parse(line);
+      if (entry == null) {
+        cache.corruptEntries++;
+      } else {
+        // Later lines override earlier ones for the same file
+        cache.entries.put(entry.path, entry);
+      }
+    }
+    if (cache.corruptEntries > 0) {
+      LOG.warn("Dropped {} corrupt entries from sha256 cache {}", cache.corruptEntries, file);
+    }
+    return cache;
+  }
+
+  /**
+   * Returns the cached sha256 of the file, or null if there is none or the file changed since it
+   * was hashed.
+   */
+  @Nullable
+  public String get(File dependencyFile) {
+    String path = dependencyFile.getAbsolutePath();
+    Entry entry = entries.get(path);
+    if (entry == null) {
+      return null;
+    }
+    if (!entry.matches(dependencyFile)) {
+      if (entries.remove(path, entry)) {
+        staleEntries.incrementAndGet();
+      }
+      return null;
+    }
+    return entry.sha256;
+  }
+
+  /** Caches the sha256 of the file for its current size and modification time. */
+  public synchronized void put(File dependencyFile, String sha256) {
+    Entry entry = Entry.of(dependencyFile, sha256);
+    entries.put(entry.path, entry);
+    newEntries.add(entry);
+  }
+
+  /** Returns the number of entries that were dropped since the file changed after being hashed. */
+  public int getStaleEntryCount() {
+    return staleEntries.get();
+  }
+
+  /** Returns the number of entries that were dropped since they could not be parsed. */
+  public int getCorruptEntryCount() {
+    return corruptEntries;
+  }
+
+  /** Appends the new entries to the cache file, or rewrites it if it needs to be compacted. */
+  public synchronized void persist() {
+    // Entries of files that no longer exist are never going to be used again
+    entries.values().removeIf(entry -> !new File(entry.path).exists());
+
+    int obsoleteLines = lines + newEntries.size() - entries.size();
+    try {
+      Files.createDirectories(file.toPath().toAbsolutePath().getParent());
+      if (compact || obsoleteLines * 4 > lines + newEntries.size()) {
+        rewrite();
+      } else if (!newEntries.isEmpty()) {
+        try (Writer writer =
+            Files.newBufferedWriter(file.toPath(), UTF_8, StandardOpenOption.APPEND)) {
+          for (Entry entry : newEntries) {
+            writer.write(entry.toLine());
+            writer.write('\n');
+          }
+        }
+        lines += newEntries.size();
+      }
+      newEntries.clear();
+    } catch (IOException e) {
+      throw new IllegalStateException("Could not persist sha256 cache " + file, e);
+    }
+  }
+
+  private void rewrite() throws IOException {
+    Path path = file.toPath().toAbsolutePath();
+    Path temp = Files.createTempFile(path.getParent(), path.getFileName().toString(), ".tmp");
+    try {
+      try (Writer writer = Files.newBufferedWriter(temp, UTF_8)) {
+        writer.write(HEADER);
+        writer.write('\n');
+        for (Entry entry : entries.values()) {
+          writer.write(entry.toLine());
+          writer.write('\n');
+        }
+      }
+      try {
+        Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+      } catch (AtomicMoveNotSupportedException e) {
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+      }
+    } finally {
+      Files.deleteIfExists(temp);
+    }
+    lines = entries.size();
+    compact = false;
+  }
+
+  private static final class Entry {
+    private final String sha256;
+    private final long size;
+    private final long lastModified;
+    private final String gradleSha;
+    private final String path;
+
+    private Entry(String sha256, long size, long lastModified, String gradleSha, String path) {
+      this.sha256 = sha256;
+      this.size = size;
+      this.lastModified = lastModified;
+      this.gradleSha = gradleSha;
+      this.path = path;
+    }
+
+    static Entry of(File file, String sha256) {
+      return new Entry(
+          sha256,
+          file.length(),
+          file.lastModified(),
+          ExternalDependency.getGradleSha(file),
+          file.getAbsolutePath());
+    }
+
+    boolean matches(File file) {
+      return file.length() == size
+          && file.lastModified() == lastModified
+          && ExternalDependency.getGradleSha(file).equals(gradleSha);
+    }
+
+    String toLine() {
+      String content = JOINER.join(sha256, size, lastModified, gradleSha, path);
+      return content + SEPARATOR + checksum(content);
+    }
+
+    @Nullable
+    static Entry parse(String line) {
+      int checksumIndex = line.lastIndexOf(SEPARATOR);
+      if (checksumIndex < 0) {
+        return null;
+      }
+      String content = line.substring(0, checksumIndex);
+      if (!line.substring(checksumIndex + 1).equals(checksum(content))) {
+        return null;
+      }
+
+      List<String> parts = SPLITTER.limit(5).splitToList(content);
+      if (parts.size() != 5 || !SHA256.matcher(parts.get(0)).matches()) {
+        return null;
+      }
+      try {
+        return new Entry(
+            parts.get(0),
+            Long.parseLong(parts.get(1)),
+            Long.parseLong(parts.get(2)),
+            parts.get(3),
+            parts.get(4));
+      } catch (NumberFormatException e) {
+        return null;
+      }
+    }
+
+    private static String checksum(String content) {
+      CRC32 crc = new CRC32();
+      crc.update(content.getBytes(UTF_8));
+      return Long.toHexString(crc.getValue());
+    }
+  }
+}
@@ -0,0 +1,262 @@
+package com.uber.okbuck.core.dependency;
+
+import com.google.common.base.Throwables;
+import com.uber.okbuck.core.util.ProjectUtil;
+import com.uber.okbuck.core.util.Tracer;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import javax.annotation.Nullable;
+import org.gradle.api.Project;
+import org.gradle.api.artifacts.component.ComponentIdentifier;
+import org.gradle.api.artifacts.repositories.ArtifactRepository;
+import org.gradle.api.artifacts.repositories.IvyArtifactRepository;
+import org.gradle.api.artifacts.repositories.MavenArtifactRepository;
+
+/**
+ * Collects the components whose sources jars are needed while dependencies are resolved and fetches
+ * them in as few artifact resolution queries as possible, instead of one query per configuration.
+ *
+ * <p>Components are queried once per build, using the repositories of the first project that
+ * requested them. Requests from projects with the same repositories share a single query. The
+ * sources jars are set on the dependencies once resolved, which has to happen before the external
+ * dependency cache is written.
+ */
+public final class SourcesResolver {
+
+  private static final int BACKGROUND_BATCH_SIZE = 500;
+
+  private final Project rootProject;
+  private final boolean enabled;
+
+  // Guarded by this
+  private final Map<ComponentIdentifier, Project> pending = new LinkedHashMap<>();
+  private final Map<ComponentIdentifier, List<ExternalDependency>> waiting = new HashMap<>();
+  private final Map<ComponentIdentifier, File> sources = new HashMap<>();
+  private final Set<ComponentIdentifier> requested = new HashSet<>();
+  private final Set<ComponentIdentifier> queried = new HashSet<>();
+
+  private final AtomicInteger queries = new AtomicInteger();
+  private final AtomicLong resolutionNanos = new AtomicLong();
+
+  @Nullable private ExecutorService executor;
+  @Nullable private Future<?> background;
+  private boolean stopped;
+
+  public SourcesResolver(Project rootProject, boolean enabled) {
+    this.rootProject = rootProject;
+    this.enabled = enabled;
+  }
+
+  /**
+   * Requests the sources jar of a component for the given dependency. The sources jar is set on the
+   * dependency right away if the component was already queried, otherwise once it is.
+   *
+   * @param project The project whose repositories can provide the sources jar
+   * @param identifier The component the dependency was resolved from
+   * @param dependency The dependency to set the sources jar on
+   */
+  public synchronized void request(
+      Project project, ComponentIdentifier identifier, ExternalDependency dependency) {
+    if (!enabled || !ProjectUtil.canHaveSources(dependency.getRealDependencyFile())) {
+      return;
+    }
+
+    if (queried.contains(identifier)) {
+      File sourceFile = sources.get(identifier);
+      if (sourceFile != null) {
+        dependency.setResolvedSourceFile(sourceFile);
+      }
+      return;
+    }
+
+    waiting.computeIfAbsent(identifier, id -> new ArrayList<>()).add(dependency);
+    if (requested.add(identifier)) {
+      pending.put(identifier, project);
+      if (pending.size() >= BACKGROUND_BATCH_SIZE) {
+        notifyAll();
+      }
+    }
+  }
+
+  /**
+   * Starts querying requested sources jars on a background thread, in batches of at least {@link
+   * #BACKGROUND_BATCH_SIZE} components, until {@link #stopBackground()} or {@link #resolve()} is
+   * called. The thread is a daemon so that it never keeps the build alive.
+   */
+  public synchronized void resolveInBackground() {
+    if (!enabled || background != null) {
+      return;
+    }
+    executor =
+        Executors.newSingleThreadExecutor(
+            runnable -> {
+              Thread thread = new Thread(runnable, "okbuck-sources-resolver");
+              thread.setDaemon(true);
+              return thread;
+            });
+    background = executor.submit(this::resolveBatches);
+  }
+
+  /**
+   * Stops querying in the background once the current batch is done, leaving the components
+   * requested since then to {@link #resolve()}. Safe to call any number of times, including when
+   * generation failed and {@link #resolve()} will never be called.
+   */
+  public void stopBackground() {
+    ExecutorService backgroundExecutor;
+    synchronized (this) {
+      stopped = true;
+      notifyAll();
+      backgroundExecutor = executor;
+      executor = null;
+    }
+    if (backgroundExecutor != null) {
+      backgroundExecutor.shutdown();
+    }
+  }
+
+  /**
+   * Waits for any background query and queries the sources jars requested since then. Every
+   * dependency that requested sources has its sources jar set, if one exists, when this returns.
+   */
+  public void resolve() {
+    if (!enabled) {
+      return;
+    }
+
+    stopBackground();
+    Future<?> backgroundQuery;
+    synchronized (this) {
+      backgroundQuery = background;
+      background = null;
+    }
+    if (backgroundQuery != null) {
+      try {
+        backgroundQuery.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IllegalStateException("Interrupted while resolving sources", e);
+      } catch (ExecutionException e) {
+        Throwables.throwIfUnchecked(e.getCause());
+        throw new IllegalStateException("Failed to resolve sources", e.getCause());
+      }
+    }
+    resolvePending();
+
+    int resolved;
+    int components;
+    synchronized (this) {
+      resolved = sources.size();
+      components = requested.size();
+    }
+    rootProject
+        .getLogger()
+        .info(
+            "okbuck: {} sources jar(s) resolved for {} component(s) in {} query(s), {}ms",
+            resolved,
+            components,
+            queries.get(),
+            TimeUnit.NANOSECONDS.toMillis(resolutionNanos.get()));
+  }
+
+  private void resolveBatches() {
+    while (true) {
+      synchronized (this) {
+        try {
+          while (!stopped && pending.size() < BACKGROUND_BATCH_SIZE) {
+            wait();
+          }
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          return;
+        }
+        if (stopped) {
+          // The remaining requests are resolved by the caller of resolve()
+          return;
+        }
+      }
+      resolvePending();
+    }
+  }
+
+  private void resolvePending() {
+    Map<ComponentIdentifier, Project> toQuery;
+    synchronized (this) {
+      if (pending.isEmpty()) {
+        return;
+      }
+      toQuery = new LinkedHashMap<>(pending);
+      pending.clear();
+    }
+
+    long start = System.nanoTime();
+    Map<ComponentIdentifier, File> resolved = new HashMap<>();
+    toQuery
+        .entrySet()
+        .stream()
+        .collect(
+            Collectors.groupingBy(
+                entry -> getRepositoriesKey(entry.getValue()),
+                LinkedHashMap::new,
+                Collectors.toList()))
+        .values()
+        .forEach(
+            entries -> {
+              Project project = entries.get(0).getValue();
+              Set<ComponentIdentifier> identifiers =
+                  entries.stream().map(Map.Entry::getKey).collect(Collectors.toSet());
+              queries.incrementAndGet();
+              try (Tracer.Span ignored = Tracer.span("resolve", "sourcesQuery")) {
+                ProjectUtil.downloadSources(project, identifiers)
+                    .forEach(
+                        (identifier, artifact) -> resolved.put(identifier, artifact.getFile()));
+              }
+            });
+    resolutionNanos.addAndGet(System.nanoTime() - start);
+
+    synchronized (this) {
+      sources.putAll(resolved);
+      for (ComponentIdentifier identifier : toQuery.keySet()) {
+        queried.add(identifier);
+        List<ExternalDependency> dependencies = waiting.remove(identifier);
+        File sourceFile = resolved.get(identifier);
+        if (dependencies != null && sourceFile != null) {
+          dependencies.forEach(dependency -> dependency.setResolvedSourceFile(sourceFile));
+        }
+      }
+    }
+  }
+
+  /** Identifies the repositories a project resolves from, in order. */
+  public static String getRepositoriesKey(Project project) {
+    return project
+        .getRepositories()
+        .stream()
+        .map(SourcesResolver::describe)
+        .collect(Collectors.joining(","));
+  }
+
+  private static String describe(ArtifactRepository repository) {
+    if (repository instanceof MavenArtifactRepository) {
+      return repository.getName() + "@" + ((MavenArtifactRepository) repository).getUrl();
+    }
+    if (repository instanceof IvyArtifactRepository) {
+      return repository.getName() + "@" + ((IvyArtifactRepository) repository).getUrl();
+    }
+    return repository.getName();
+  }
+}
@@ -4,18 +4,20 @@ import com.google.common.collect.Multimap;
 import com.google.common.collect.TreeMultimap;
 import com.uber.okbuck.OkBuckGradlePlugin;
 import com.uber.okbuck.core.model.base.RuleType;
+import com.uber.okbuck.core.util.FileUtil;
+import com.uber.okbuck.core.util.Tracer;
 import com.uber.okbuck.extension.RuleOverridesExtension;
 import com.uber.okbuck.template.common.GeneratedHeader;
 import com.uber.okbuck.template.common.LoadStatements;
 import com.uber.okbuck.template.core.Rule;
-import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -26,47 +28,122 @@ public class BuckFileManager {
   private static final String SUBDIR_GLOB = "subdir_glob";
 
   private final RuleOverridesExtension ruleOverridesExtension;
+  private final Map<File, ByteArrayOutputStream> deferredBuckFiles = new ConcurrentHashMap<>();
+  private final AtomicInteger writtenFiles = new AtomicInteger();
+  private final AtomicInteger skippedFiles = new AtomicInteger();
 
   public BuckFileManager(RuleOverridesExtension ruleOverridesExtension) {
     this.ruleOverridesExtension = ruleOverridesExtension;
   }
 
-  public void writeToBuckFile(List<Rule> rules, File buckFile) {
-    this.writeToBuckFile(rules, buckFile, TreeMultimap.create());
+  public boolean writeToBuckFile(List<Rule> rules, File buckFile) {
+    return this.writeToBuckFile(rules, buckFile, TreeMultimap.create());
   }
 
-  public void writeToBuckFile(
+  /**
+   * Writes the rules to the buck file unless it already has the same contents.
+   *
+   * @return whether the buck file was written.
+   */
+  public boolean writeToBuckFile(
+      List<Rule> rules, File buckFile, Multimap<String, String> extraLoadStatements) {
+    return !rules.isEmpty()
+        && writeIfChanged(buckFile, render(rules, extraLoadStatements).toByteArray());
+  }
+
+  /**
+   * Renders the buck file but defers writing it until {@link #finalizeDeferredBuckFiles()} so that
+   * rules can still be appended to it via {@link #appendToDeferredBuckFile(File, List)}.
+   */
+  public void deferBuckFile(
       List<Rule> rules, File buckFile, Multimap<String, String> extraLoadStatements) {
     if (!rules.isEmpty()) {
+      deferredBuckFiles.put(buckFile, render(rules, extraLoadStatements));
+    }
+  }
+
+  /** Defers writing a buck file whose contents were already rendered. */
+  public void deferBuckFile(byte[] contents, File buckFile) {
+    if (contents.length > 0) {
+      ByteArrayOutputStream os = new ByteArrayOutputStream(contents.length);
+      os.write(contents, 0, contents.length);
+      deferredBuckFiles.put(buckFile, os);
+    }
+  }
+
+  /** Returns the contents of a deferred buck file or an empty array if there is none. */
+  public byte[] getDeferredBuckFile(File buckFile) {
+    ByteArrayOutputStream os = deferredBuckFiles.get(buckFile);
+    return os != null ? os.toByteArray() : new byte[0];
+  }
+
+  /**
+   * Appends rules to a deferred buck file, or defers a new buck file with just these rules if there
+   * is none.
+   */
+  public void appendToDeferredBuckFile(File buckFile, List<Rule> rules) {
+    ByteArrayOutputStream os =
+        deferredBuckFiles.computeIfAbsent(buckFile, file -> new ByteArrayOutputStream());
+    rules.forEach(rule -> rule.render(os));
+  }
+
+  /** Writes all deferred buck files whose contents changed. */
+  public void finalizeDeferredBuckFiles() {
+    deferredBuckFiles.forEach((buckFile, os) -> writeIfChanged(buckFile, os.toByteArray()));
+    deferredBuckFiles.clear();
+  }
+
+  /** Returns the number of files written since they were missing or had different contents. */
+  public int getWrittenFileCount() {
+    return writtenFiles.get();
+  }
+
+  /** Returns the number of files left untouched since their contents did not change. */
+  public int getSkippedFileCount() {
+    return skippedFiles.get();
+  }
+
+  private ByteArrayOutputStream render(
+      List<Rule> rules, Multimap<String, String> extraLoadStatements) {
+    try (Tracer.Span ignored = Tracer.span("render", "rules")) {
       Multimap<String, String> loadStatements = getLoadStatements(rules);
       loadStatements.putAll(extraLoadStatements);
-      File parent = buckFile.getParentFile();
-      if (!parent.exists() && !parent.mkdirs()) {
-        throw new IllegalStateException("Couldn't create dir: " + parent);
-      }
 
-      try (OutputStream fos = new FileOutputStream(buckFile);
-          BufferedOutputStream os = new BufferedOutputStream(fos)) {
+      ByteArrayOutputStream os = new ByteArrayOutputStream();
+      GeneratedHeader.template().render(os);
+      if (!loadStatements.isEmpty()) {
+        LoadStatements.template(writableLoadStatements(loadStatements)).render(os);
+      }
 
-        GeneratedHeader.template().render(os);
-        if (!loadStatements.isEmpty()) {
-          LoadStatements.template(writableLoadStatements(loadStatements)).render(os);
+      for (int index = 0; index < rules.size(); index++) {
+        // Don't add a new line before the first rule
+        if (index != 0) {
+          os.write(NEWLINE, 0, NEWLINE.length);
         }
+        rules.get(index).render(os);
+      }
+      return os;
+    }
+  }
 
-        for (int index = 0; index < rules.size(); index++) {
-          // Don't add a new line before the first rule
-          if (index != 0) {
-            os.write(NEWLINE);
-          }
-          rules.get(index).render(os);
-        }
-      } catch (IOException e) {
-        throw new IllegalStateException("Couldn't create the buck file", e);
+  /**
+   * Writes the contents to the file unless it already has the same contents. Unchanged files keep
+   * their modification time so that watchman and buck don't consider them changed.
+   */
+  private boolean writeIfChanged(File buckFile, byte[] contents) {
+    try {
+      if (FileUtil.writeIfChanged(buckFile.toPath(), contents)) {
+        writtenFiles.incrementAndGet();
+        return true;
       }
+      skippedFiles.incrementAndGet();
+      return false;
+    } catch (IOException e) {
+      throw new IllegalStateException("Couldn't create the buck file " + buckFile, e);
     }
   }
 
-  private Multimap<String, String> getLoadStatements(List<Rule> rules) {
+  Multimap<String, String> getLoadStatements(List<Rule> rules) {
     Multimap<String, String> loadStatements = TreeMultimap.create();
     Map<String, RuleOverridesExtension.OverrideSetting> overrides =
         ruleOverridesExtension.getOverrides();
@@ -2,8 +2,9 @@ package com.uber.okbuck.core.manager;
 
 import com.google.common.base.Preconditions;
 import com.uber.okbuck.OkBuckGradlePlugin;
-import com.uber.okbuck.core.util.FileUtil;
+import com.uber.okbuck.core.util.OutputManifest;
 import com.uber.okbuck.core.util.ProjectUtil;
+import com.uber.okbuck.core.util.SymlinkEngine;
 import com.uber.okbuck.extension.OkBuckExtension;
 import java.io.File;
 import java.nio.file.Path;
@@ -48,16 +49,11 @@ public final class BuckManager {
 
   public void finalizeDependencies() {
     Path buckBinaryCache = rootProject.file(BUCK_BINARY_LOCATION).toPath();
-    // Delete already existing folder
-    FileUtil.deleteQuietly(buckBinaryCache);
+    OutputManifest.manageDirectory(buckBinaryCache);
 
     if (realBuckBinaryPath != null) {
       Path linkedBinaryPath = buckBinaryCache.resolve(realBuckBinaryPath.getFileName());
-
-      // Make dirs
-      linkedBinaryPath.getParent().toFile().mkdirs();
-
-      FileUtil.symlink(linkedBinaryPath, realBuckBinaryPath);
+      new SymlinkEngine().add(linkedBinaryPath, realBuckBinaryPath).link(1);
     }
   }
 }
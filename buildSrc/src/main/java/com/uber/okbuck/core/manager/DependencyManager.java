@@ -7,9 +7,7 @@ import com.google.common.base.Joiner;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
-import com.google.common.collect.LinkedHashMultimap;
-import com.google.common.collect.MultimapBuilder;
-import com.google.common.collect.SetMultimap;
+import com.google.common.collect.ImmutableSet;
 import com.uber.okbuck.OkBuckGradlePlugin;
 import com.uber.okbuck.composer.common.HttpFileRuleComposer;
 import com.uber.okbuck.composer.java.JavaAnnotationProcessorRuleComposer;
@@ -17,29 +15,40 @@ import com.uber.okbuck.composer.java.LocalPrebuiltRuleComposer;
 import com.uber.okbuck.composer.java.PrebuiltRuleComposer;
 import com.uber.okbuck.core.annotation.AnnotationProcessorCache;
 import com.uber.okbuck.core.dependency.DependencyFactory;
+import com.uber.okbuck.core.dependency.DependencyGraph;
 import com.uber.okbuck.core.dependency.DependencyUtils;
 import com.uber.okbuck.core.dependency.ExternalDependency;
 import com.uber.okbuck.core.dependency.LocalExternalDependency;
+import com.uber.okbuck.core.dependency.Sha256Cache;
+import com.uber.okbuck.core.dependency.SourcesResolver;
 import com.uber.okbuck.core.dependency.VersionlessDependency;
 import com.uber.okbuck.core.model.base.Scope;
-import com.uber.okbuck.core.util.FileUtil;
 import com.uber.okbuck.core.util.ProjectUtil;
+import com.uber.okbuck.core.util.SymlinkEngine;
+import com.uber.okbuck.core.util.Tracer;
 import com.uber.okbuck.extension.ExternalDependenciesExtension;
 import com.uber.okbuck.extension.JetifierExtension;
 import com.uber.okbuck.extension.OkBuckExtension;
 import com.uber.okbuck.template.core.Rule;
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
 import java.nio.file.Path;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.HashMap;
+import java.util.Comparator;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
-import org.apache.commons.io.FileUtils;
+import java.util.stream.Stream;
 import org.gradle.api.Project;
 import org.gradle.api.artifacts.Configuration;
 import org.gradle.api.artifacts.Dependency;
@@ -53,14 +62,19 @@ public class DependencyManager {
   private final JetifierExtension jetifierExtension;
   private final BuckFileManager buckFileManager;
 
-  private final Set<org.gradle.api.artifacts.ExternalDependency> rawDependencies = new HashSet<>();
+  // Dependencies are registered for every scope by all projects generating concurrently, so the
+  // registry is lock free for the common case of a dependency that is already registered
+  private final Set<org.gradle.api.artifacts.ExternalDependency> rawDependencies =
+      ConcurrentHashMap.newKeySet();
 
-  private final SetMultimap<VersionlessDependency, ExternalDependency> originalDependencyMap =
-      LinkedHashMultimap.create();
+  private final ConcurrentMap<VersionlessDependency, Set<ExternalDependency>>
+      originalDependencyMap = new ConcurrentHashMap<>();
 
-  private final HashMap<VersionlessDependency, Boolean> skipPrebuiltDependencyMap = new HashMap<>();
+  private final ConcurrentMap<VersionlessDependency, Boolean> skipPrebuiltDependencyMap =
+      new ConcurrentHashMap<>();
 
-  private final HashMap<String, String> sha256Cache;
+  private final Sha256Cache sha256Cache;
+  private final SourcesResolver sourcesResolver;
 
   public DependencyManager(
       Project rootProject, OkBuckExtension okBuckExtension, BuckFileManager buckFileManager) {
@@ -69,40 +83,63 @@ public class DependencyManager {
     this.externalDependenciesExtension = okBuckExtension.getExternalDependenciesExtension();
     this.jetifierExtension = okBuckExtension.getJetifierExtension();
     this.buckFileManager = buckFileManager;
-    this.sha256Cache = initSha256Cache(rootProject);
+    this.sha256Cache = Sha256Cache.load(rootProject.file(OkBuckGradlePlugin.OKBUCK_SHA256));
+    this.sourcesResolver =
+        new SourcesResolver(rootProject, okBuckExtension.getIntellijExtension().downloadSources());
   }
 
-  public synchronized void addDependencies(
-      Set<org.gradle.api.artifacts.ExternalDependency> dependencies) {
+  public Sha256Cache getSha256Cache() {
+    return sha256Cache;
+  }
+
+  public SourcesResolver getSourcesResolver() {
+    return sourcesResolver;
+  }
+
+  public void addDependencies(Set<org.gradle.api.artifacts.ExternalDependency> dependencies) {
     rawDependencies.addAll(dependencies);
+    FingerprintManager.recordRawDependencies(dependencies);
   }
 
-  public synchronized void addDependency(ExternalDependency dependency, boolean skipPrebuilt) {
+  public void addDependency(ExternalDependency dependency, boolean skipPrebuilt) {
     VersionlessDependency versionless = dependency.getVersionless();
-    originalDependencyMap.put(versionless, dependency);
-
-    if (skipPrebuiltDependencyMap.containsKey(versionless)) {
-      skipPrebuiltDependencyMap.put(
-          versionless, skipPrebuiltDependencyMap.get(versionless) && skipPrebuilt);
-    } else {
-      skipPrebuiltDependencyMap.put(versionless, skipPrebuilt);
+    Set<ExternalDependency> versions = originalDependencyMap.get(versionless);
+    if (versions == null) {
+      versions =
+          originalDependencyMap.computeIfAbsent(versionless, key -> new CopyOnWriteArraySet<>());
+    }
+    // Only locks the versions of this dependency, and only when adding a new version
+    versions.add(dependency);
+    FingerprintManager.recordDependency(dependency, skipPrebuilt);
+
+    // A dependency skips prebuilt rules only if every scope using it does
+    Boolean skipped = skipPrebuiltDependencyMap.get(versionless);
+    if (skipped == null || (skipped && !skipPrebuilt)) {
+      skipPrebuiltDependencyMap.merge(versionless, skipPrebuilt, Boolean::logicalAnd);
     }
   }
 
   public void finalizeDependencies() {
-    Map<VersionlessDependency, Collection<ExternalDependency>> filteredDependencyMap =
-        filterDependencies();
+    Map<VersionlessDependency, Collection<ExternalDependency>> filteredDependencyMap;
+    try (Tracer.Span ignored = Tracer.span("resolve", "latestVersions")) {
+      filteredDependencyMap = filterDependencies();
+    }
+
+    // Sources jars have to be set on all dependencies before they are cached
+    Tracer.trace("resolve", "sources", sourcesResolver::resolve);
 
-    validateDependencies(filteredDependencyMap);
-    updateDependencies(filteredDependencyMap);
-    processDependencies(filteredDependencyMap);
+    Tracer.trace("graph", "validate", () -> validateDependencies(filteredDependencyMap));
+    Tracer.trace("graph", "update", () -> updateDependencies(filteredDependencyMap));
+    Tracer.trace("cache", "process", () -> processDependencies(filteredDependencyMap));
 
-    persistSha256Cache(project, sha256Cache);
+    Tracer.trace("hash", "persistSha256Cache", sha256Cache::persist);
   }
 
-  private Map<VersionlessDependency, Collection<ExternalDependency>> filterDependencies() {
+  Map<VersionlessDependency, Collection<ExternalDependency>> filterDependencies() {
+    Map<VersionlessDependency, Collection<ExternalDependency>> dependencyMap =
+        getOriginalDependencyMap();
     if (!externalDependenciesExtension.useLatest()) {
-      return originalDependencyMap.asMap();
+      return dependencyMap;
     }
 
     ImmutableMap.Builder<VersionlessDependency, Collection<ExternalDependency>>
@@ -111,19 +148,17 @@ public class DependencyManager {
     ImmutableList.Builder<ExternalDependency> dependenciesToResolveBuilder =
         ImmutableList.builder();
 
-    originalDependencyMap
-        .asMap()
-        .forEach(
-            (key, value) -> {
-              if (value.size() == 1) {
-                // Already has one dependency, no need to resolve different versions.
-                filteredDependencyMapBuilder.put(key, value);
-              } else if (externalDependenciesExtension.useLatest(key)) {
-                dependenciesToResolveBuilder.addAll(value);
-              } else {
-                filteredDependencyMapBuilder.put(key, value);
-              }
-            });
+    dependencyMap.forEach(
+        (key, value) -> {
+          if (value.size() == 1) {
+            // Already has one dependency, no need to resolve different versions.
+            filteredDependencyMapBuilder.put(key, value);
+          } else if (externalDependenciesExtension.useLatest(key)) {
+            dependenciesToResolveBuilder.addAll(value);
+          } else {
+            filteredDependencyMapBuilder.put(key, value);
+          }
+        });
 
     resolved(dependenciesToResolveBuilder.build())
         .forEach(
@@ -148,7 +183,7 @@ public class DependencyManager {
         project, detached, externalDependenciesExtension, jetifierExtension);
   }
 
-  private void validateDependencies(
+  void validateDependencies(
       Map<VersionlessDependency, Collection<ExternalDependency>> dependencyMap) {
     if (externalDependenciesExtension.versionlessEnabled()) {
       Joiner.MapJoiner mapJoiner = Joiner.on(",\n").withKeyValueSeparator("=");
@@ -219,68 +254,87 @@ public class DependencyManager {
       resolvedConfiguration.rethrowFailure();
     }
 
-    resolvedConfiguration
-        .getLenientConfiguration()
-        .getAllModuleDependencies()
-        .forEach(
-            rDependency -> {
-              Set<ExternalDependency> childDependencies =
-                  childDependencies(rDependency, dependencyMap);
+    DependencyGraph.Builder graphBuilder = DependencyGraph.builder(dependencyMap);
+    // Resolved dependencies are shared between their parents, so each is only converted once
+    Map<ResolvedDependency, Set<VersionlessDependency>> versionlessCache = new IdentityHashMap<>();
+    Map<ResolvedDependency, int[]> idCache = new IdentityHashMap<>();
+
+    for (ResolvedDependency rDependency :
+        resolvedConfiguration.getLenientConfiguration().getAllModuleDependencies()) {
+      int[] childIds =
+          childIds(rDependency, graphBuilder, dependencyMap, versionlessCache, idCache);
+      if (childIds.length == 0) {
+        continue;
+      }
 
-              if (childDependencies.size() == 0) {
-                return;
-              }
+      for (VersionlessDependency versionless : versionless(rDependency, versionlessCache)) {
+        if (versionless.classifier().isPresent()) {
+          continue;
+        }
+        int id = graphBuilder.getId(versionless);
+        if (id < 0) {
+          throw dependencyException(rDependency);
+        }
+        Preconditions.checkArgument(
+            graphBuilder.isSingleVersion(id),
+            "Dependency having multiple versions can't have deps: %s",
+            dependencyMap.get(versionless));
+        for (int childId : childIds) {
+          graphBuilder.addEdge(id, childId);
+        }
+      }
+    }
 
-              DependencyFactory.fromDependency(rDependency)
-                  .stream()
-                  .filter(it -> !it.classifier().isPresent())
-                  .peek(
-                      it -> {
-                        if (!dependencyMap.containsKey(it)) {
-                          throw dependencyException(rDependency);
-                        }
-                      })
-                  .map(dependencyMap::get)
-                  .map(
-                      dependencies -> {
-                        Preconditions.checkArgument(
-                            dependencies.size() == 1,
-                            "Dependency having multiple versions can't have deps: " + dependencies);
-
-                        return dependencies.stream().findAny().get();
-                      })
-                  .forEach(dependency -> dependency.setDeps(childDependencies));
-            });
+    DependencyGraph graph = graphBuilder.build();
+    project.getLogger().info("okbuck: exported deps graph of {} edges", graph.getEdgeCount());
   }
 
-  private static Set<ExternalDependency> childDependencies(
+  /** Returns the ids of the children of the resolved dependency in the graph. */
+  private static int[] childIds(
       ResolvedDependency rDependency,
-      Map<VersionlessDependency, Collection<ExternalDependency>> dependencyMap) {
+      DependencyGraph.Builder graphBuilder,
+      Map<VersionlessDependency, Collection<ExternalDependency>> dependencyMap,
+      Map<ResolvedDependency, Set<VersionlessDependency>> versionlessCache,
+      Map<ResolvedDependency, int[]> idCache) {
     return rDependency
         .getChildren()
         .stream()
-        .map(
+        .flatMapToInt(
             cDependency ->
-                DependencyFactory.fromDependency(cDependency)
-                    .stream()
-                    .peek(
-                        it -> {
-                          if (!dependencyMap.containsKey(it)) {
-                            throw dependencyException(cDependency);
-                          }
-                        })
-                    .map(dependencyMap::get)
-                    .map(
-                        dependencies -> {
-                          Preconditions.checkArgument(
-                              dependencies.size() == 1,
-                              "Child dependencies can't have multiple versions: " + dependencies);
-
-                          return dependencies.stream().findAny().get();
-                        })
-                    .collect(Collectors.toSet()))
-        .flatMap(Collection::stream)
-        .collect(Collectors.toSet());
+                Arrays.stream(
+                    idCache.computeIfAbsent(
+                        cDependency,
+                        key -> ids(key, graphBuilder, dependencyMap, versionlessCache))))
+        .distinct()
+        .toArray();
+  }
+
+  private static int[] ids(
+      ResolvedDependency dependency,
+      DependencyGraph.Builder graphBuilder,
+      Map<VersionlessDependency, Collection<ExternalDependency>> dependencyMap,
+      Map<ResolvedDependency, Set<VersionlessDependency>> versionlessCache) {
+    return versionless(dependency, versionlessCache)
+        .stream()
+        .mapToInt(
+            versionless -> {
+              int id = graphBuilder.getId(versionless);
+              if (id < 0) {
+                throw dependencyException(dependency);
+              }
+              Preconditions.checkArgument(
+                  graphBuilder.isSingleVersion(id),
+                  "Child dependencies can't have multiple versions: %s",
+                  dependencyMap.get(versionless));
+              return id;
+            })
+        .toArray();
+  }
+
+  private static Set<VersionlessDependency> versionless(
+      ResolvedDependency dependency,
+      Map<ResolvedDependency, Set<VersionlessDependency>> versionlessCache) {
+    return versionlessCache.computeIfAbsent(dependency, DependencyFactory::fromDependency);
   }
 
   private static RuntimeException dependencyException(ResolvedDependency dependency) {
@@ -292,19 +346,11 @@ public class DependencyManager {
             + " in final resolved deps.");
   }
 
-  private void processDependencies(
+  void processDependencies(
       Map<VersionlessDependency, Collection<ExternalDependency>> dependencyMap) {
     Path rootPath = project.getRootDir().toPath();
-    File cacheDir = rootPath.resolve(externalDependenciesExtension.getCache()).toFile();
-    if (cacheDir.exists()) {
-      try {
-        FileUtils.deleteDirectory(cacheDir);
-      } catch (IOException e) {
-        throw new RuntimeException("Could not delete dependency directory: " + cacheDir);
-      }
-    }
-
-    if (!cacheDir.mkdirs()) {
+    Path cacheDir = rootPath.resolve(externalDependenciesExtension.getCache()).normalize();
+    if (!cacheDir.toFile().exists() && !cacheDir.toFile().mkdirs()) {
       throw new IllegalStateException("Couldn't create dependency directory: " + cacheDir);
     }
 
@@ -314,7 +360,23 @@ public class DependencyManager {
             .stream()
             .flatMap(Collection::stream)
             .collect(
-                Collectors.groupingBy(dependency -> rootPath.resolve(dependency.getTargetPath())));
+                Collectors.groupingBy(
+                    dependency -> rootPath.resolve(dependency.getTargetPath()).normalize()));
+
+    // Entries of the cache dir that should exist once all dependencies are processed.
+    Set<Path> cacheEntries = new HashSet<>();
+    CacheChanges changes = new CacheChanges();
+    SymlinkEngine symlinks = new SymlinkEngine();
+
+    if (externalDependenciesExtension.shouldDownloadInBuck()) {
+      preComputeSha256(
+          groupToDependencyMap
+              .values()
+              .stream()
+              .flatMap(Collection::stream)
+              .filter(dependency -> !(dependency instanceof LocalExternalDependency))
+              .collect(Collectors.toList()));
+    }
 
     AnnotationProcessorCache annotationProcessorCache =
         ProjectUtil.getAnnotationProcessorCache(project);
@@ -343,9 +405,6 @@ public class DependencyManager {
             localPrebuiltDependencies.addAll(dependencies);
           }
 
-          preComputeSha256(prebuiltDependencies.build(), sha256Cache);
-          preComputeSha256(httpFileDependencies.build(), sha256Cache);
-
           ImmutableList.Builder<Rule> rulesBuilder = ImmutableList.builder();
           rulesBuilder.addAll(LocalPrebuiltRuleComposer.compose(localPrebuiltDependencies.build()));
           rulesBuilder.addAll(
@@ -359,74 +418,177 @@ public class DependencyManager {
             rulesBuilder.addAll(JavaAnnotationProcessorRuleComposer.compose(scopeList));
           }
 
-          buckFileManager.writeToBuckFile(
-              rulesBuilder.build(), basePath.resolve(OkBuckGradlePlugin.BUCK).toFile());
+          Path buckFile = basePath.resolve(OkBuckGradlePlugin.BUCK);
+          boolean buckFileExists = Files.exists(buckFile);
+          if (buckFileManager.writeToBuckFile(rulesBuilder.build(), buckFile.toFile())) {
+            changes.record(buckFileExists);
+          }
+          cacheEntries.add(buckFile);
 
-          createSymlinks(basePath, localPrebuiltDependencies.build());
+          addSymlinks(basePath, localPrebuiltDependencies.build(), symlinks, cacheEntries);
         });
+
+    try (Tracer.Span ignored = Tracer.span("symlink", "externalDependencies")) {
+      SymlinkEngine.Result linked = symlinks.link(Runtime.getRuntime().availableProcessors());
+      changes.added += linked.getCreated();
+      changes.updated += linked.getReplaced();
+      project.getLogger().info("okbuck: symlinks in {}: {}", cacheDir, linked);
+    }
+
+    Tracer.trace("cache", "removeStale", () -> removeStaleEntries(cacheDir, cacheEntries, changes));
+    project
+        .getLogger()
+        .info(
+            "okbuck: {} added, {} updated, {} removed in {}",
+            changes.added,
+            changes.updated,
+            changes.removed,
+            externalDependenciesExtension.getCache());
   }
 
-  private boolean isPrebuiltDependency(ExternalDependency dependency) {
-    return !skipPrebuiltDependencyMap.getOrDefault(dependency.getVersionless(), false)
-        && (dependency.getPackaging().equals(AAR) || dependency.getPackaging().equals(JAR));
+  /** Returns whether all the scopes the dependency was registered for skip prebuilt rules. */
+  boolean skipsPrebuilt(VersionlessDependency versionless) {
+    return skipPrebuiltDependencyMap.getOrDefault(versionless, false);
   }
 
-  private static void createSymlinks(Path path, Collection<ExternalDependency> dependencies) {
-    if (!path.toFile().exists() && !path.toFile().mkdirs()) {
-      throw new RuntimeException(String.format("Couldn't create %s when creating symlinks", path));
-    }
+  /** Returns the gradle dependencies registered to be resolved together. */
+  Set<org.gradle.api.artifacts.ExternalDependency> getRawDependencies() {
+    return ImmutableSet.copyOf(rawDependencies);
+  }
 
-    SetMultimap<VersionlessDependency, ExternalDependency> nameToDependencyMap =
-        MultimapBuilder.hashKeys().hashSetValues().build();
-    dependencies.forEach(
-        dependency -> nameToDependencyMap.put(dependency.getVersionless(), dependency));
+  /**
+   * Returns the registered versions of each dependency. Dependencies are ordered by name since the
+   * order they were registered in depends on how projects were scheduled, and versions of a
+   * dependency in the order they were registered.
+   */
+  private Map<VersionlessDependency, Collection<ExternalDependency>> getOriginalDependencyMap() {
+    ImmutableMap.Builder<VersionlessDependency, Collection<ExternalDependency>> builder =
+        ImmutableMap.builder();
+    originalDependencyMap
+        .entrySet()
+        .stream()
+        .sorted(Comparator.comparing(entry -> entry.getKey().toString()))
+        .forEach(entry -> builder.put(entry.getKey(), ImmutableSet.copyOf(entry.getValue())));
+    return builder.build();
+  }
 
+  private boolean isPrebuiltDependency(ExternalDependency dependency) {
+    return !skipsPrebuilt(dependency.getVersionless())
+        && (dependency.getPackaging().equals(AAR) || dependency.getPackaging().equals(JAR));
+  }
+
+  /** Adds the links to the artifacts and sources jars of the dependencies in the given dir. */
+  private static void addSymlinks(
+      Path path,
+      Collection<ExternalDependency> dependencies,
+      SymlinkEngine symlinks,
+      Set<Path> cacheEntries) {
     dependencies.forEach(
         dependency -> {
-          FileUtil.symlink(
-              path.resolve(dependency.getDependencyFileName()),
-              dependency.getRealDependencyFile().toPath());
+          Path link = path.resolve(dependency.getDependencyFileName());
+          symlinks.add(link, dependency.getRealDependencyFile().toPath());
+          cacheEntries.add(link);
 
           dependency
               .getRealSourceFile()
               .ifPresent(
-                  file ->
-                      FileUtil.symlink(
-                          path.resolve(dependency.getSourceFileName()), file.toPath()));
+                  file -> {
+                    Path sourceLink = path.resolve(dependency.getSourceFileName());
+                    symlinks.add(sourceLink, file.toPath());
+                    cacheEntries.add(sourceLink);
+                  });
         });
   }
 
-  private static void preComputeSha256(
-      List<ExternalDependency> dependencies, HashMap<String, String> sha256Map) {
-    dependencies.forEach(
-        dependency -> {
-          computeSha256IfAbsent(dependency.getRealDependencyFile(), sha256Map);
+  /** Deletes the entries of the cache dir which are no longer needed along with empty dirs. */
+  private static void removeStaleEntries(
+      Path cacheDir, Set<Path> cacheEntries, CacheChanges changes) {
+    try {
+      List<Path> staleEntries;
+      try (Stream<Path> paths = Files.walk(cacheDir)) {
+        staleEntries =
+            paths
+                .filter(path -> !Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS))
+                .filter(path -> !cacheEntries.contains(path))
+                .collect(Collectors.toList());
+      }
+      for (Path staleEntry : staleEntries) {
+        Files.delete(staleEntry);
+        changes.removed++;
+      }
 
-          Optional<File> sourcesFile = dependency.getRealSourceFile();
-          sourcesFile.ifPresent(file -> computeSha256IfAbsent(file, sha256Map));
-        });
+      List<Path> dirs;
+      try (Stream<Path> paths = Files.walk(cacheDir)) {
+        dirs =
+            paths
+                .filter(path -> Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS))
+                .filter(path -> !path.equals(cacheDir))
+                .sorted(Comparator.reverseOrder())
+                .collect(Collectors.toList());
+      }
+      for (Path dir : dirs) {
+        try (Stream<Path> children = Files.list(dir)) {
+          if (!children.findAny().isPresent()) {
+            Files.delete(dir);
+          }
+        }
+      }
+    } catch (IOException e) {
+      throw new IllegalStateException("Couldn't clean up dependency directory: " + cacheDir, e);
+    }
   }
 
-  private static void computeSha256IfAbsent(File file, HashMap<String, String> sha256Map) {
-    String key = ExternalDependency.getGradleSha(file);
-    sha256Map.computeIfAbsent(key, k -> DependencyUtils.shaSum256(file));
+  /** Counts the changes made to the external dependency cache dir. */
+  private static final class CacheChanges {
+    private int added;
+    private int updated;
+    private int removed;
+
+    private void record(boolean existed) {
+      if (existed) {
+        updated++;
+      } else {
+        added++;
+      }
+    }
   }
 
-  private static HashMap<String, String> initSha256Cache(Project rootProject) {
-    File projectMappingFile = rootProject.file(OkBuckGradlePlugin.OKBUCK_SHA256);
-    try {
-      return FileUtil.readMapFromJsonFile(projectMappingFile);
-    } catch (IOException e) {
-      return new HashMap<>();
+  /** Calculates the sha256 of the artifacts and sources jars missing from the sha256 cache. */
+  private void preComputeSha256(Collection<ExternalDependency> dependencies) {
+    Set<File> filesToHash = new HashSet<>();
+    Consumer<File> addIfAbsent =
+        file -> {
+          if (sha256Cache.get(file) == null) {
+            filesToHash.add(file);
+          }
+        };
+    dependencies.forEach(
+        dependency -> {
+          addIfAbsent.accept(dependency.getRealDependencyFile());
+          dependency.getRealSourceFile().ifPresent(addIfAbsent);
+        });
+    if (filesToHash.isEmpty()) {
+      return;
     }
-  }
 
-  private static void persistSha256Cache(Project rootProject, HashMap<String, String> sha256Map) {
-    File projectMappingFile = rootProject.file(OkBuckGradlePlugin.OKBUCK_SHA256);
-    try {
-      FileUtil.persistMapToJsonFile(sha256Map, projectMappingFile);
-    } catch (IOException e) {
-      throw new RuntimeException(e);
+    long start = System.nanoTime();
+    try (Tracer.Span ignored = Tracer.span("hash", "sha256")) {
+      DependencyUtils.shaSum256(filesToHash, externalDependenciesExtension.getSha256Threads())
+          .forEach(sha256Cache::put);
     }
+
+    double seconds = Math.max(System.nanoTime() - start, 1) / 1e9;
+    double megabytes = filesToHash.stream().mapToLong(File::length).sum() / 1e6;
+    project
+        .getLogger()
+        .info(
+            String.format(
+                "okbuck: hashed %d file(s) (%d changed since cached), %.1f MB in %.2fs (%.1f MB/s)",
+                filesToHash.size(),
+                sha256Cache.getStaleEntryCount(),
+                megabytes,
+                seconds,
+                megabytes / seconds));
   }
+
 }
@@ -0,0 +1,135 @@
+package com.uber.okbuck.core.manager;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.uber.okbuck.core.util.Tracer;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the finalize steps of the managers once all projects are generated. Each step declares the
+ * steps it runs after, and steps that don't depend on each other run concurrently when the
+ * scheduler is given more than one thread. Most managers write disjoint workspace directories, so
+ * the finalize phase then takes about as long as its longest chain of dependent steps.
+ *
+ * <pre>
+ * new FinalizeScheduler()
+ *     .add("DependencyManager", dependencyManager::finalizeDependencies)
+ *     .add("ResolutionCache", resolutionCache::persist, "DependencyManager")
+ *     .run(threads);
+ * </pre>
+ */
+public final class FinalizeScheduler {
+
+  private final Map<String, Step> steps = new LinkedHashMap<>();
+
+  /**
+   * Adds a step to run.
+   *
+   * @param name The name of the step, which it is traced and reported as
+   * @param action The finalize action of the step
+   * @param after The steps that have to complete before this one starts, which have to be added
+   *     before it
+   * @return This scheduler
+   */
+  public FinalizeScheduler add(String name, Runnable action, String... after) {
+    for (String dependency : after) {
+      Preconditions.checkArgument(
+          steps.containsKey(dependency), "%s has to be added before %s", dependency, name);
+    }
+    Preconditions.checkArgument(!steps.containsKey(name), "%s was already added", name);
+    steps.put(name, new Step(name, action, ImmutableList.copyOf(after)));
+    return this;
+  }
+
+  /**
+   * Runs all steps and waits for them to complete. With a single thread, steps run on the calling
+   * thread in the order they were added and the first failure stops the run. Otherwise steps
+   * depending on a failed step are not run, and the failure is rethrown once all other steps
+   * completed.
+   *
+   * @param threads The maximum number of steps to run concurrently
+   */
+  public void run(int threads) {
+    if (threads <= 1 || steps.size() <= 1) {
+      steps.values().forEach(Step::run);
+      return;
+    }
+
+    ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, steps.size()));
+    try {
+      Map<String, CompletableFuture<Void>> futures = new HashMap<>();
+      for (Step step : steps.values()) {
+        CompletableFuture<?>[] dependencies =
+            step.after.stream().map(futures::get).toArray(CompletableFuture<?>[]::new);
+        futures.put(
+            step.name, CompletableFuture.allOf(dependencies).thenRunAsync(step::run, executor));
+      }
+      CompletableFuture.allOf(futures.values().toArray(new CompletableFuture<?>[0])).join();
+    } catch (CompletionException e) {
+      Throwable cause = e.getCause() != null ? e.getCause() : e;
+      Throwables.throwIfUnchecked(cause);
+      throw new IllegalStateException("Failed to finalize", cause);
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  /** Returns the time each step of the last run took in milliseconds, in the order of the steps. */
+  public Map<String, Long> getStepMillis() {
+    ImmutableMap.Builder<String, Long> builder = ImmutableMap.builder();
+    steps.forEach((name, step) -> builder.put(name, TimeUnit.NANOSECONDS.toMillis(step.nanos)));
+    return builder.build();
+  }
+
+  /** Returns the time the longest chain of dependent steps took in the last run in milliseconds. */
+  public long getCriticalPathMillis() {
+    // Steps are added after the steps they depend on, so this visits dependencies first
+    Map<String, Long> chainNanos = new HashMap<>();
+    long longest = 0;
+    for (Step step : steps.values()) {
+      long chain =
+          step.nanos
+              + step
+                  .after
+                  .stream()
+                  .mapToLong(dependency -> chainNanos.getOrDefault(dependency, 0L))
+                  .max()
+                  .orElse(0);
+      chainNanos.put(step.name, chain);
+      longest = Math.max(longest, chain);
+    }
+    return TimeUnit.NANOSECONDS.toMillis(longest);
+  }
+
+  private static final class Step {
+    private final String name;
+    private final Runnable action;
+    private final List<String> after;
+    private volatile long nanos;
+
+    private Step(String name, Runnable action, List<String> after) {
+      this.name = name;
+      this.action = action;
+      this.after = after;
+    }
+
+    private void run() {
+      long start = System.nanoTime();
+      try {
+        Tracer.trace("finalize", name, action);
+      } finally {
+        nanos = System.nanoTime() - start;
+      }
+    }
+  }
+}
@@ -0,0 +1,747 @@
+package com.uber.okbuck.core.manager;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.android.build.gradle.BaseExtension;
+import com.android.build.gradle.api.AndroidSourceSet;
+import com.google.common.base.Preconditions;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteStreams;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+import com.google.gson.reflect.TypeToken;
+import com.uber.okbuck.OkBuckGradlePlugin;
+import com.uber.okbuck.core.annotation.AnnotationProcessorCache;
+import com.uber.okbuck.core.dependency.DependencyRecord;
+import com.uber.okbuck.core.dependency.DependencyUtils;
+import com.uber.okbuck.core.dependency.ExternalDependency;
+import com.uber.okbuck.core.dependency.SourcesResolver;
+import com.uber.okbuck.core.util.FileUtil;
+import com.uber.okbuck.core.util.ProjectUtil;
+import com.uber.okbuck.extension.OkBuckExtension;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.file.Files;
+import java.security.CodeSource;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import javax.annotation.Nullable;
+import org.gradle.api.Project;
+import org.gradle.api.artifacts.Configuration;
+import org.gradle.api.artifacts.Dependency;
+import org.gradle.api.artifacts.DependencyArtifact;
+import org.gradle.api.artifacts.ExcludeRule;
+import org.gradle.api.artifacts.FileCollectionDependency;
+import org.gradle.api.artifacts.ModuleDependency;
+import org.gradle.api.artifacts.ProjectDependency;
+import org.gradle.api.attributes.AttributeContainer;
+import org.gradle.api.plugins.JavaPluginConvention;
+import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.Nested;
+import org.gradle.api.tasks.SourceSet;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps track of a fingerprint of every input that goes into generating a project's buck file, so
+ * that projects whose inputs did not change since the last run can skip regeneration.
+ *
+ * <p>Generating a project's buck file also registers dependencies, annotation processors and
+ * exported files with the shared managers. These side effects are journaled while the project is
+ * generated and replayed into the managers when the project is skipped, so that the workspace
+ * written at the end of the run stays complete.
+ *
+ * <p>The projects each project depends on are recorded as well, so that a run can regenerate only
+ * a set of changed projects and the projects depending on them, see {@link
+ * #regenerateOnly(Set)}.
+ */
+public final class FingerprintManager {
+
+  private static final Logger LOG = LoggerFactory.getLogger(FingerprintManager.class);
+
+  private static final ThreadLocal<ProjectState> CURRENT_STATE = new ThreadLocal<>();
+  private static final String ROOT_INPUT_EXTENSION = ".gradle";
+  private static final String[] ROOT_INPUT_DIRS = {".", "gradle"};
+  private static final String[] ROOT_INPUT_FILES = {"gradle.properties", "local.properties"};
+  private static final String LOCKFILES_DIR = "gradle/dependency-locks/";
+  private static final String LOCKFILE_EXTENSION = ".lockfile";
+
+  private final Project rootProject;
+  private final OkBuckExtension okBuckExtension;
+  private final BuckFileManager buckFileManager;
+  private final File stateFile;
+  private final Map<String, ProjectState> previousStates;
+  private final Map<String, ProjectState> currentStates = new ConcurrentHashMap<>();
+  private final Map<String, String> fingerprints = new ConcurrentHashMap<>();
+  private final Map<String, Set<String>> upstreamPaths = new ConcurrentHashMap<>();
+  private final Set<String> dynamicProjects = ConcurrentHashMap.newKeySet();
+  private final AtomicInteger skipped = new AtomicInteger();
+  private final AtomicInteger regenerated = new AtomicInteger();
+
+  @Nullable private volatile String globalFingerprint;
+  @Nullable private volatile Set<String> affectedProjects;
+
+  public FingerprintManager(
+      Project rootProject,
+      OkBuckExtension okBuckExtension,
+      BuckFileManager buckFileManager,
+      String fingerprintsFile) {
+    this.rootProject = rootProject;
+    this.okBuckExtension = okBuckExtension;
+    this.buckFileManager = buckFileManager;
+    this.stateFile = rootProject.file(fingerprintsFile);
+    this.previousStates = readStates(stateFile);
+  }
+
+  /**
+   * Reuses the buck file generated for the project in the previous run if none of its inputs
+   * changed. The side effects recorded while generating it are replayed into the managers and the
+   * generated part of the buck file is deferred with the buck file manager like a regenerated one.
+   *
+   * @param project project to check.
+   * @return whether the project's buck file was reused and does not need to be generated.
+   */
+  public boolean reuse(Project project) {
+    ProjectState previous = previousStates.get(project.getPath());
+    if (previous != null && previous.dynamic) {
+      // What dynamic dependencies resolve to may have changed without any change to the build
+      return false;
+    }
+    Set<String> affected = affectedProjects;
+    if (affected != null) {
+      // Only changed projects and their dependents are regenerated, without fingerprinting others
+      if (previous == null
+          || affected.contains(project.getPath())
+          || !isReusable(project, previous)) {
+        return false;
+      }
+    } else if (previous == null
+        || !previous.fingerprint.equals(getFingerprint(project))
+        || !isReusable(project, previous)) {
+      return false;
+    }
+
+    File buckFile = buckFile(project);
+    try (InputStream is = new FileInputStream(buckFile)) {
+      buckFileManager.deferBuckFile(
+          ByteStreams.toByteArray(ByteStreams.limit(is, previous.generatedLength)), buckFile);
+    } catch (IOException e) {
+      return false;
+    }
+
+    replay(project, previous);
+    currentStates.put(project.getPath(), previous);
+    skipped.incrementAndGet();
+    return true;
+  }
+
+  /**
+   * Generates the project's buck file while recording the side effects of the generation. The
+   * generator is expected to defer the buck file with the buck file manager.
+   *
+   * @param project project to generate.
+   * @param generator generates the buck file of the project.
+   */
+  public void generate(Project project, Runnable generator) {
+    ProjectState state =
+        new ProjectState(
+            getFingerprint(project),
+            new TreeSet<>(upstreamPaths.getOrDefault(project.getPath(), Collections.emptySet())),
+            hasDynamicDependencies(project));
+    CURRENT_STATE.set(state);
+    try {
+      generator.run();
+    } finally {
+      CURRENT_STATE.remove();
+    }
+
+    state.generatedLength = buckFileManager.getDeferredBuckFile(buckFile(project)).length;
+    currentStates.put(project.getPath(), state);
+    regenerated.incrementAndGet();
+  }
+
+  /**
+   * Regenerates only the given projects and the projects that depend on them, directly or not,
+   * according to the project dependencies recorded by the previous run. All other projects reuse
+   * their previous buck file without checking their fingerprint. Does nothing if the previous run
+   * did not record the dependencies of every project.
+   *
+   * @param changedProjectPaths paths of the projects whose inputs changed, ex. ":app".
+   * @return the number of projects that will be regenerated, or -1 if all of them will be checked.
+   */
+  public int regenerateOnly(Set<String> changedProjectPaths) {
+    if (previousStates.isEmpty()
+        || previousStates.values().stream().anyMatch(state -> state.upstreamProjects == null)) {
+      return -1;
+    }
+
+    Map<String, Set<String>> dependents = new HashMap<>();
+    previousStates.forEach(
+        (path, state) -> {
+          for (String upstream : Preconditions.checkNotNull(state.upstreamProjects)) {
+            dependents.computeIfAbsent(upstream, k -> new HashSet<>()).add(path);
+          }
+        });
+
+    Set<String> affected = new HashSet<>();
+    Deque<String> queue = new ArrayDeque<>(changedProjectPaths);
+    while (!queue.isEmpty()) {
+      String path = queue.pop();
+      if (affected.add(path)) {
+        queue.addAll(dependents.getOrDefault(path, Collections.emptySet()));
+      }
+    }
+    affectedProjects = affected;
+    return affected.size();
+  }
+
+  /**
+   * Returns whether the project or any project it depends on declares a dynamic or changing
+   * dependency, see {@link DependencyUtils#isDynamic}. The fingerprint only covers declared
+   * dependencies, so neither the buck file nor the resolved configurations of such a project can
+   * be reused across runs.
+   *
+   * @param project project to check.
+   * @return whether the project depends on dynamic dependencies.
+   */
+  public boolean hasDynamicDependencies(Project project) {
+    getFingerprint(project);
+    return dynamicProjects.contains(project.getPath());
+  }
+
+  /**
+   * Returns a fingerprint of the inputs of resolving a configuration: the fingerprint of its
+   * project, which covers the declared dependencies of the project and of the projects it depends
+   * on, along with the attributes, constraints, forced modules, repositories and lockfile of the
+   * configuration.
+   *
+   * @param project project owning the configuration.
+   * @param configuration configuration to fingerprint.
+   * @return the fingerprint of the configuration.
+   */
+  public String getConfigurationFingerprint(Project project, Configuration configuration) {
+    Hasher hasher = Hashing.sha256().newHasher();
+    hasher.putString(getFingerprint(project), UTF_8);
+    hasher.putString(configuration.getName(), UTF_8);
+
+    AttributeContainer attributes = configuration.getAttributes();
+    attributes
+        .keySet()
+        .stream()
+        .map(attribute -> attribute.getName() + "=" + attributes.getAttribute(attribute))
+        .sorted()
+        .forEach(attribute -> hasher.putString(attribute, UTF_8));
+    configuration
+        .getAllDependencyConstraints()
+        .stream()
+        .map(
+            constraint ->
+                constraint.getGroup() + ":" + constraint.getName() + ":" + constraint.getVersion())
+        .sorted()
+        .forEach(constraint -> hasher.putString("~" + constraint, UTF_8));
+    configuration
+        .getResolutionStrategy()
+        .getForcedModules()
+        .stream()
+        .map(forced -> forced.getGroup() + ":" + forced.getName() + ":" + forced.getVersion())
+        .sorted()
+        .forEach(forced -> hasher.putString("!" + forced, UTF_8));
+
+    hasher.putString(SourcesResolver.getRepositoriesKey(project), UTF_8);
+    putFile(hasher, project.file(LOCKFILES_DIR + configuration.getName() + LOCKFILE_EXTENSION));
+    return hasher.hash().toString();
+  }
+
+  /** Persists the fingerprints of this run and reports how many projects were skipped. */
+  public void finalizeFingerprints() {
+    currentStates.values().forEach(ProjectState::recordGeneratedDependencies);
+    writeStates(stateFile, new TreeMap<>(currentStates));
+    rootProject
+        .getLogger()
+        .info(
+            "okbuck: {} project(s) regenerated, {} project(s) skipped as unchanged",
+            regenerated.get(),
+            skipped.get());
+  }
+
+  static void recordDependency(ExternalDependency dependency, boolean skipPrebuilt) {
+    ProjectState state = CURRENT_STATE.get();
+    if (state != null) {
+      // Recorded once the run is over since sources jars are only set on dependencies at the end
+      (skipPrebuilt ? state.generatedSkipPrebuiltDependencies : state.generatedDependencies)
+          .add(dependency);
+    }
+  }
+
+  static void recordRawDependencies(Set<org.gradle.api.artifacts.ExternalDependency> dependencies) {
+    ProjectState state = CURRENT_STATE.get();
+    if (state != null) {
+      dependencies.forEach(
+          dependency ->
+              notations(dependency)
+                  .forEach(
+                      notation -> state.rawDependencies.put(notation, dependency.isTransitive())));
+    }
+  }
+
+  public static void recordProcessorConfiguration(Configuration configuration, boolean scopes) {
+    ProjectState state = CURRENT_STATE.get();
+    if (state != null) {
+      (scopes ? state.processorConfigurations : state.checkedProcessorConfigurations)
+          .add(configuration.getName());
+    }
+  }
+
+  public static void recordExportedPath(String path) {
+    ProjectState state = CURRENT_STATE.get();
+    if (state != null) {
+      state.exportedPaths.add(path);
+    }
+  }
+
+  private boolean isReusable(Project project, ProjectState state) {
+    File buckFile = buckFile(project);
+    return (state.generatedLength == 0 || buckFile.exists())
+        && buckFile.length() >= state.generatedLength
+        && state.dependencies.stream().allMatch(DependencyRecord::isValid)
+        && state.skipPrebuiltDependencies.stream().allMatch(DependencyRecord::isValid);
+  }
+
+  private void replay(Project project, ProjectState state) {
+    DependencyManager dependencyManager = ProjectUtil.getDependencyManager(project);
+    state.dependencies.forEach(
+        record -> dependencyManager.addDependency(toDependency(record), false));
+    state.skipPrebuiltDependencies.forEach(
+        record -> dependencyManager.addDependency(toDependency(record), true));
+
+    if (!state.rawDependencies.isEmpty()) {
+      Set<org.gradle.api.artifacts.ExternalDependency> rawDependencies = new HashSet<>();
+      state.rawDependencies.forEach(
+          (notation, transitive) -> {
+            org.gradle.api.artifacts.ExternalDependency dependency =
+                (org.gradle.api.artifacts.ExternalDependency)
+                    project.getDependencies().create(notation);
+            dependency.setTransitive(transitive);
+            rawDependencies.add(dependency);
+          });
+      dependencyManager.addDependencies(rawDependencies);
+    }
+
+    AnnotationProcessorCache processorCache = ProjectUtil.getAnnotationProcessorCache(project);
+    state.processorConfigurations.forEach(
+        configuration -> processorCache.getAnnotationProcessorScopes(project, configuration));
+    state.checkedProcessorConfigurations.forEach(
+        configuration -> processorCache.hasEmptyAnnotationProcessors(project, configuration));
+
+    OkBuckGradlePlugin plugin = ProjectUtil.getPlugin(project);
+    state.exportedPaths.forEach(plugin::addExportedPath);
+  }
+
+  private ExternalDependency toDependency(DependencyRecord record) {
+    return record.toDependency(
+        okBuckExtension.getExternalDependenciesExtension(),
+        okBuckExtension.getJetifierExtension());
+  }
+
+  private String getFingerprint(Project project) {
+    return getFingerprint(project, new HashSet<>());
+  }
+
+  private String getFingerprint(Project project, Set<String> visiting) {
+    String fingerprint = fingerprints.get(project.getPath());
+    if (fingerprint != null) {
+      return fingerprint;
+    }
+    if (!visiting.add(project.getPath())) {
+      // Cyclic project dependency, only the path can contribute to the fingerprint.
+      return project.getPath();
+    }
+
+    Hasher hasher = Hashing.sha256().newHasher();
+    hasher.putString(getGlobalFingerprint(), UTF_8);
+    hasher.putString(project.getPath(), UTF_8);
+    putFile(hasher, project.getBuildFile());
+    putFile(hasher, project.file(okBuckExtension.getVisibilityExtension().visibilityFileName));
+    putSourceLayout(hasher, project);
+
+    Set<Project> upstreamProjects = new TreeSet<>();
+    project
+        .getConfigurations()
+        .stream()
+        .sorted((c1, c2) -> c1.getName().compareTo(c2.getName()))
+        .forEach(
+            configuration -> {
+              hasher.putString(configuration.getName(), UTF_8);
+              configuration
+                  .getExtendsFrom()
+                  .forEach(parent -> hasher.putString("<" + parent.getName(), UTF_8));
+              if (configuration.getDependencies().stream().anyMatch(DependencyUtils::isDynamic)) {
+                dynamicProjects.add(project.getPath());
+              }
+              configuration
+                  .getDependencies()
+                  .stream()
+                  .map(dependency -> describe(dependency, upstreamProjects))
+                  .sorted()
+                  .forEach(description -> hasher.putString(description, UTF_8));
+            });
+
+    for (Project upstream : upstreamProjects) {
+      if (!upstream.equals(project)) {
+        hasher.putString(getFingerprint(upstream, visiting), UTF_8);
+        if (dynamicProjects.contains(upstream.getPath())) {
+          dynamicProjects.add(project.getPath());
+        }
+      }
+    }
+
+    fingerprint = hasher.hash().toString();
+    visiting.remove(project.getPath());
+    upstreamPaths.put(
+        project.getPath(),
+        upstreamProjects
+            .stream()
+            .filter(upstream -> !upstream.equals(project))
+            .map(Project::getPath)
+            .collect(Collectors.toSet()));
+    fingerprints.putIfAbsent(project.getPath(), fingerprint);
+    return fingerprint;
+  }
+
+  /**
+   * Fingerprint of the inputs shared by all projects: the okbuck configuration, the root build
+   * scripts and the okbuck plugin itself.
+   */
+  private String getGlobalFingerprint() {
+    String fingerprint = globalFingerprint;
+    if (fingerprint == null) {
+      Hasher hasher = Hashing.sha256().newHasher();
+      hasher.putString(rootProject.getGradle().getGradleVersion(), UTF_8);
+      hasher.putString(
+          describe(okBuckExtension, Collections.newSetFromMap(new IdentityHashMap<>())), UTF_8);
+
+      for (String inputDir : ROOT_INPUT_DIRS) {
+        File[] scripts =
+            rootProject.file(inputDir).listFiles(f -> f.getName().endsWith(ROOT_INPUT_EXTENSION));
+        if (scripts != null) {
+          Arrays.sort(scripts);
+          for (File script : scripts) {
+            putFile(hasher, script);
+          }
+        }
+      }
+      for (String inputFile : ROOT_INPUT_FILES) {
+        putFile(hasher, rootProject.file(inputFile));
+      }
+
+      CodeSource codeSource = FingerprintManager.class.getProtectionDomain().getCodeSource();
+      if (codeSource != null) {
+        File pluginFile = new File(codeSource.getLocation().getPath());
+        hasher.putString(pluginFile.getAbsolutePath(), UTF_8);
+        hasher.putLong(pluginFile.length());
+        hasher.putLong(pluginFile.lastModified());
+      }
+
+      fingerprint = hasher.hash().toString();
+      globalFingerprint = fingerprint;
+    }
+    return fingerprint;
+  }
+
+  /**
+   * Source directories only contribute whether they contain any file, with the same rule as {@link
+   * FileUtil#available}, and manifests contribute their contents. Both the directories declared by
+   * the android and java source sets, which can live outside of src, and the ones found under src
+   * are covered.
+   */
+  private static void putSourceLayout(Hasher hasher, Project project) {
+    Set<File> dirs = new TreeSet<>();
+    Set<File> files = new TreeSet<>();
+
+    File[] sourceSets = project.file("src").listFiles(File::isDirectory);
+    if (sourceSets != null) {
+      for (File sourceSet : sourceSets) {
+        File[] children = sourceSet.listFiles();
+        if (children != null) {
+          for (File child : children) {
+            (child.isDirectory() ? dirs : files).add(child);
+          }
+        }
+      }
+    }
+
+    BaseExtension android = project.getExtensions().findByType(BaseExtension.class);
+    if (android != null) {
+      for (AndroidSourceSet sourceSet : android.getSourceSets()) {
+        dirs.addAll(sourceSet.getJava().getSrcDirs());
+        dirs.addAll(sourceSet.getResources().getSrcDirs());
+        dirs.addAll(sourceSet.getRes().getSrcDirs());
+        dirs.addAll(sourceSet.getAssets().getSrcDirs());
+        dirs.addAll(sourceSet.getAidl().getSrcDirs());
+        dirs.addAll(sourceSet.getJni().getSrcDirs());
+        dirs.addAll(sourceSet.getJniLibs().getSrcDirs());
+        files.add(sourceSet.getManifest().getSrcFile());
+      }
+    }
+
+    JavaPluginConvention java = project.getConvention().findPlugin(JavaPluginConvention.class);
+    if (java != null) {
+      for (SourceSet sourceSet : java.getSourceSets()) {
+        dirs.addAll(sourceSet.getAllSource().getSrcDirs());
+      }
+    }
+
+    for (File dir : dirs) {
+      hasher.putString(project.relativePath(dir), UTF_8);
+      hasher.putBoolean(FileUtil.hasFiles(dir));
+    }
+    for (File file : files) {
+      hasher.putString(project.relativePath(file), UTF_8);
+      putFile(hasher, file);
+    }
+  }
+
+  private static void putFile(Hasher hasher, File file) {
+    hasher.putString(file.getName(), UTF_8);
+    if (file.isFile()) {
+      try {
+        hasher.putBytes(Files.readAllBytes(file.toPath()));
+      } catch (IOException e) {
+        throw new IllegalStateException("Could not read " + file, e);
+      }
+    } else {
+      hasher.putBoolean(false);
+    }
+  }
+
+  private static String describe(Dependency dependency, Set<Project> upstreamProjects) {
+    StringBuilder builder = new StringBuilder(dependency.getClass().getSimpleName());
+    if (dependency instanceof ProjectDependency) {
+      Project upstream = ((ProjectDependency) dependency).getDependencyProject();
+      upstreamProjects.add(upstream);
+      builder
+          .append(':')
+          .append(upstream.getPath())
+          .append(':')
+          .append(((ProjectDependency) dependency).getTargetConfiguration());
+    } else if (dependency instanceof FileCollectionDependency) {
+      ((FileCollectionDependency) dependency)
+          .getFiles()
+          .getFiles()
+          .stream()
+          .sorted()
+          .forEach(
+              file ->
+                  builder
+                      .append(':')
+                      .append(file.getAbsolutePath())
+                      .append('@')
+                      .append(file.length())
+                      .append('@')
+                      .append(file.lastModified()));
+    } else {
+      builder
+          .append(':')
+          .append(dependency.getGroup())
+          .append(':')
+          .append(dependency.getName())
+          .append(':')
+          .append(dependency.getVersion());
+    }
+
+    if (dependency instanceof ModuleDependency) {
+      ModuleDependency moduleDependency = (ModuleDependency) dependency;
+      builder.append(":transitive=").append(moduleDependency.isTransitive());
+      for (DependencyArtifact artifact : moduleDependency.getArtifacts()) {
+        builder
+            .append(":artifact=")
+            .append(artifact.getClassifier())
+            .append('@')
+            .append(artifact.getExtension());
+      }
+      for (ExcludeRule exclude : moduleDependency.getExcludeRules()) {
+        builder
+            .append(":exclude=")
+            .append(exclude.getGroup())
+            .append(':')
+            .append(exclude.getModule());
+      }
+    }
+    return builder.toString();
+  }
+
+  /**
+   * Renders the configured values of an okbuck extension in a stable order so that any change to
+   * the okbuck configuration changes the fingerprint. Only the {@link Input} and {@link Nested}
+   * fields of extensions are rendered, leaving out derived caches, which are filled depending on
+   * access order, and settings that only tune how okbuck runs.
+   */
+  private static String describe(@Nullable Object value, Set<Object> visited) {
+    if (value == null) {
+      return "null";
+    }
+    if (value instanceof Project) {
+      return ((Project) value).getPath();
+    }
+    if (value instanceof File) {
+      return ((File) value).getAbsolutePath();
+    }
+    if (value instanceof Enum) {
+      return ((Enum<?>) value).name();
+    }
+    if (value instanceof Map) {
+      return ((Map<?, ?>) value)
+          .entrySet()
+          .stream()
+          .map(
+              entry ->
+                  describe(entry.getKey(), visited) + "=" + describe(entry.getValue(), visited))
+          .sorted()
+          .collect(Collectors.joining(",", "{", "}"));
+    }
+    if (value instanceof Collection) {
+      List<String> values =
+          ((Collection<?>) value)
+              .stream()
+              .map(element -> describe(element, visited))
+              .collect(Collectors.toCollection(ArrayList::new));
+      if (!(value instanceof List)) {
+        Collections.sort(values);
+      }
+      return values.toString();
+    }
+    if (!value.getClass().getName().startsWith("com.uber.okbuck") || !visited.add(value)) {
+      return value.toString();
+    }
+
+    boolean extension = value.getClass().getName().endsWith("Extension");
+    Map<String, String> fields = new TreeMap<>();
+    for (Class<?> type = value.getClass();
+        type != null && type.getName().startsWith("com.uber.okbuck");
+        type = type.getSuperclass()) {
+      for (Field field : type.getDeclaredFields()) {
+        if (Modifier.isStatic(field.getModifiers())
+            || field.isSynthetic()
+            || (extension
+                && !field.isAnnotationPresent(Input.class)
+                && !field.isAnnotationPresent(Nested.class))) {
+          continue;
+        }
+        try {
+          field.setAccessible(true);
+          fields.put(field.getName(), describe(field.get(value), visited));
+        } catch (IllegalAccessException e) {
+          throw new IllegalStateException(e);
+        }
+      }
+    }
+    return fields.toString();
+  }
+
+  private static List<String> notations(org.gradle.api.artifacts.ExternalDependency dependency) {
+    String coordinates =
+        dependency.getGroup() + ":" + dependency.getName() + ":" + dependency.getVersion();
+    if (dependency.getArtifacts().isEmpty()) {
+      return Collections.singletonList(coordinates);
+    }
+    return dependency
+        .getArtifacts()
+        .stream()
+        .map(
+            artifact ->
+                coordinates
+                    + (artifact.getClassifier() != null ? ":" + artifact.getClassifier() : "")
+                    + "@"
+                    + artifact.getExtension())
+        .collect(Collectors.toList());
+  }
+
+  private static File buckFile(Project project) {
+    return project.file(OkBuckGradlePlugin.BUCK);
+  }
+
+  private static Map<String, ProjectState> readStates(File file) {
+    if (!file.exists()) {
+      return new HashMap<>();
+    }
+    try (Reader reader = Files.newBufferedReader(file.toPath(), UTF_8)) {
+      Map<String, ProjectState> states =
+          new Gson().fromJson(reader, new TypeToken<HashMap<String, ProjectState>>() {}.getType());
+      return states != null ? states : new HashMap<>();
+    } catch (IOException | JsonParseException e) {
+      LOG.warn("Ignoring unreadable fingerprints file {}", file, e);
+      return new HashMap<>();
+    }
+  }
+
+  private static void writeStates(File file, Map<String, ProjectState> states) {
+    file.getParentFile().mkdirs();
+    try (Writer writer = Files.newBufferedWriter(file.toPath(), UTF_8)) {
+      new GsonBuilder().setPrettyPrinting().create().toJson(states, writer);
+    } catch (IOException e) {
+      throw new IllegalStateException("Could not write " + file, e);
+    }
+  }
+
+  /** The fingerprint of a project along with the side effects of generating its buck file. */
+  private static final class ProjectState {
+    private String fingerprint = "";
+    private long generatedLength;
+    private Set<DependencyRecord> dependencies = new LinkedHashSet<>();
+    private Set<DependencyRecord> skipPrebuiltDependencies = new LinkedHashSet<>();
+    private Map<String, Boolean> rawDependencies = new LinkedHashMap<>();
+    private Set<String> processorConfigurations = new LinkedHashSet<>();
+    private Set<String> checkedProcessorConfigurations = new LinkedHashSet<>();
+    private Set<String> exportedPaths = new LinkedHashSet<>();
+    private boolean dynamic;
+
+    /** Paths of the projects this project depends on, missing in states of older versions. */
+    @Nullable private Set<String> upstreamProjects;
+
+    private transient Set<ExternalDependency> generatedDependencies = new LinkedHashSet<>();
+    private transient Set<ExternalDependency> generatedSkipPrebuiltDependencies =
+        new LinkedHashSet<>();
+
+    private ProjectState() {}
+
+    ProjectState(String fingerprint, Set<String> upstreamProjects, boolean dynamic) {
+      this.fingerprint = fingerprint;
+      this.upstreamProjects = upstreamProjects;
+      this.dynamic = dynamic;
+    }
+
+    void recordGeneratedDependencies() {
+      generatedDependencies.forEach(
+          dependency -> dependencies.add(DependencyRecord.of(dependency)));
+      generatedSkipPrebuiltDependencies.forEach(
+          dependency -> skipPrebuiltDependencies.add(DependencyRecord.of(dependency)));
+      generatedDependencies.clear();
+      generatedSkipPrebuiltDependencies.clear();
+    }
+  }
+}
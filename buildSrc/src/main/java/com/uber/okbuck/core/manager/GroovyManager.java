@@ -6,6 +6,7 @@ import com.uber.okbuck.composer.base.BuckRuleComposer;
 import com.uber.okbuck.core.dependency.DependencyCache;
 import com.uber.okbuck.core.dependency.ExternalDependency;
 import com.uber.okbuck.core.util.FileUtil;
+import com.uber.okbuck.core.util.OutputManifest;
 import com.uber.okbuck.core.util.ProjectUtil;
 import com.uber.okbuck.template.config.groovy.GroovyBuckFile;
 import com.uber.okbuck.template.config.groovy.Groovyc;
@@ -51,7 +52,7 @@ public final class GroovyManager {
 
   public void finalizeDependencies() {
     File groovyHome = rootProject.file(GROOVY_HOME_LOCATION);
-    FileUtil.deleteQuietly(groovyHome.toPath());
+    OutputManifest.manageDirectory(groovyHome.toPath());
 
     if (dependencies != null && dependencies.size() > 0) {
 
@@ -9,6 +9,7 @@ import com.uber.okbuck.core.dependency.DependencyCache;
 import com.uber.okbuck.core.dependency.ExternalDependency;
 import com.uber.okbuck.core.model.base.RuleType;
 import com.uber.okbuck.core.util.FileUtil;
+import com.uber.okbuck.core.util.OutputManifest;
 import com.uber.okbuck.core.util.ProjectUtil;
 import com.uber.okbuck.extension.JetifierExtension;
 import com.uber.okbuck.extension.OkBuckExtension;
@@ -85,7 +86,7 @@ public final class JetifierManager {
 
   public void finalizeDependencies() {
     Path jetifierCache = project.file(JETIFIER_LOCATION).toPath();
-    FileUtil.deleteQuietly(jetifierCache);
+    OutputManifest.manageDirectory(jetifierCache);
 
     if (dependencies != null && dependencies.size() > 0) {
       jetifierCache.toFile().mkdirs();
@@ -119,7 +120,7 @@ public final class JetifierManager {
 
         String relativeConfigPath =
             FileUtil.getRelativePath(project.getRootProject().getProjectDir(), configFile);
-        ProjectUtil.getPlugin(project.getRootProject()).exportedPaths.add(relativeConfigPath);
+        ProjectUtil.getPlugin(project.getRootProject()).addExportedPath(relativeConfigPath);
       }
 
       buckFileManager.writeToBuckFile(
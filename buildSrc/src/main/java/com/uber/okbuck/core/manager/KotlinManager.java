@@ -7,7 +7,7 @@ import com.uber.okbuck.composer.base.BuckRuleComposer;
 import com.uber.okbuck.core.dependency.DependencyCache;
 import com.uber.okbuck.core.dependency.ExternalDependency;
 import com.uber.okbuck.core.model.base.RuleType;
-import com.uber.okbuck.core.util.FileUtil;
+import com.uber.okbuck.core.util.OutputManifest;
 import com.uber.okbuck.core.util.ProjectUtil;
 import com.uber.okbuck.template.config.SymlinkBuckFile;
 import com.uber.okbuck.template.core.Rule;
@@ -89,7 +89,7 @@ public final class KotlinManager {
 
   public void finalizeDependencies() {
     Path path = project.file(KOTLIN_HOME_LOCATION).toPath();
-    FileUtil.deleteQuietly(path);
+    OutputManifest.manageDirectory(path);
 
     if (!kotlinHomeEnabled) {
       // no-op if kotlin home is not enabled
@@ -9,6 +9,7 @@ import com.uber.okbuck.core.dependency.DependencyCache;
 import com.uber.okbuck.core.dependency.ExternalDependency;
 import com.uber.okbuck.core.model.base.RuleType;
 import com.uber.okbuck.core.util.FileUtil;
+import com.uber.okbuck.core.util.OutputManifest;
 import com.uber.okbuck.core.util.ProjectUtil;
 import com.uber.okbuck.template.core.Rule;
 import com.uber.okbuck.template.java.NativePrebuilt;
@@ -74,7 +75,7 @@ public final class LintManager {
 
   public void finalizeDependencies() {
     Path lintCache = project.file(LINT_DEPS_CACHE).toPath();
-    FileUtil.deleteQuietly(lintCache);
+    OutputManifest.manageDirectory(lintCache);
 
     if (dependencies != null && dependencies.size() > 0) {
       lintCache.toFile().mkdirs();
@@ -6,7 +6,7 @@ import com.uber.okbuck.OkBuckGradlePlugin;
 import com.uber.okbuck.composer.base.BuckRuleComposer;
 import com.uber.okbuck.core.dependency.DependencyCache;
 import com.uber.okbuck.core.dependency.ExternalDependency;
-import com.uber.okbuck.core.util.FileUtil;
+import com.uber.okbuck.core.util.OutputManifest;
 import com.uber.okbuck.core.util.ProjectUtil;
 import com.uber.okbuck.template.config.SymlinkBuckFile;
 import com.uber.okbuck.template.core.Rule;
@@ -70,7 +70,7 @@ public final class RobolectricManager {
 
   public void finalizeDependencies() {
     Path robolectricCache = rootProject.file(ROBOLECTRIC_CACHE).toPath();
-    FileUtil.deleteQuietly(robolectricCache);
+    OutputManifest.manageDirectory(robolectricCache);
 
     if (dependencies != null && dependencies.size() > 0) {
       robolectricCache.toFile().mkdirs();
@@ -11,7 +11,9 @@ import com.uber.okbuck.core.model.android.AndroidAppTarget;
 import com.uber.okbuck.core.model.base.RuleType;
 import com.uber.okbuck.core.model.base.Scope;
 import com.uber.okbuck.core.util.FileUtil;
+import com.uber.okbuck.core.util.OutputManifest;
 import com.uber.okbuck.core.util.ProjectUtil;
+import com.uber.okbuck.template.common.ExportFile;
 import com.uber.okbuck.template.core.Rule;
 import com.uber.okbuck.template.java.NativePrebuilt;
 import com.uber.okbuck.template.jvm.JvmBinaryRule;
@@ -35,6 +37,9 @@ public final class TransformManager {
   private static final String TRANSFORM_FOLDER = "transform/";
   private static final String TRANSFORM_JAR = "transform-cli-1.1.0.jar";
   private static final String TRANSFORM_JAR_RULE = "//" + TRANSFORM_CACHE + ":" + TRANSFORM_JAR;
+  private static final String TRANSFORM_WORKER = "transform_worker.py";
+  private static final String TRANSFORM_WORKER_RULE =
+      "//" + TRANSFORM_CACHE + ":" + TRANSFORM_WORKER;
 
   private static final String OPT_TRANSFORM_CLASS = "transform";
   private static final String OPT_CONFIG_FILE = "configFile";
@@ -46,6 +51,13 @@ public final class TransformManager {
           + TransformManager.TRANSFORM_RULE
           + ") "
           + "com.uber.okbuck.transform.CliTransform; ";
+  private static final String WORKER_PREFIX =
+      "python $(location "
+          + TRANSFORM_WORKER_RULE
+          + ") --jar $(location "
+          + TRANSFORM_RULE
+          + ") --in-jars-dir $IN_JARS_DIR --out-jars-dir $OUT_JARS_DIR "
+          + "--android-bootclasspath $ANDROID_BOOTCLASSPATH ";
   private static final String OKBUCK_TRANSFORM_TARGET_NAME = "okbuck_transform";
   private static final String BINARY_EXCLUDES = "META-INF";
 
@@ -78,10 +90,10 @@ public final class TransformManager {
   }
 
   public void finalizeDependencies() {
-    if (dependencies != null && dependencies.size() > 0) {
-      Path cacheDir = rootProject.file(TRANSFORM_CACHE).toPath();
-      FileUtil.deleteQuietly(cacheDir);
+    Path cacheDir = rootProject.file(TRANSFORM_CACHE).toPath();
+    OutputManifest.manageDirectory(cacheDir);
 
+    if (dependencies != null && dependencies.size() > 0) {
       cacheDir.toFile().mkdirs();
 
       copyFiles(cacheDir);
@@ -92,6 +104,8 @@ public final class TransformManager {
   private static void copyFiles(Path cacheDir) {
     FileUtil.copyResourceToProject(
         TRANSFORM_FOLDER + TRANSFORM_JAR, new File(cacheDir.toFile(), TRANSFORM_JAR));
+    FileUtil.copyResourceToProject(
+        TRANSFORM_FOLDER + TRANSFORM_WORKER, new File(cacheDir.toFile(), TRANSFORM_WORKER));
   }
 
   private void composeBuckFile(Path cacheDir) {
@@ -105,6 +119,7 @@ public final class TransformManager {
                   .prebuilt(TRANSFORM_JAR)
                   .ruleType(RuleType.PREBUILT_JAR.getBuckName())
                   .name(TRANSFORM_JAR))
+          .add(new ExportFile().name(TRANSFORM_WORKER))
           .add(
               new JvmBinaryRule()
                   .excludes(Collections.singleton(BINARY_EXCLUDES))
@@ -119,15 +134,26 @@ public final class TransformManager {
   }
 
   public Pair<String, List<String>> getBashCommandAndTransformDeps(AndroidAppTarget target) {
+    boolean useWorker =
+        ProjectUtil.getOkBuckExtension(rootProject).getTransformExtension().useWorker;
     List<Pair<String, String>> results =
         target
             .getTransforms()
             .stream()
-            .map(it -> getBashCommandAndTransformDeps(target, it))
+            .map(
+                it ->
+                    useWorker
+                        ? getWorkerBashCommandAndTransformDeps(target, it)
+                        : getBashCommandAndTransformDeps(target, it))
             .collect(Collectors.toList());
+    List<String> transformDeps =
+        results.stream().map(Pair::getRight).filter(Objects::nonNull).collect(Collectors.toList());
+    if (useWorker) {
+      transformDeps.add(TRANSFORM_WORKER_RULE);
+    }
     return Pair.of(
         String.join(" ", results.stream().map(Pair::getLeft).collect(Collectors.toList())),
-        results.stream().map(Pair::getRight).filter(Objects::nonNull).collect(Collectors.toList()));
+        transformDeps);
   }
 
   private static Pair<String, String> getBashCommandAndTransformDeps(
@@ -150,10 +176,31 @@ public final class TransformManager {
     return Pair.of(bashCmd.toString(), configFileRule);
   }
 
+  /** Runs the transform on a long lived worker shared by all transforms, through its client. */
+  private static Pair<String, String> getWorkerBashCommandAndTransformDeps(
+      AndroidAppTarget target, Map<String, String> options) {
+    String transformClass = options.get(OPT_TRANSFORM_CLASS);
+    String configFile = options.get(OPT_CONFIG_FILE);
+    StringBuilder bashCmd = new StringBuilder(WORKER_PREFIX);
+
+    @Var String configFileRule = null;
+    if (transformClass != null) {
+      bashCmd.append("--transform-class ").append(transformClass).append(" ");
+    }
+    if (configFile != null) {
+      configFileRule =
+          getTransformConfigRuleForFile(
+              target.getProject(), target.getRootProject().file(configFile));
+      bashCmd.append("--config-file $(location ").append(configFileRule).append(") ");
+    }
+    bashCmd.append("; ");
+    return Pair.of(bashCmd.toString(), configFileRule);
+  }
+
   private static String getTransformConfigRuleForFile(Project project, File config) {
     String relativeConfigPath =
         FileUtil.getRelativePath(project.getRootProject().getProjectDir(), config);
-    ProjectUtil.getPlugin(project.getRootProject()).exportedPaths.add(relativeConfigPath);
+    ProjectUtil.getPlugin(project.getRootProject()).addExportedPath(relativeConfigPath);
 
     if (project.getProjectDir().equals(config.getParentFile())) {
       return ":" + config.getName();
@@ -8,10 +8,13 @@ import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Streams;
 import com.uber.okbuck.core.annotation.AnnotationProcessorCache;
 import com.uber.okbuck.core.annotation.JvmPlugin;
+import com.uber.okbuck.core.dependency.ConfigurationResolver;
 import com.uber.okbuck.core.dependency.DependencyCache;
 import com.uber.okbuck.core.dependency.DependencyFactory;
 import com.uber.okbuck.core.dependency.DependencyUtils;
 import com.uber.okbuck.core.dependency.ExternalDependency;
+import com.uber.okbuck.core.dependency.ResolutionCache;
+import com.uber.okbuck.core.dependency.SourcesResolver;
 import com.uber.okbuck.core.dependency.VersionlessDependency;
 import com.uber.okbuck.core.util.FileUtil;
 import com.uber.okbuck.core.util.ProjectCache;
@@ -23,6 +26,7 @@ import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
@@ -41,8 +45,6 @@ import org.gradle.api.artifacts.component.ComponentIdentifier;
 import org.gradle.api.artifacts.component.ModuleComponentIdentifier;
 import org.gradle.api.artifacts.component.ProjectComponentIdentifier;
 import org.gradle.api.artifacts.result.ResolvedArtifactResult;
-import org.gradle.api.attributes.Attribute;
-import org.gradle.api.specs.Spec;
 
 public class Scope {
 
@@ -58,6 +60,13 @@ public class Scope {
 
   @Nullable private Set<String> annotationProcessors;
 
+  // Composers query the dependencies of a scope for every rule they create. These are computed on
+  // first use and live as long as the scope, which is dropped when the scope cache is reset.
+  @Nullable private volatile Set<Target> firstLevelTargetDeps;
+  @Nullable private volatile Set<ExternalDependency> externalDeps;
+  @Nullable private volatile Set<ExternalDependency> firstLevelExternalDeps;
+  @Nullable private volatile JvmPlugin annotationProcessorPlugin;
+
   public final Set<String> getJavaResources() {
     return javaResources;
   }
@@ -70,14 +79,6 @@ public class Scope {
     return customOptions;
   }
 
-  /** Used to filter out only project dependencies when resolving a configuration. */
-  private static final Spec<ComponentIdentifier> PROJECT_FILTER =
-      componentIdentifier -> componentIdentifier instanceof ProjectComponentIdentifier;
-
-  /** Used to filter out external & local jar/aar dependencies when resolving a configuration. */
-  private static final Spec<ComponentIdentifier> EXTERNAL_DEP_FILTER =
-      componentIdentifier -> !(componentIdentifier instanceof ProjectComponentIdentifier);
-
   Scope(
       Project project,
       @Nullable Configuration configuration,
@@ -115,7 +116,12 @@ public class Scope {
   }
 
   public Set<Target> getTargetDeps(boolean firstLevel) {
-    if (configuration != null && firstLevel) {
+    if (configuration == null || !firstLevel) {
+      return Collections.unmodifiableSet(targetDeps);
+    }
+
+    Set<Target> deps = firstLevelTargetDeps;
+    if (deps == null) {
       Set<String> firstLevelProjects =
           configuration
               .getAllDependencies()
@@ -124,13 +130,14 @@ public class Scope {
               .map(dependency -> dependency.getDependencyProject().getPath())
               .collect(Collectors.toSet());
 
-      return targetDeps
-          .stream()
-          .filter(target -> firstLevelProjects.contains(target.getProject().getPath()))
-          .collect(Collectors.toSet());
-    } else {
-      return targetDeps;
+      deps =
+          targetDeps
+              .stream()
+              .filter(target -> firstLevelProjects.contains(target.getProject().getPath()))
+              .collect(ImmutableSet.toImmutableSet());
+      firstLevelTargetDeps = deps;
     }
+    return deps;
   }
 
   public final Set<Target> getTargetDeps() {
@@ -142,34 +149,48 @@ public class Scope {
 
   public Set<ExternalDependency> getExternalDeps(boolean firstLevel) {
     if (configuration != null && firstLevel) {
-      Set<VersionlessDependency> firstLevelDependencies =
-          configuration
-              .getAllDependencies()
-              .withType(org.gradle.api.artifacts.ExternalDependency.class)
-              .stream()
-              .map(DependencyFactory::fromDependency)
-              .flatMap(Collection::stream)
-              .collect(Collectors.toSet());
-
-      return external
-          .stream()
-          .map(depCache::get)
-          .filter(
-              dependency -> {
-                VersionlessDependency vDependency = dependency.getVersionless();
-
-                // Always include local dependencies
-                if (vDependency.group().equals(DependencyFactory.LOCAL_GROUP)) {
-                  return true;
-                }
-                return firstLevelDependencies.contains(vDependency);
-              })
-          .collect(Collectors.toSet());
+      Set<ExternalDependency> deps = firstLevelExternalDeps;
+      if (deps == null) {
+        deps = computeFirstLevelExternalDeps(configuration);
+        firstLevelExternalDeps = deps;
+      }
+      return deps;
     } else {
-      return external.stream().map(depCache::get).collect(Collectors.toSet());
+      Set<ExternalDependency> deps = externalDeps;
+      if (deps == null) {
+        deps = external.stream().map(depCache::get).collect(ImmutableSet.toImmutableSet());
+        externalDeps = deps;
+      }
+      return deps;
     }
   }
 
+  private Set<ExternalDependency> computeFirstLevelExternalDeps(Configuration configuration) {
+    Set<VersionlessDependency> firstLevelDependencies =
+        configuration
+            .getAllDependencies()
+            .withType(org.gradle.api.artifacts.ExternalDependency.class)
+            .stream()
+            .map(DependencyFactory::fromDependency)
+            .flatMap(Collection::stream)
+            .collect(Collectors.toSet());
+
+    return external
+        .stream()
+        .map(depCache::get)
+        .filter(
+            dependency -> {
+              VersionlessDependency vDependency = dependency.getVersionless();
+
+              // Always include local dependencies
+              if (vDependency.group().equals(DependencyFactory.LOCAL_GROUP)) {
+                return true;
+              }
+              return firstLevelDependencies.contains(vDependency);
+            })
+        .collect(ImmutableSet.toImmutableSet());
+  }
+
   public final Set<ExternalDependency> getExternalDeps() {
     OkBuckExtension okBuckExtension = ProjectUtil.getOkBuckExtension(project);
     ExternalDependenciesExtension externalDependenciesExtension =
@@ -225,6 +246,15 @@ public class Scope {
    * @return JvmPlugin
    */
   public JvmPlugin getAnnotationProcessorPlugin() {
+    JvmPlugin plugin = annotationProcessorPlugin;
+    if (plugin == null) {
+      plugin = computeAnnotationProcessorPlugin();
+      annotationProcessorPlugin = plugin;
+    }
+    return plugin;
+  }
+
+  private JvmPlugin computeAnnotationProcessorPlugin() {
     JvmPlugin.Builder jvmPluginBuilder = JvmPlugin.builder();
 
     Set<ExternalDependency> dependencies = getExternalDeps(true);
@@ -263,47 +293,34 @@ public class Scope {
     return jvmPluginBuilder.build();
   }
 
-  private static Set<ResolvedArtifactResult> getArtifacts(
-      Configuration configuration, String value, Spec<ComponentIdentifier> filter) {
-
-    return configuration
-        .getIncoming()
-        .artifactView(
-            config -> {
-              config.attributes(
-                  container ->
-                      container.attribute(Attribute.of("artifactType", String.class), value));
-              config.componentFilter(filter);
-            })
-        .getArtifacts()
-        .getArtifacts();
-  }
-
-  private static ImmutableSet<ResolvedArtifactResult> getArtifacts(
-      Configuration configuration,
-      Spec<ComponentIdentifier> filter,
-      ImmutableList<String> artifactTypes) {
-
-    ImmutableSet.Builder<ResolvedArtifactResult> artifactResultsBuilder = ImmutableSet.builder();
+  private void extractConfiguration(Configuration configuration) {
+    depCache.addDependencies(configuration.getAllDependencies());
 
-    // We need to individually add these sets to the final set so as to maintain the order.
-    // for eg. All aar artifact should come before jar artifacts.
-    artifactTypes.forEach(
-        artifactType ->
-            artifactResultsBuilder.addAll(
-                getArtifacts(configuration, artifactType, filter)
-                    .stream()
-                    .filter(it -> !it.getFile().getName().equals("classes.jar"))
-                    .collect(Collectors.toSet())));
+    OkBuckExtension okBuckExtension = ProjectUtil.getOkBuckExtension(project);
+    ExternalDependenciesExtension externalDependenciesExtension =
+        okBuckExtension.getExternalDependenciesExtension();
+    JetifierExtension jetifierExtension = okBuckExtension.getJetifierExtension();
 
-    return artifactResultsBuilder.build();
-  }
+    ResolutionCache resolutionCache = ProjectUtil.getResolutionCache(project);
+    ResolutionCache.Resolution cached =
+        resolutionCache.get(project, configuration, ResolutionCache.Kind.SCOPE);
+    if (cached != null) {
+      cached
+          .getProjectDeps()
+          .forEach(
+              projectDep ->
+                  targetDeps.add(
+                      ProjectCache.getTargetCache(project.project(projectDep.getPath()))
+                          .getTargetForVariant(projectDep.getVariant())));
+      external.addAll(cached.getExternalDeps(externalDependenciesExtension, jetifierExtension));
+      return;
+    }
 
-  private void extractConfiguration(Configuration configuration) {
-    depCache.addDependencies(configuration.getAllDependencies());
+    ConfigurationResolver.ResolvedArtifacts artifacts =
+        ProjectUtil.getPlugin(project).configurationResolver.resolve(project, configuration);
 
-    Set<ResolvedArtifactResult> jarArtifacts =
-        getArtifacts(configuration, PROJECT_FILTER, ImmutableList.of("jar"));
+    Set<ResolvedArtifactResult> jarArtifacts = artifacts.getProjectJars();
+    List<ResolutionCache.ProjectDep> projectDeps = new ArrayList<>();
 
     jarArtifacts.forEach(
         artifact -> {
@@ -320,29 +337,21 @@ public class Scope {
           Project identifierProject = project.project(identifier.getProjectPath());
           targetDeps.add(
               ProjectCache.getTargetCache(identifierProject).getTargetForVariant(variant));
+          projectDeps.add(new ResolutionCache.ProjectDep(identifierProject.getPath(), variant));
         });
 
-    Set<ResolvedArtifactResult> aarOrJarArtifacts =
-        getArtifacts(configuration, EXTERNAL_DEP_FILTER, ImmutableList.of("aar", "jar"));
-
-    OkBuckExtension okBuckExtension = ProjectUtil.getOkBuckExtension(project);
-    ExternalDependenciesExtension externalDependenciesExtension =
-        okBuckExtension.getExternalDependenciesExtension();
-    JetifierExtension jetifierExtension = okBuckExtension.getJetifierExtension();
-
     Set<ResolvedArtifactResult> consumableArtifacts =
-        aarOrJarArtifacts
+        artifacts
+            .getExternalArtifacts()
             .stream()
             .filter(artifact -> DependencyUtils.isConsumable(artifact.getFile()))
             .collect(Collectors.toSet());
 
-    Map<ComponentIdentifier, ResolvedArtifactResult> componentIdToSourcesArtifactMap =
-        ProjectUtil.downloadSources(project, consumableArtifacts);
+    SourcesResolver sourcesResolver = ProjectUtil.getSourcesResolver(project);
 
     consumableArtifacts.forEach(
         artifact -> {
           ComponentIdentifier identifier = artifact.getId().getComponentIdentifier();
-          ResolvedArtifactResult sourcesArtifact = componentIdToSourcesArtifactMap.get(identifier);
 
           if (identifier instanceof ModuleComponentIdentifier
               && ((ModuleComponentIdentifier) identifier).getVersion().length() > 0) {
@@ -354,9 +363,10 @@ public class Scope {
                     moduleIdentifier.getModule(),
                     moduleIdentifier.getVersion(),
                     artifact.getFile(),
-                    sourcesArtifact != null ? sourcesArtifact.getFile() : null,
+                    null,
                     externalDependenciesExtension,
                     jetifierExtension);
+            sourcesResolver.request(project, identifier, externalDependency);
             external.add(externalDependency);
           } else {
             String rootProjectPath = project.getRootProject().getProjectDir().getAbsolutePath();
@@ -373,18 +383,24 @@ public class Scope {
                             + ". Please move dependency: %s inside %s",
                         artifact.getFile(), project.getRootProject().getProjectDir()));
               }
-              external.add(
+              ExternalDependency localDependency =
                   DependencyFactory.fromLocal(
-                      artifact.getFile(),
-                      sourcesArtifact != null ? sourcesArtifact.getFile() : null,
-                      externalDependenciesExtension,
-                      jetifierExtension));
+                      artifact.getFile(), null, externalDependenciesExtension, jetifierExtension);
+              sourcesResolver.request(project, identifier, localDependency);
+              external.add(localDependency);
 
             } catch (IOException e) {
               throw new RuntimeException(e);
             }
           }
         });
+
+    resolutionCache.put(
+        project,
+        configuration,
+        ResolutionCache.Kind.SCOPE,
+        projectDeps,
+        ImmutableList.copyOf(external));
   }
 
   @Override
@@ -3,98 +3,155 @@ package com.uber.okbuck.core.model.base;
 import com.android.build.gradle.AppExtension;
 import com.android.build.gradle.LibraryExtension;
 import com.android.build.gradle.api.BaseVariant;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.errorprone.annotations.Var;
 import com.uber.okbuck.core.model.android.AndroidAppTarget;
 import com.uber.okbuck.core.model.android.AndroidLibTarget;
 import com.uber.okbuck.core.model.jvm.JvmTarget;
 import com.uber.okbuck.core.util.ProjectUtil;
+import com.uber.okbuck.extension.VariantsExtension;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import javax.annotation.Nullable;
 import org.gradle.api.Project;
 
+/**
+ * The targets of a project, one per android variant or a single one for jvm projects. Targets are
+ * only constructed when requested, and variants filtered out by {@link VariantsExtension} never
+ * are, so their configurations are never resolved.
+ */
 public final class TargetCache {
 
   private final Project project;
+  private final Map<String, Target> constructed = new HashMap<>();
 
+  @Nullable private List<String> variants;
   @Nullable private Map<String, Target> targets;
 
   public TargetCache(Project project) {
     this.project = project;
   }
 
+  /** Returns the targets of all the variants okbuck generates rules for. */
   public synchronized Map<String, Target> getTargets() {
     if (targets == null) {
+      VariantsExtension variantsExtension = getVariantsExtension();
+      ImmutableMap.Builder<String, Target> builder = ImmutableMap.builder();
+      getVariants()
+          .stream()
+          .filter(variant -> !isAndroid() || variantsExtension.isIncluded(variant))
+          .forEach(variant -> builder.put(variant, getTarget(variant)));
+      targets = builder.build();
+    }
+    return targets;
+  }
+
+  @Nullable
+  synchronized Target getTargetForVariant(@Nullable String variant) {
+    @Var Target result = null;
+    ProjectType type = ProjectUtil.getType(project);
+    switch (type) {
+      case ANDROID_LIB:
+        if (variant == null || !getVariants().contains(variant)) {
+          throw new IllegalStateException(
+              "No target found for " + project.getDisplayName() + " for variant " + variant);
+        }
+        VariantsExtension variantsExtension = getVariantsExtension();
+        if (!variantsExtension.isIncluded(variant)) {
+          throw new IllegalStateException(
+              String.format(
+                  "Variant %s of %s is needed by a variant that okbuck generates rules for, but is "
+                      + "filtered out by okbuck.variants (include: %s, exclude: %s). Include it "
+                      + "or exclude the variants that depend on it.",
+                  variant,
+                  project.getDisplayName(),
+                  variantsExtension.include,
+                  variantsExtension.exclude));
+        }
+        result = getTarget(variant);
+        break;
+      case GROOVY_LIB:
+      case JAVA_LIB:
+      case KOTLIN_LIB:
+      case SCALA_LIB:
+        result = getTarget(JvmTarget.MAIN);
+        break;
+      default:
+        break;
+    }
+    return result;
+  }
+
+  private Target getTarget(String variant) {
+    return constructed.computeIfAbsent(variant, this::createTarget);
+  }
+
+  private Target createTarget(String variant) {
+    ProjectType type = ProjectUtil.getType(project);
+    switch (type) {
+      case ANDROID_APP:
+        return new AndroidAppTarget(project, variant);
+      case ANDROID_LIB:
+        return new AndroidLibTarget(project, variant);
+      case KOTLIN_LIB:
+        return new JvmTarget(project, variant, "kapt", "kaptTest", "kaptIntegrationTest");
+      case GROOVY_LIB:
+      case SCALA_LIB:
+      case JAVA_LIB:
+        return new JvmTarget(project, variant);
+      default:
+        throw new IllegalStateException("No targets for " + project.getDisplayName());
+    }
+  }
+
+  /** Returns the names of all the variants of the project, filtered or not. */
+  private List<String> getVariants() {
+    if (variants == null) {
       ProjectType type = ProjectUtil.getType(project);
       switch (type) {
         case ANDROID_APP:
-          targets =
+          variants =
               project
                   .getExtensions()
                   .getByType(AppExtension.class)
                   .getApplicationVariants()
                   .stream()
-                  .collect(
-                      ImmutableMap.toImmutableMap(
-                          BaseVariant::getName, v -> new AndroidAppTarget(project, v.getName())));
+                  .map(BaseVariant::getName)
+                  .collect(ImmutableList.toImmutableList());
           break;
         case ANDROID_LIB:
-          targets =
+          variants =
               project
                   .getExtensions()
                   .getByType(LibraryExtension.class)
                   .getLibraryVariants()
                   .stream()
-                  .collect(
-                      ImmutableMap.toImmutableMap(
-                          BaseVariant::getName, v -> new AndroidLibTarget(project, v.getName())));
+                  .map(BaseVariant::getName)
+                  .collect(ImmutableList.toImmutableList());
           break;
         case KOTLIN_LIB:
-          targets =
-              ImmutableMap.of(
-                  JvmTarget.MAIN,
-                  new JvmTarget(
-                      project,
-                      JvmTarget.MAIN,
-                      "kapt",
-                      "kaptTest",
-                      "kaptIntegrationTest"));
-          break;
         case GROOVY_LIB:
         case SCALA_LIB:
         case JAVA_LIB:
-          targets = ImmutableMap.of(JvmTarget.MAIN, new JvmTarget(project, JvmTarget.MAIN));
+          variants = ImmutableList.of(JvmTarget.MAIN);
           break;
         default:
-          targets = ImmutableMap.of();
+          variants = ImmutableList.of();
           break;
       }
     }
-
-    return targets;
+    return variants;
   }
 
-  @Nullable
-  Target getTargetForVariant(@Nullable String variant) {
-    @Var Target result = null;
+  /** Only android variants are filtered. */
+  private boolean isAndroid() {
     ProjectType type = ProjectUtil.getType(project);
-    switch (type) {
-      case ANDROID_LIB:
-        result = getTargets().get(variant);
-        if (result == null) {
-          throw new IllegalStateException(
-              "No target found for " + project.getDisplayName() + " for variant " + variant);
-        }
-        break;
-      case GROOVY_LIB:
-      case JAVA_LIB:
-      case KOTLIN_LIB:
-      case SCALA_LIB:
-        result = getTargets().values().iterator().next();
-        break;
-      default:
-        break;
-    }
-    return result;
+    return type == ProjectType.ANDROID_APP || type == ProjectType.ANDROID_LIB;
+  }
+
+  private VariantsExtension getVariantsExtension() {
+    return ProjectUtil.getOkBuckExtension(project).getVariantsExtension();
   }
 }
@@ -76,14 +76,19 @@ public class OkBuckCleanTask extends DefaultTask {
         .map(p -> rootProjectPath.resolve(p).resolve(OkBuckGradlePlugin.BUCK))
         .forEach(FileUtil::deleteQuietly);
 
-    // Delete old .okbuck/cache dir
-    FileUtil.deleteQuietly(rootProjectPath.resolve(".okbuck/cache"));
-
-    // Delete old .okbuck/gen dir
-    FileUtil.deleteQuietly(rootProjectPath.resolve(".okbuck/gen"));
-
-    // Delete old .buckconfig.local
-    FileUtil.deleteQuietly(rootProjectPath.resolve(".buckconfig.local"));
+    // Outputs recorded in the manifest are removed at the end of the okbuck run if it no
+    // longer produces them. Without a manifest, the outputs of older versions are unknown and
+    // removed here.
+    if (!rootProject.file(OkBuckGradlePlugin.OKBUCK_OUTPUTS).exists()) {
+      // Delete old .okbuck/cache dir
+      FileUtil.deleteQuietly(rootProjectPath.resolve(".okbuck/cache"));
+
+      // Delete old .okbuck/gen dir
+      FileUtil.deleteQuietly(rootProjectPath.resolve(".okbuck/gen"));
+
+      // Delete old .buckconfig.local
+      FileUtil.deleteQuietly(rootProjectPath.resolve(".buckconfig.local"));
+    }
 
     // Save generated project's BUCK file path
     Files.write(
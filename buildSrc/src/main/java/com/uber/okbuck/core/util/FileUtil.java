@@ -1,37 +1,33 @@
 package com.uber.okbuck.core.util;
 
-import static java.nio.charset.StandardCharsets.UTF_8;
-
 import com.google.common.collect.ImmutableSet;
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
-import com.google.gson.reflect.TypeToken;
-import com.uber.okbuck.core.util.symlinks.SymlinkCreator;
-import com.uber.okbuck.core.util.symlinks.SymlinkCreatorFactory;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+import com.google.common.io.MoreFiles;
+import com.google.common.io.Resources;
 import java.io.File;
 import java.io.IOException;
 import java.io.RandomAccessFile;
-import java.io.Reader;
-import java.io.Writer;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.util.Collection;
-import java.util.HashMap;
-import java.util.stream.Stream;
-import org.apache.commons.io.FileUtils;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
 import org.gradle.api.Project;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 
 public final class FileUtil {
-  private static final Logger LOG = LoggerFactory.getLogger(FileUtil.class);
-  private static final SymlinkCreator symlinkCreator = SymlinkCreatorFactory.getSymlinkCreator();
 
   private static final String DS_STORE = ".DS_Store";
 
+  private static final Map<Path, Boolean> DIR_HAS_FILES = new ConcurrentHashMap<>();
+
   private FileUtil() {}
 
   public static String getRelativePath(File root, File f) {
@@ -47,32 +43,73 @@ public final class FileUtil {
 
   public static void copyResourceToProject(String resource, File destination) {
     try {
-      FileUtils.copyURLToFile(FileUtil.class.getResource(resource), destination);
+      writeIfChanged(
+          destination.toPath(), Resources.toByteArray(FileUtil.class.getResource(resource)));
     } catch (IOException e) {
       throw new RuntimeException(e);
     }
   }
 
+  /**
+   * Writes the contents to the file unless it already has the same contents, and records it in the
+   * {@link OutputManifest}. Unchanged files keep their modification time so that watchman and buck
+   * don't consider them changed.
+   *
+   * @return whether the file was written.
+   */
+  public static boolean writeIfChanged(Path path, byte[] contents) throws IOException {
+    HashCode hash = Hashing.sha256().hashBytes(contents);
+    if (OutputManifest.isUnchanged(path, hash) || hasContents(path, contents.length, hash)) {
+      OutputManifest.recordFile(path, hash);
+      return false;
+    }
+
+    Path parent = path.toAbsolutePath().getParent();
+    Files.createDirectories(parent);
+    // Unlike a temp file, which only its owner can read, the file gets the permissions of a file
+    // written in place: those of the file it replaces or the defaults of the process umask.
+    Path temp =
+        Files.createFile(parent.resolve(path.getFileName() + "." + UUID.randomUUID() + ".tmp"));
+    try {
+      if (Files.exists(path)) {
+        copyPermissions(path, temp);
+      }
+      Files.write(temp, contents);
+      try {
+        Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+      } catch (AtomicMoveNotSupportedException e) {
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+      }
+    } finally {
+      Files.deleteIfExists(temp);
+    }
+    OutputManifest.recordFile(path, hash);
+    return true;
+  }
+
+  private static void copyPermissions(Path from, Path to) throws IOException {
+    try {
+      Files.setPosixFilePermissions(to, Files.getPosixFilePermissions(from));
+    } catch (UnsupportedOperationException ignored) {
+      // Not a posix file system, files are created with the default permissions
+    }
+  }
+
+  private static boolean hasContents(Path path, int length, HashCode hash) throws IOException {
+    if (!Files.isRegularFile(path) || Files.size(path) != length) {
+      return false;
+    }
+    return MoreFiles.asByteSource(path).hash(Hashing.sha256()).equals(hash);
+  }
+
   public static ImmutableSet<String> available(Project project, Collection<File> files) {
     return files
         .stream()
         .filter(
             rootFile -> {
-              if (rootFile.isDirectory() && rootFile.exists()) {
+              if (rootFile.isDirectory()) {
                 // Check if the directory contains any valid file
-                try (Stream<Path> fileTree = Files.walk(rootFile.toPath())) {
-                  return fileTree
-                      .filter(
-                          currentFilePath -> {
-                            File currentFile = currentFilePath.toFile();
-                            return !currentFile.isDirectory()
-                                && !currentFile.getName().equals(DS_STORE);
-                          })
-                      .iterator()
-                      .hasNext();
-                } catch (IOException e) {
-                  throw new RuntimeException(e);
-                }
+                return hasFiles(rootFile);
               }
               return rootFile.exists();
             })
@@ -80,6 +117,48 @@ public final class FileUtil {
         .collect(MoreCollectors.toImmutableSet());
   }
 
+  /**
+   * Returns whether the directory contains any file other than a .DS_Store file, at any depth.
+   * Directories holding only empty directories are considered empty, like in {@link #available}.
+   */
+  public static boolean hasFiles(File dir) {
+    return dir.isDirectory()
+        && DIR_HAS_FILES.computeIfAbsent(dir.toPath().toAbsolutePath(), FileUtil::containsFile);
+  }
+
+  /**
+   * Clears the directories known to contain files. Directories are only scanned once per run since
+   * they are checked by many scopes and variants, so this needs to be called at the start and end
+   * of every run.
+   */
+  public static void resetAvailableCache() {
+    DIR_HAS_FILES.clear();
+  }
+
+  /** Walks the directory until the first file that is not a directory or a .DS_Store file. */
+  private static boolean containsFile(Path dir) {
+    AtomicBoolean found = new AtomicBoolean();
+    try {
+      Files.walkFileTree(
+          dir,
+          new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+              if (attrs.isDirectory()
+                  || file.getFileName().toString().equals(DS_STORE)
+                  || (attrs.isSymbolicLink() && Files.isDirectory(file))) {
+                return FileVisitResult.CONTINUE;
+              }
+              found.set(true);
+              return FileVisitResult.TERMINATE;
+            }
+          });
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+    return found.get();
+  }
+
   public static void deleteQuietly(Path p) {
     try {
       Files.walkFileTree(
@@ -114,29 +193,4 @@ public final class FileUtil {
       return false;
     }
   }
-
-  public static void symlink(Path link, Path target) {
-    try {
-      LOG.info("Creating symlink {} -> {}", link, target);
-      symlinkCreator.createSymbolicLink(link, target);
-    } catch (IOException e) {
-      LOG.error("Could not create symlink {} -> {}", link, target);
-      throw new IllegalStateException(e);
-    }
-  }
-
-  public static HashMap<String, String> readMapFromJsonFile(File file) throws IOException {
-    Reader fileReader = Files.newBufferedReader(file.toPath(), UTF_8);
-    Gson gson = new Gson();
-    return gson.fromJson(fileReader, new TypeToken<HashMap<String, String>>() {}.getType());
-  }
-
-  public static void persistMapToJsonFile(HashMap<String, String> map, File file)
-      throws IOException {
-    Writer writer = Files.newBufferedWriter(file.toPath(), UTF_8);
-    Gson gson = new GsonBuilder().setPrettyPrinting().create();
-    gson.toJson(map, writer);
-    writer.flush();
-    writer.close();
-  }
 }
@@ -0,0 +1,116 @@
+package com.uber.okbuck.core.util;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.Nullable;
+import javax.management.ListenerNotFoundException;
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+
+/**
+ * Tracks the largest heap usage seen right after a garbage collection between {@link #start()} and
+ * {@link #stop()}, which is what an okbuck run needs to keep alive at its worst. The peak usage of
+ * each heap pool can't be summed for this since pools peak at different times, and the heap usage
+ * before a collection mostly measures how lazily the collector runs.
+ */
+public final class HeapMonitor {
+
+  @Nullable private static Recording recording;
+
+  private HeapMonitor() {}
+
+  /** Starts tracking the heap usage, stopping any previous tracking left by a failed run. */
+  public static synchronized void start() {
+    stop();
+    recording = new Recording();
+  }
+
+  /**
+   * Stops tracking the heap usage.
+   *
+   * @return The largest heap usage after a collection in bytes, or the current heap usage if no
+   *     collection happened since {@link #start()}, or -1 if the heap usage was not tracked
+   */
+  public static synchronized long stop() {
+    Recording current = recording;
+    recording = null;
+    if (current == null) {
+      return -1;
+    }
+    current.stop();
+    long peak = current.peakBytes.get();
+    return peak >= 0 ? peak : heapUsed();
+  }
+
+  private static long heapUsed() {
+    return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+  }
+
+  /** Listens to the collections of all collectors that support notifications. */
+  private static final class Recording {
+
+    private final AtomicLong peakBytes = new AtomicLong(-1);
+    private final Set<String> heapPools = new HashSet<>();
+    private final List<NotificationEmitter> emitters = new ArrayList<>();
+    private final NotificationListener listener = (notification, handback) -> record(notification);
+
+    Recording() {
+      for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+        if (pool.getType() == MemoryType.HEAP) {
+          heapPools.add(pool.getName());
+        }
+      }
+      for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+        if (collector instanceof NotificationEmitter) {
+          NotificationEmitter emitter = (NotificationEmitter) collector;
+          emitter.addNotificationListener(listener, null, null);
+          emitters.add(emitter);
+        }
+      }
+    }
+
+    /**
+     * Records the heap usage the collection left behind. It is read from the collection itself
+     * rather than from the heap, which other threads keep allocating into until this listener runs.
+     */
+    private void record(Notification notification) {
+      if (!GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals(
+          notification.getType())) {
+        return;
+      }
+      Map<String, MemoryUsage> usageAfterGc =
+          GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData())
+              .getGcInfo()
+              .getMemoryUsageAfterGc();
+      long used = 0;
+      for (Map.Entry<String, MemoryUsage> pool : usageAfterGc.entrySet()) {
+        if (heapPools.contains(pool.getKey())) {
+          used += pool.getValue().getUsed();
+        }
+      }
+      peakBytes.accumulateAndGet(used, Math::max);
+    }
+
+    void stop() {
+      for (NotificationEmitter emitter : emitters) {
+        try {
+          emitter.removeNotificationListener(listener);
+        } catch (ListenerNotFoundException ignored) {
+          // Already removed
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,293 @@
+package com.uber.okbuck.core.util;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.hash.HashCode;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+import com.google.gson.reflect.TypeToken;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import javax.annotation.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Records every file and symlink generated by an okbuck run, with the hash of its contents or the
+ * target of the link. Outputs are recorded between {@link #start(Path, Path)} and {@link
+ * #finish()}, which deletes the outputs of the previous run that this run did not produce and
+ * persists the manifest for the next run.
+ *
+ * <p>Managers register the workspace directories they own with {@link #manageDirectory(Path)}
+ * instead of wiping them before writing. Files in a managed directory that this run did not
+ * produce are deleted as well, so unchanged files are left untouched across runs.
+ */
+public final class OutputManifest {
+
+  private static final Logger LOG = LoggerFactory.getLogger(OutputManifest.class);
+
+  @Nullable private static volatile Recording recording;
+
+  private OutputManifest() {}
+
+  /**
+   * Starts recording the outputs of a run.
+   *
+   * @param rootDir The root project directory, outputs are recorded relative to it
+   * @param manifestFile The manifest of the previous run, which this run replaces
+   */
+  public static void start(Path rootDir, Path manifestFile) {
+    recording = new Recording(rootDir, manifestFile, read(manifestFile));
+  }
+
+  /** Records a generated file with the hash of the contents that were written to it. */
+  public static void recordFile(Path file, HashCode hash) {
+    Recording current = recording;
+    if (current == null) {
+      return;
+    }
+    String key = current.key(file);
+    if (key == null) {
+      return;
+    }
+    try {
+      BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class);
+      current.outputs.put(
+          key, Output.file(hash.toString(), attrs.size(), attrs.lastModifiedTime().toMillis()));
+    } catch (IOException e) {
+      throw new IllegalStateException("Couldn't read the generated file " + file, e);
+    }
+  }
+
+  /** Records a generated symlink along with its target. */
+  public static void recordSymlink(Path link, Path target) {
+    Recording current = recording;
+    if (current == null) {
+      return;
+    }
+    String key = current.key(link);
+    if (key != null) {
+      current.outputs.put(key, Output.symlink(target.toString()));
+    }
+  }
+
+  /**
+   * Declares a directory whose contents are only generated by okbuck. Anything in it that the run
+   * does not record is deleted when the run finishes.
+   */
+  public static void manageDirectory(Path dir) {
+    Recording current = recording;
+    if (current != null) {
+      current.managedDirs.add(dir.toAbsolutePath().normalize());
+    }
+  }
+
+  /**
+   * Returns whether the file still has the contents the previous run wrote to it, without reading
+   * it. The file must not have been touched since it was written.
+   */
+  public static boolean isUnchanged(Path file, HashCode hash) {
+    Recording current = recording;
+    if (current == null) {
+      return false;
+    }
+    String key = current.key(file);
+    Output previous = key != null ? current.previousOutputs.get(key) : null;
+    if (previous == null || previous.hash == null || !previous.hash.equals(hash.toString())) {
+      return false;
+    }
+    try {
+      BasicFileAttributes attrs =
+          Files.readAttributes(file, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+      return attrs.isRegularFile()
+          && attrs.size() == previous.size
+          && attrs.lastModifiedTime().toMillis() == previous.modified;
+    } catch (IOException e) {
+      return false;
+    }
+  }
+
+  /**
+   * Stops recording, deletes the outputs that were not produced by this run and writes the
+   * manifest. Does nothing if no run was recorded.
+   *
+   * @return The number of stale outputs that were deleted
+   */
+  public static int finish() {
+    Recording current = recording;
+    recording = null;
+    if (current == null) {
+      return 0;
+    }
+
+    int deleted = 0;
+    for (String stale : current.previousOutputs.keySet()) {
+      if (!current.outputs.containsKey(stale)) {
+        deleted += delete(current.rootDir.resolve(stale));
+      }
+    }
+    for (Path dir : current.managedDirs) {
+      deleted += deleteUnrecorded(current, dir);
+    }
+
+    write(current.manifestFile, new TreeMap<>(current.outputs));
+    return deleted;
+  }
+
+  /** Returns the outputs recorded in the given manifest, or an empty set if there is none. */
+  public static Set<Path> readOutputs(Path rootDir, Path manifestFile) {
+    return read(manifestFile)
+        .keySet()
+        .stream()
+        .map(rootDir::resolve)
+        .collect(MoreCollectors.toImmutableSet());
+  }
+
+  private static int deleteUnrecorded(Recording current, Path dir) {
+    if (!Files.isDirectory(dir, LinkOption.NOFOLLOW_LINKS)) {
+      return 0;
+    }
+    int deleted = 0;
+    try {
+      List<Path> entries;
+      try (Stream<Path> paths = Files.walk(dir)) {
+        entries = paths.sorted(Comparator.reverseOrder()).collect(Collectors.toList());
+      }
+      // Children come before their parent directories, which are deleted once empty
+      for (Path entry : entries) {
+        if (Files.isDirectory(entry, LinkOption.NOFOLLOW_LINKS)) {
+          try (Stream<Path> children = Files.list(entry)) {
+            if (!children.findAny().isPresent()) {
+              Files.delete(entry);
+            }
+          }
+        } else {
+          String key = current.key(entry);
+          if (key != null && !current.outputs.containsKey(key)) {
+            deleted += delete(entry);
+          }
+        }
+      }
+    } catch (IOException e) {
+      throw new IllegalStateException("Couldn't remove the stale outputs of " + dir, e);
+    }
+    return deleted;
+  }
+
+  private static int delete(Path output) {
+    try {
+      return Files.deleteIfExists(output) ? 1 : 0;
+    } catch (IOException e) {
+      LOG.warn("Couldn't delete the stale output {}", output, e);
+      return 0;
+    }
+  }
+
+  private static Map<String, Output> read(Path manifestFile) {
+    if (!Files.isRegularFile(manifestFile)) {
+      return Collections.emptyMap();
+    }
+    try (Reader reader = Files.newBufferedReader(manifestFile, UTF_8)) {
+      Map<String, Output> outputs =
+          new Gson().fromJson(reader, new TypeToken<HashMap<String, Output>>() {}.getType());
+      return outputs != null ? outputs : Collections.emptyMap();
+    } catch (IOException | JsonParseException e) {
+      LOG.warn("Ignoring unreadable output manifest {}", manifestFile, e);
+      return Collections.emptyMap();
+    }
+  }
+
+  private static void write(Path manifestFile, Map<String, Output> outputs) {
+    try {
+      Path parent = manifestFile.toAbsolutePath().getParent();
+      Files.createDirectories(parent);
+      Path temp = Files.createTempFile(parent, manifestFile.getFileName().toString(), ".tmp");
+      try {
+        try (Writer writer = Files.newBufferedWriter(temp, UTF_8)) {
+          new GsonBuilder().setPrettyPrinting().create().toJson(outputs, writer);
+        }
+        try {
+          Files.move(
+              temp,
+              manifestFile,
+              StandardCopyOption.ATOMIC_MOVE,
+              StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+          Files.move(temp, manifestFile, StandardCopyOption.REPLACE_EXISTING);
+        }
+      } finally {
+        Files.deleteIfExists(temp);
+      }
+    } catch (IOException e) {
+      throw new IllegalStateException("Couldn't write the output manifest " + manifestFile, e);
+    }
+  }
+
+  /** The outputs of the run in progress and of the previous run. */
+  private static final class Recording {
+    private final Path rootDir;
+    private final Path manifestFile;
+    private final Map<String, Output> previousOutputs;
+    private final Map<String, Output> outputs = new ConcurrentHashMap<>();
+    private final List<Path> managedDirs = Collections.synchronizedList(new ArrayList<>());
+
+    private Recording(Path rootDir, Path manifestFile, Map<String, Output> previousOutputs) {
+      this.rootDir = rootDir.toAbsolutePath().normalize();
+      this.manifestFile = manifestFile;
+      this.previousOutputs = previousOutputs;
+    }
+
+    /** Returns the path of the output relative to the root dir, or null if it is outside it. */
+    @Nullable
+    private String key(Path output) {
+      Path path = output.toAbsolutePath().normalize();
+      return path.startsWith(rootDir) ? rootDir.relativize(path).toString() : null;
+    }
+  }
+
+  /** A generated file with the hash of its contents or a generated symlink with its target. */
+  private static final class Output {
+    @Nullable private String hash;
+    private long size;
+    private long modified;
+    // Only persisted, to tell what a recorded symlink pointed to
+    @SuppressWarnings("unused")
+    @Nullable
+    private String target;
+
+    private Output() {}
+
+    static Output file(String hash, long size, long modified) {
+      Output output = new Output();
+      output.hash = hash;
+      output.size = size;
+      output.modified = modified;
+      return output;
+    }
+
+    static Output symlink(String target) {
+      Output output = new Output();
+      output.target = target;
+      return output;
+    }
+  }
+}
@@ -10,6 +10,8 @@ import com.uber.okbuck.OkBuckGradlePlugin;
 import com.uber.okbuck.core.annotation.AnnotationProcessorCache;
 import com.uber.okbuck.core.dependency.DependencyCache;
 import com.uber.okbuck.core.dependency.DependencyUtils;
+import com.uber.okbuck.core.dependency.ResolutionCache;
+import com.uber.okbuck.core.dependency.SourcesResolver;
 import com.uber.okbuck.core.manager.DependencyManager;
 import com.uber.okbuck.core.manager.GroovyManager;
 import com.uber.okbuck.core.manager.KotlinManager;
@@ -77,6 +79,14 @@ public final class ProjectUtil {
     return getPlugin(project).dependencyManager;
   }
 
+  public static SourcesResolver getSourcesResolver(Project project) {
+    return getDependencyManager(project).getSourcesResolver();
+  }
+
+  public static ResolutionCache getResolutionCache(Project project) {
+    return getPlugin(project).resolutionCache;
+  }
+
   public static LintManager getLintManager(Project project) {
     return getPlugin(project).lintManager;
   }
@@ -154,23 +164,11 @@ public final class ProjectUtil {
    */
   // Copied from AGP 3.1.0 ArtifactDependencyGraph
   public static Map<ComponentIdentifier, ResolvedArtifactResult> downloadSources(
-      Project project, Set<ResolvedArtifactResult> artifacts) {
-
-    // Download sources if enabled via intellij extension
-    if (!ProjectUtil.getOkBuckExtension(project).getIntellijExtension().downloadSources()) {
-      return new HashMap<>();
-    }
+      Project project, Set<ComponentIdentifier> identifiers) {
 
     DependencyHandler dependencies = project.getDependencies();
 
     try {
-      Set<ComponentIdentifier> identifiers =
-          artifacts
-              .stream()
-              .filter(artifact -> canHaveSources(artifact.getFile()))
-              .map(artifact -> artifact.getId().getComponentIdentifier())
-              .collect(Collectors.toSet());
-
       @SuppressWarnings("unchecked")
       Class<? extends Artifact>[] artifactTypesArray =
           (Class<? extends Artifact>[]) new Class<?>[] {SourcesArtifact.class};
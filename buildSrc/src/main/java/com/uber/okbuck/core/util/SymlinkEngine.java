@@ -0,0 +1,138 @@
+package com.uber.okbuck.core.util;
+
+import com.google.common.base.Throwables;
+import com.uber.okbuck.core.util.symlinks.SymlinkCreator;
+import com.uber.okbuck.core.util.symlinks.SymlinkCreatorFactory;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Creates a batch of symlinks, leaving the links that already point to their target untouched so
+ * that watchman and buck don't see them change across runs. Links are grouped by the directory
+ * they are created in, and directories are processed concurrently. Every link of the batch is
+ * recorded in the {@link OutputManifest}, whether it was created or kept.
+ *
+ * <pre>
+ * SymlinkEngine.Result result =
+ *     new SymlinkEngine().add(link, target).add(sourceLink, sourceTarget).link(threads);
+ * </pre>
+ */
+public final class SymlinkEngine {
+
+  private static final Logger LOG = LoggerFactory.getLogger(SymlinkEngine.class);
+  private static final SymlinkCreator symlinkCreator = SymlinkCreatorFactory.getSymlinkCreator();
+
+  private final Map<Path, Map<Path, Path>> linksByDir = new LinkedHashMap<>();
+
+  /**
+   * Adds a symlink to the batch. A link added more than once is created with the last target.
+   *
+   * @param link The path of the symlink
+   * @param target The path the symlink points to
+   * @return This engine
+   */
+  public SymlinkEngine add(Path link, Path target) {
+    Path dir = link.toAbsolutePath().getParent();
+    linksByDir.computeIfAbsent(dir, ignored -> new LinkedHashMap<>()).put(link, target);
+    return this;
+  }
+
+  /**
+   * Creates the directories and symlinks of the batch.
+   *
+   * @param threads The maximum number of directories to process concurrently
+   * @return How many links were created, replaced and skipped
+   */
+  public Result link(int threads) {
+    Result result = new Result();
+    if (linksByDir.size() <= 1 || threads <= 1) {
+      linksByDir.forEach((dir, links) -> linkDir(dir, links, result));
+      return result;
+    }
+
+    ForkJoinPool pool = new ForkJoinPool(threads);
+    try {
+      pool.submit(
+              () ->
+                  linksByDir
+                      .entrySet()
+                      .parallelStream()
+                      .forEach(entry -> linkDir(entry.getKey(), entry.getValue(), result)))
+          .get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while creating symlinks", e);
+    } catch (ExecutionException e) {
+      Throwables.throwIfUnchecked(e.getCause());
+      throw new IllegalStateException("Failed to create symlinks", e.getCause());
+    } finally {
+      pool.shutdown();
+    }
+    return result;
+  }
+
+  private static void linkDir(Path dir, Map<Path, Path> links, Result result) {
+    try {
+      Files.createDirectories(dir);
+    } catch (IOException e) {
+      throw new IllegalStateException("Couldn't create " + dir + " when creating symlinks", e);
+    }
+    links.forEach((link, target) -> linkFile(link, target, result));
+  }
+
+  private static void linkFile(Path link, Path target, Result result) {
+    try {
+      if (Files.isSymbolicLink(link) && Files.readSymbolicLink(link).equals(target)) {
+        OutputManifest.recordSymlink(link, target);
+        result.skipped.incrementAndGet();
+        return;
+      }
+
+      boolean existed = Files.deleteIfExists(link);
+      LOG.debug("Creating symlink {} -> {}", link, target);
+      symlinkCreator.createSymbolicLink(link, target);
+      OutputManifest.recordSymlink(link, target);
+      (existed ? result.replaced : result.created).incrementAndGet();
+    } catch (IOException e) {
+      throw new IllegalStateException("Couldn't update symlink " + link + " -> " + target, e);
+    }
+  }
+
+  /** The number of links of a batch that were created, replaced or already up to date. */
+  public static final class Result {
+    private final AtomicInteger created = new AtomicInteger();
+    private final AtomicInteger replaced = new AtomicInteger();
+    private final AtomicInteger skipped = new AtomicInteger();
+
+    private Result() {}
+
+    /** Returns the number of links that did not exist. */
+    public int getCreated() {
+      return created.get();
+    }
+
+    /** Returns the number of links or files that were replaced by a link to another target. */
+    public int getReplaced() {
+      return replaced.get();
+    }
+
+    /** Returns the number of links that already pointed to their target. */
+    public int getSkipped() {
+      return skipped.get();
+    }
+
+    @Override
+    public String toString() {
+      return String.format(
+          "%d created, %d replaced, %d skipped", getCreated(), getReplaced(), getSkipped());
+    }
+  }
+}
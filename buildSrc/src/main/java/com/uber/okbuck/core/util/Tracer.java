@@ -0,0 +1,210 @@
+package com.uber.okbuck.core.util;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableMap;
+import com.google.gson.Gson;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+
+/**
+ * Records spans of the phases of an okbuck run. Spans are only recorded between {@link #start()}
+ * and {@link #finish(File)}, which writes them as a Chrome trace (viewable in chrome://tracing or
+ * Perfetto) along with a summary of the time spent per category and span name.
+ *
+ * <pre>
+ * try (Tracer.Span ignored = Tracer.span("finalize", "DependencyManager")) {
+ *   ...
+ * }
+ * </pre>
+ */
+public final class Tracer {
+
+  public static final String TRACE_FILE = "trace.json";
+  public static final String SUMMARY_FILE = "summary.txt";
+
+  private static final Span NOOP_SPAN = () -> {};
+
+  @Nullable private static volatile Recording recording;
+
+  private Tracer() {}
+
+  /** Starts recording spans, discarding any spans of a previous recording. */
+  public static void start() {
+    recording = new Recording();
+  }
+
+  /**
+   * Stops recording spans and discards them, ex. those left by a run that failed before {@link
+   * #finish(File)}.
+   */
+  public static void stop() {
+    recording = null;
+  }
+
+  /** Returns whether spans are being recorded. */
+  public static boolean isEnabled() {
+    return recording != null;
+  }
+
+  /**
+   * Opens a span that ends when it is closed.
+   *
+   * @param category The phase the span belongs to, ex. "setup", "generate" or "finalize"
+   * @param name The name of the span, spans with the same name are summarized together
+   * @return The span to close once the traced work is done
+   */
+  public static Span span(String category, String name) {
+    Recording current = recording;
+    if (current == null) {
+      return NOOP_SPAN;
+    }
+    long start = System.nanoTime();
+    long threadId = Thread.currentThread().getId();
+    return () -> current.events.add(new Event(category, name, threadId, start, System.nanoTime()));
+  }
+
+  /** Runs the action within a span. */
+  public static void trace(String category, String name, Runnable action) {
+    try (Span ignored = span(category, name)) {
+      action.run();
+    }
+  }
+
+  /**
+   * Stops recording and writes the recorded spans to the given directory. Does nothing if spans
+   * are not being recorded.
+   *
+   * @param traceDir The directory to write the trace and its summary to
+   */
+  public static void finish(File traceDir) {
+    Recording current = recording;
+    recording = null;
+    if (current == null) {
+      return;
+    }
+
+    List<Event> events = new ArrayList<>(current.events);
+    events.sort(Comparator.comparingLong(event -> event.start));
+    try {
+      Files.createDirectories(traceDir.toPath());
+      writeTrace(new File(traceDir, TRACE_FILE), events, current.start);
+      writeSummary(new File(traceDir, SUMMARY_FILE), events);
+    } catch (IOException e) {
+      throw new IllegalStateException("Could not write trace to " + traceDir, e);
+    }
+  }
+
+  private static void writeTrace(File file, List<Event> events, long start) throws IOException {
+    List<Map<String, Object>> traceEvents = new ArrayList<>(events.size());
+    for (Event event : events) {
+      Map<String, Object> traceEvent = new LinkedHashMap<>();
+      traceEvent.put("name", event.name);
+      traceEvent.put("cat", event.category);
+      traceEvent.put("ph", "X");
+      traceEvent.put("ts", TimeUnit.NANOSECONDS.toMicros(event.start - start));
+      traceEvent.put("dur", TimeUnit.NANOSECONDS.toMicros(event.end - event.start));
+      traceEvent.put("pid", 1);
+      traceEvent.put("tid", event.threadId);
+      traceEvents.add(traceEvent);
+    }
+    try (Writer writer = Files.newBufferedWriter(file.toPath(), UTF_8)) {
+      new Gson()
+          .toJson(ImmutableMap.of("traceEvents", traceEvents, "displayTimeUnit", "ms"), writer);
+    }
+  }
+
+  /**
+   * Writes the count, total and maximum duration of spans per category and then per span name,
+   * slowest first.
+   */
+  private static void writeSummary(File file, List<Event> events) throws IOException {
+    Map<String, Summary> categories = new LinkedHashMap<>();
+    Map<String, Summary> spans = new LinkedHashMap<>();
+    for (Event event : events) {
+      long duration = event.end - event.start;
+      categories.computeIfAbsent(event.category, key -> new Summary()).add(duration);
+      spans.computeIfAbsent(event.category + " " + event.name, key -> new Summary()).add(duration);
+    }
+
+    try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(file.toPath(), UTF_8))) {
+      writeSummaryTable(writer, "category", categories);
+      writer.println();
+      writeSummaryTable(writer, "span", spans);
+    }
+  }
+
+  private static void writeSummaryTable(
+      PrintWriter writer, String header, Map<String, Summary> summaries) {
+    int longestName = summaries.keySet().stream().mapToInt(String::length).max().orElse(0);
+    int width = Math.max(header.length(), longestName) + 2;
+    writer.printf(
+        "%s%10s%14s%14s%n", Strings.padEnd(header, width, ' '), "count", "total ms", "max ms");
+    summaries
+        .entrySet()
+        .stream()
+        .sorted(
+            Comparator.comparingLong((Map.Entry<String, Summary> entry) -> entry.getValue().total)
+                .reversed())
+        .forEach(
+            entry ->
+                writer.printf(
+                    "%s%10d%14d%14d%n",
+                    Strings.padEnd(entry.getKey(), width, ' '),
+                    entry.getValue().count,
+                    TimeUnit.NANOSECONDS.toMillis(entry.getValue().total),
+                    TimeUnit.NANOSECONDS.toMillis(entry.getValue().max)));
+  }
+
+  /** A traced span of work. */
+  public interface Span extends AutoCloseable {
+    @Override
+    void close();
+  }
+
+  private static final class Recording {
+    private final long start = System.nanoTime();
+    private final Queue<Event> events = new ConcurrentLinkedQueue<>();
+  }
+
+  private static final class Event {
+    private final String category;
+    private final String name;
+    private final long threadId;
+    private final long start;
+    private final long end;
+
+    private Event(String category, String name, long threadId, long start, long end) {
+      this.category = category;
+      this.name = name;
+      this.threadId = threadId;
+      this.start = start;
+      this.end = end;
+    }
+  }
+
+  private static final class Summary {
+    private int count;
+    private long total;
+    private long max;
+
+    private void add(long duration) {
+      count++;
+      total += duration;
+      max = Math.max(max, duration);
+    }
+  }
+}
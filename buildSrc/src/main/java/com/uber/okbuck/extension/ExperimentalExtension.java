@@ -3,4 +3,29 @@ package com.uber.okbuck.extension;
 import com.uber.okbuck.core.annotation.Experimental;
 
 @Experimental
-public class ExperimentalExtension {}
+public class ExperimentalExtension {
+
+  /**
+   * Generate the buck files of all projects from the root okbuck task on a shared thread pool
+   * instead of from each project's okbuck task.
+   */
+  public boolean parallelGeneration = false;
+
+  /**
+   * Finalize the managers that don't depend on each other concurrently once all buck files are
+   * generated, ex. the external dependency cache along with the kotlin and lint workspaces.
+   */
+  public boolean parallelFinalize = false;
+
+  /**
+   * Maximum number of threads used to generate buck files when parallel generation is enabled, and
+   * to finalize managers when parallel finalization is enabled.
+   */
+  public int generationThreads = Runtime.getRuntime().availableProcessors();
+
+  /**
+   * Trace the phases of each okbuck run and write a chrome trace along with a summary to
+   * build/okbuck/trace.
+   */
+  public boolean trace = false;
+}
@@ -45,6 +45,9 @@ public class ExternalDependenciesExtension {
    */
   @Input private Set<String> dynamicDependenciesToIgnore = new HashSet<>();
 
+  /** Maximum number of threads used to calculate the sha256 of external dependencies. */
+  private int sha256Threads = Runtime.getRuntime().availableProcessors();
+
   @Nullable private Set<VersionlessDependency> allowAllVersionsSet;
 
   public ExternalDependenciesExtension() {}
@@ -119,4 +122,8 @@ public class ExternalDependenciesExtension {
   public Set<String> getDynamicDependenciesToIgnore() {
     return dynamicDependenciesToIgnore;
   }
+
+  public int getSha256Threads() {
+    return sha256Threads;
+  }
 }
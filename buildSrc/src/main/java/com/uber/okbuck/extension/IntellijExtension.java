@@ -1,11 +1,23 @@
 package com.uber.okbuck.extension;
 
+import org.gradle.api.tasks.Input;
+
 public class IntellijExtension {
 
   /** Enable fetching source jars. */
-  private boolean sources = false;
+  @Input private boolean sources = false;
+
+  /**
+   * Resolve source jars on a background thread while buck files are generated. Only applies when
+   * parallel generation is enabled.
+   */
+  private boolean backgroundSources = false;
 
   public boolean downloadSources() {
     return sources;
   }
+
+  public boolean resolveSourcesInBackground() {
+    return backgroundSources;
+  }
 }
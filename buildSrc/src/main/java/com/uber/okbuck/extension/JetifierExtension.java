@@ -10,6 +10,7 @@ import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 import javax.annotation.Nullable;
 import org.gradle.api.Project;
+import org.gradle.api.tasks.Input;
 
 public class JetifierExtension {
 
@@ -34,18 +35,18 @@ public class JetifierExtension {
           "org.jetbrains.kotlin:.*");
 
   /** Jetifier jar version */
-  public String version;
+  @Input public String version;
 
   /** Enable jetifier to act on aars only */
-  public boolean aarOnly;
+  @Input public boolean aarOnly;
 
   /** Stores the user defined dependencies which are excluded from being jetified. */
-  public List<String> exclude = new ArrayList<>();
+  @Input public List<String> exclude = new ArrayList<>();
 
   /** Path to file containing the custom mapping file to be used on jetifier */
-  @Nullable public String customConfigFile;
+  @Nullable @Input public String customConfigFile;
 
-  private final boolean enableJetifier;
+  @Input private final boolean enableJetifier;
 
   @Nullable private List<Pattern> excludePatterns;
 
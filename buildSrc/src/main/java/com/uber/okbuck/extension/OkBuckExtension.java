@@ -11,6 +11,7 @@ import javax.annotation.Nullable;
 import org.gradle.api.Action;
 import org.gradle.api.Project;
 import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.Nested;
 
 @SuppressWarnings("unused")
 public class OkBuckExtension {
@@ -91,19 +92,20 @@ public class OkBuckExtension {
   public String buckBinary =
       "com.github.facebook:buck:f6578801138a7b6b89d4a485dd2d0c740fdefe8a@pex";
 
-  private WrapperExtension wrapperExtension = new WrapperExtension();
-  private KotlinExtension kotlinExtension;
-  private ScalaExtension scalaExtension = new ScalaExtension();
-  private IntellijExtension intellijExtension = new IntellijExtension();
-  private ExperimentalExtension experimentalExtension = new ExperimentalExtension();
-  private TestExtension testExtension = new TestExtension();
-  private TransformExtension transformExtension = new TransformExtension();
-  private LintExtension lintExtension;
-  private JetifierExtension jetifierExtension;
-  private ExternalDependenciesExtension externalDependenciesExtension =
+  @Nested private WrapperExtension wrapperExtension = new WrapperExtension();
+  @Nested private KotlinExtension kotlinExtension;
+  @Nested private ScalaExtension scalaExtension = new ScalaExtension();
+  @Nested private IntellijExtension intellijExtension = new IntellijExtension();
+  @Nested private ExperimentalExtension experimentalExtension = new ExperimentalExtension();
+  @Nested private TestExtension testExtension = new TestExtension();
+  @Nested private VariantsExtension variantsExtension = new VariantsExtension();
+  @Nested private TransformExtension transformExtension = new TransformExtension();
+  @Nested private LintExtension lintExtension;
+  @Nested private JetifierExtension jetifierExtension;
+  @Nested private ExternalDependenciesExtension externalDependenciesExtension =
       new ExternalDependenciesExtension();
-  private VisibilityExtension visibilityExtension = new VisibilityExtension();
-  private RuleOverridesExtension ruleOverridesExtension;
+  @Nested private VisibilityExtension visibilityExtension = new VisibilityExtension();
+  @Nested private RuleOverridesExtension ruleOverridesExtension;
 
   public OkBuckExtension(Project project) {
     buckProjects = project.getSubprojects();
@@ -161,6 +163,14 @@ public class OkBuckExtension {
     return testExtension;
   }
 
+  public void variants(Action<VariantsExtension> container) {
+    container.execute(variantsExtension);
+  }
+
+  public VariantsExtension getVariantsExtension() {
+    return variantsExtension;
+  }
+
   public void lint(Action<LintExtension> container) {
     container.execute(lintExtension);
   }
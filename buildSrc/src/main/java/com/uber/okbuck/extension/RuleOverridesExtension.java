@@ -19,6 +19,7 @@ import java.util.Set;
 import java.util.stream.Collectors;
 import javax.annotation.Nullable;
 import org.gradle.api.Project;
+import org.gradle.api.tasks.Input;
 
 /*
 Note: Do not merge this section with javadoc to prevent GJF from butchering it.
@@ -78,13 +79,13 @@ public class RuleOverridesExtension {
           .build();
 
   private Map<String, OverrideSetting> overridesMap = Collections.emptyMap();
-  private final List<RawOverrideSetting> overrides = new ArrayList<>();
+  @Input private final List<RawOverrideSetting> overrides = new ArrayList<>();
 
   /** Import location to be used by default for overrides. */
-  @Nullable private String defaultImportLocation;
+  @Nullable @Input private String defaultImportLocation;
 
   /** Rule name prefix to be used by default for overrides. */
-  @Nullable private String defaultRuleNamePrefix;
+  @Nullable @Input private String defaultRuleNamePrefix;
 
   /** Override section for the rule. */
   protected void override(Closure<RawOverrideSetting> action) {
@@ -1,7 +1,9 @@
 package com.uber.okbuck.extension;
 
+import org.gradle.api.tasks.Input;
+
 public class ScalaExtension {
 
   /** Version of the scala compiler to use. */
-  public String version = "2.12.4";
+  @Input public String version = "2.12.4";
 }
@@ -2,23 +2,24 @@ package com.uber.okbuck.extension;
 
 import java.util.Set;
 import javax.annotation.Nullable;
+import org.gradle.api.tasks.Input;
 
 public class TestExtension {
 
   /** Enable generation of robolectric test rules. */
-  public boolean robolectric = false;
+  @Input public boolean robolectric = false;
 
   /**
    * Choose only a specific subset of robolectric API levels to download. Default is all api levels
    */
-  @Nullable public Set<String> robolectricApis = null;
+  @Nullable @Input public Set<String> robolectricApis = null;
 
   /** Enable generation of espresso test rules. */
-  public boolean espresso = false;
+  @Input public boolean espresso = false;
 
   /** Enable generation of espresso test rules on android libraries. */
-  public boolean espressoForLibraries = false;
+  @Input public boolean espressoForLibraries = false;
 
   /** Enable creation of integrationTest rules for modules with `integrationTest` folder */
-  public boolean enableIntegrationTests = false;
+  @Input public boolean enableIntegrationTests = false;
 }
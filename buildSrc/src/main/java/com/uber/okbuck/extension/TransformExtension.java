@@ -4,11 +4,18 @@ import com.uber.okbuck.core.annotation.Experimental;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import org.gradle.api.tasks.Input;
 
 @SuppressWarnings("unused")
 @Experimental
 public class TransformExtension {
 
   /** Stores the configuration per transform. Mapping is stored as target-[transforms]. */
-  public Map<String, List<Map<String, String>>> transforms = new HashMap<>();
+  @Input public Map<String, List<Map<String, String>>> transforms = new HashMap<>();
+
+  /**
+   * Run transforms on a long lived worker instead of starting a jvm for each of them. The worker is
+   * kept across builds and restarted when the transforms change. Requires python.
+   */
+  @Input public boolean useWorker = false;
 }
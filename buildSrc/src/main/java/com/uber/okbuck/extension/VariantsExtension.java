@@ -0,0 +1,32 @@
+package com.uber.okbuck.extension;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.regex.Pattern;
+import org.gradle.api.tasks.Input;
+
+/**
+ * Limits the android variants okbuck generates rules for, ex. to only the debug variants developers
+ * build locally. Variants that are filtered out are never resolved.
+ */
+public class VariantsExtension {
+
+  /**
+   * Regex patterns of the variant names to generate rules for, ex. "freeDebug" or ".*Debug". All
+   * variants are included by default. Variants of libraries that included variants depend on need
+   * to be included as well.
+   */
+  @Input public Set<String> include = new HashSet<>();
+
+  /** Regex patterns of the variant names to not generate rules for. Takes precedence on include. */
+  @Input public Set<String> exclude = new HashSet<>();
+
+  /** Returns whether rules should be generated for the variant with the given name. */
+  public boolean isIncluded(String variant) {
+    return (include.isEmpty() || matches(include, variant)) && !matches(exclude, variant);
+  }
+
+  private static boolean matches(Set<String> patterns, String variant) {
+    return patterns.stream().anyMatch(pattern -> Pattern.matches(pattern, variant));
+  }
+}
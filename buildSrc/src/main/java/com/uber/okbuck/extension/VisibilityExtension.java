@@ -1,6 +1,8 @@
 package com.uber.okbuck.extension;
 
+import org.gradle.api.tasks.Input;
+
 public class VisibilityExtension {
-  public String visibilityFileName = "VISIBILITY.bzl";
-  public String visibilityFunction = "module_visibility";
+  @Input public String visibilityFileName = "VISIBILITY.bzl";
+  @Input public String visibilityFunction = "module_visibility";
 }
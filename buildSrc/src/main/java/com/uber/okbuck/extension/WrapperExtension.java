@@ -2,19 +2,20 @@ package com.uber.okbuck.extension;
 
 import com.google.common.collect.Sets;
 import java.util.Set;
+import org.gradle.api.tasks.Input;
 
 public class WrapperExtension {
 
   /** Custom buck repository to add as a remote to the wrapper buck installation */
-  public String repo = "";
+  @Input public String repo = "";
 
   /** List of changed files to trigger okbuck runs on */
-  public Set<String> watch = Sets.newHashSet("**/*.gradle", "**/gradle-wrapper.properties");
+  @Input public Set<String> watch = Sets.newHashSet("**/*.gradle", "**/gradle-wrapper.properties");
 
   /** List of added/removed directories to trigger okbuck runs on */
-  public Set<String> sourceRoots =
+  @Input public Set<String> sourceRoots =
       Sets.newHashSet("**/src/**/java", "**/src/**/kotlin", "**/src/**/res", "**/src/**/resources");
 
   /** List of directories to ignore when querying for changes that should trigger okbuck runs */
-  public Set<String> ignoredDirs = Sets.newHashSet(".okbuck");
+  @Input public Set<String> ignoredDirs = Sets.newHashSet(".okbuck");
 }
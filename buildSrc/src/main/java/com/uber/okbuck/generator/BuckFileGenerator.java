@@ -67,7 +67,8 @@ public final class BuckFileGenerator {
     }
 
     File buckFile = project.file(OkBuckGradlePlugin.BUCK);
-    buckFileManager.writeToBuckFile(rules, buckFile, extraLoadStatements);
+    // Exported file rules are appended to the buck file before it is written
+    buckFileManager.deferBuckFile(rules, buckFile, extraLoadStatements);
   }
 
   private static List<Rule> createRules(Project project, boolean integrationTestsEnabled) {
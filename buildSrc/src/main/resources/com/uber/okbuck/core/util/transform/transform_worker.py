@@ -0,0 +1,216 @@
+#!/usr/bin/env python
+"""Runs a transform on the long lived okbuck transform worker.
+
+Starts a worker for the transform binary if none is running yet, and sends it the request as a
+line of json. A worker is kept per transform binary and restarted when the binary changes.
+Requests are serialized through a lock file, which the worker also takes before exiting once idle.
+Workers live in a directory per user that only that user can access, since anyone able to write to
+it could talk to the worker or have the client signal another process.
+"""
+
+import argparse
+import errno
+import fcntl
+import hashlib
+import json
+import os
+import select
+import signal
+import stat
+import subprocess
+import sys
+import tempfile
+import time
+import uuid
+
+WORKER_CLASS = "com.uber.okbuck.transform.TransformWorker"
+
+
+def parse_args():
+    parser = argparse.ArgumentParser(description=__doc__)
+    parser.add_argument("--jar", required=True, help="transform binary")
+    parser.add_argument("--in-jars-dir", required=True)
+    parser.add_argument("--out-jars-dir", required=True)
+    parser.add_argument("--android-bootclasspath", default="")
+    parser.add_argument("--transform-class", required=True)
+    parser.add_argument("--config-file")
+    parser.add_argument("--transform-classpath", default="")
+    return parser.parse_args()
+
+
+def split_classpath(classpath):
+    return [os.path.abspath(path) for path in classpath.split(":") if path]
+
+
+def read_pid(pid_file):
+    try:
+        with open(pid_file) as f:
+            pid = int(f.read().strip())
+        os.kill(pid, 0)
+        return pid
+    except (IOError, OSError, ValueError):
+        return None
+
+
+def secure_dir(path):
+    """Creates the dir only the current user can access, or checks that an existing one is."""
+    try:
+        os.mkdir(path, 0o700)
+    except OSError as e:
+        if e.errno != errno.EEXIST:
+            raise
+    dir_stat = os.lstat(path)
+    if (
+        not stat.S_ISDIR(dir_stat.st_mode)
+        or dir_stat.st_uid != os.getuid()
+        or dir_stat.st_mode & 0o077
+    ):
+        raise SystemExit(
+            "okbuck transform worker dir %s must be a directory only accessible by its owner"
+            % path)
+    return path
+
+
+def get_worker_dir(jar):
+    base_dir = os.environ.get("OKBUCK_TRANSFORM_WORKER_DIR")
+    if not base_dir:
+        base_dir = os.path.join(tempfile.gettempdir(), "okbuck-transform-%d" % os.getuid())
+    secure_dir(base_dir)
+    return secure_dir(
+        os.path.join(base_dir, hashlib.sha1(jar.encode("utf-8")).hexdigest()[:12]))
+
+
+def get_binary_key(jar):
+    jar_stat = os.stat(jar)
+    # Nanoseconds so that a binary rebuilt within the same second is told apart
+    mtime = getattr(jar_stat, "st_mtime_ns", None)
+    if mtime is None:
+        mtime = repr(jar_stat.st_mtime)
+    return "%d:%d:%s" % (jar_stat.st_ino, jar_stat.st_size, mtime)
+
+
+def read(path):
+    try:
+        with open(path) as f:
+            return f.read()
+    except IOError:
+        return None
+
+
+def start_worker(worker_dir, jar, binary_key):
+    """Returns a function telling whether the worker for the binary is still running."""
+    pid_file = os.path.join(worker_dir, "pid")
+    key_file = os.path.join(worker_dir, "key")
+    pid = read_pid(pid_file)
+    if pid and read(key_file) == binary_key:
+        return lambda: read_pid(pid_file) == pid
+    if pid:
+        os.kill(pid, signal.SIGTERM)
+
+    for name in ("in", "out"):
+        fifo = os.path.join(worker_dir, name)
+        if os.path.exists(fifo):
+            os.remove(fifo)
+        os.mkfifo(fifo)
+
+    # Both fifos are opened read-write so that the worker never sees the end of its input and
+    # responses stay buffered until a client reads them.
+    worker = subprocess.Popen(
+        [
+            "sh",
+            "-c",
+            'exec java -Dokbuck.workerLockFile="$1" -cp "$2" ' + WORKER_CLASS
+            + ' 0<>"$3" 1<>"$4" 2>>"$5"',
+            "sh",
+            os.path.join(worker_dir, "lock"),
+            jar,
+            os.path.join(worker_dir, "in"),
+            os.path.join(worker_dir, "out"),
+            os.path.join(worker_dir, "log"),
+        ],
+        close_fds=True,
+        preexec_fn=os.setsid,
+    )
+    with open(pid_file, "w") as f:
+        f.write(str(worker.pid))
+    with open(key_file, "w") as f:
+        f.write(binary_key)
+    # The worker is a child of this process until it exits, so it can't be probed with its pid
+    return lambda: worker.poll() is None
+
+
+def send(worker_dir, is_alive, request):
+    # The request is only kept in the fifo while it is open, which the worker may not be yet
+    in_fd = os.open(os.path.join(worker_dir, "in"), os.O_RDWR)
+    out_fd = os.open(os.path.join(worker_dir, "out"), os.O_RDONLY | os.O_NONBLOCK)
+    try:
+        os.write(in_fd, (json.dumps(request) + "\n").encode("utf-8"))
+        buf = b""
+        while True:
+            ready, _, _ = select.select([out_fd], [], [], 1.0)
+            chunk = b""
+            if ready:
+                try:
+                    chunk = os.read(out_fd, 65536)
+                except OSError as e:
+                    if e.errno != errno.EAGAIN:
+                        raise
+            if not chunk:
+                if not is_alive():
+                    return None
+                time.sleep(0.05)
+                continue
+            buf += chunk
+            while b"\n" in buf:
+                line, buf = buf.split(b"\n", 1)
+                response = json.loads(line.decode("utf-8"))
+                # Responses to requests of clients that went away are skipped
+                if response.get("id") == request["id"]:
+                    return response
+    finally:
+        os.close(in_fd)
+        os.close(out_fd)
+
+
+def main():
+    args = parse_args()
+    jar = os.path.abspath(args.jar)
+    binary_key = get_binary_key(jar)
+    worker_dir = get_worker_dir(jar)
+
+    request = {
+        "id": str(uuid.uuid4()),
+        "inJarsDir": os.path.abspath(args.in_jars_dir),
+        "outJarsDir": os.path.abspath(args.out_jars_dir),
+        "configFile": os.path.abspath(args.config_file) if args.config_file else None,
+        "androidBootClasspath": split_classpath(args.android_bootclasspath),
+        "transformClasspath": split_classpath(args.transform_classpath),
+        "transformClass": args.transform_class,
+    }
+
+    with open(os.path.join(worker_dir, "lock"), "a") as lock:
+        fcntl.lockf(lock, fcntl.LOCK_EX)
+        try:
+            response = None
+            # The worker may have exited while idle just before the lock was taken
+            for _ in range(2):
+                is_alive = start_worker(worker_dir, jar, binary_key)
+                response = send(worker_dir, is_alive, request)
+                if response is not None:
+                    break
+        finally:
+            fcntl.lockf(lock, fcntl.LOCK_UN)
+
+    if response is None:
+        sys.stderr.write(
+            "okbuck transform worker exited, see %s\n" % os.path.join(worker_dir, "log"))
+        return 1
+    if response.get("exitCode", 1) != 0:
+        sys.stderr.write(
+            "okbuck transform failed: %s\nsee %s\n"
+            % (response.get("error"), os.path.join(worker_dir, "log")))
+    return response.get("exitCode", 1)
+
+
+if __name__ == "__main__":
+    sys.exit(main())
@@ -4,9 +4,10 @@ import com.fizzed.rocker.runtime.DefaultRockerModel;
 import com.fizzed.rocker.runtime.OutputStreamOutput;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.ImmutableSortedSet;
+import com.uber.okbuck.core.util.FileUtil;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.OutputStream;
 import java.nio.file.Path;
 import java.util.Collection;
@@ -101,11 +102,13 @@ public abstract class Rule<T extends Rule> extends DefaultRockerModel {
     render(path.toFile());
   }
 
+  /** Renders to the file unless it already has the same contents. */
   public void render(File file) {
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+    render(os);
     try {
-      file.getParentFile().mkdirs();
-      render(new FileOutputStream(file));
-    } catch (FileNotFoundException e) {
+      FileUtil.writeIfChanged(file.toPath(), os.toByteArray());
+    } catch (IOException e) {
       throw new RuntimeException(e);
     }
   }
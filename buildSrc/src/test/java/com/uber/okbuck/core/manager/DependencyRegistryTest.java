@@ -0,0 +1,170 @@
+package com.uber.okbuck.core.manager;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.uber.okbuck.core.dependency.DependencyFactory;
+import com.uber.okbuck.core.dependency.ExternalDependency;
+import com.uber.okbuck.core.dependency.VersionlessDependency;
+import com.uber.okbuck.extension.OkBuckExtension;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.gradle.api.Project;
+import org.gradle.testfixtures.ProjectBuilder;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Registers dependencies with {@link DependencyManager} from many threads at once, as projects
+ * generating in parallel do, and checks that no registration is lost.
+ */
+public class DependencyRegistryTest {
+
+  private static final int THREADS = Math.max(8, Runtime.getRuntime().availableProcessors());
+  private static final int ARTIFACTS = 200;
+  private static final int VERSIONS = 3;
+  private static final int REGISTRATIONS_PER_THREAD = 20_000;
+  private static final int RAW_DEPENDENCIES = 500;
+
+  @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private Project project;
+  private OkBuckExtension okbuckExt;
+  private DependencyManager dependencyManager;
+  private ExecutorService executor;
+
+  @Before
+  public void setup() throws Exception {
+    project = ProjectBuilder.builder().withProjectDir(temporaryFolder.newFolder()).build();
+    okbuckExt = new OkBuckExtension(project);
+    dependencyManager =
+        new DependencyManager(
+            project, okbuckExt, new BuckFileManager(okbuckExt.getRuleOverridesExtension()));
+    executor = Executors.newFixedThreadPool(THREADS);
+  }
+
+  @After
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void addDependency_fromManyThreads_shouldMergeAllVersions() throws Exception {
+    List<ExternalDependency> dependencies = new ArrayList<>(ARTIFACTS * VERSIONS);
+    for (int artifact = 0; artifact < ARTIFACTS; artifact++) {
+      for (int version = 0; version < VERSIONS; version++) {
+        String name = "lib" + artifact;
+        String versionName = "1.0." + version;
+        dependencies.add(
+            DependencyFactory.from(
+                "com.example.group" + artifact % 10,
+                name,
+                versionName,
+                new File(project.getBuildDir(), name + "-" + versionName + ".jar"),
+                null,
+                okbuckExt.getExternalDependenciesExtension(),
+                okbuckExt.getJetifierExtension()));
+      }
+    }
+
+    // Each thread registers its own random plan, so the expected state is known up front
+    Map<VersionlessDependency, Set<ExternalDependency>> expectedVersions = new HashMap<>();
+    Set<VersionlessDependency> registeredWithPrebuilt = new HashSet<>();
+    List<Callable<Void>> tasks = new ArrayList<>();
+    CountDownLatch start = new CountDownLatch(THREADS);
+    for (int thread = 0; thread < THREADS; thread++) {
+      Random random = new Random(thread);
+      int[] indices = new int[REGISTRATIONS_PER_THREAD];
+      boolean[] skipPrebuilt = new boolean[REGISTRATIONS_PER_THREAD];
+      for (int i = 0; i < REGISTRATIONS_PER_THREAD; i++) {
+        indices[i] = random.nextInt(dependencies.size());
+        ExternalDependency dependency = dependencies.get(indices[i]);
+        // Some artifacts are only used by scopes that skip prebuilt rules, others mostly are
+        int artifact = indices[i] / VERSIONS;
+        skipPrebuilt[i] = artifact % 4 == 0 || (artifact % 4 == 1 && random.nextInt(1000) != 0);
+        expectedVersions
+            .computeIfAbsent(dependency.getVersionless(), key -> new HashSet<>())
+            .add(dependency);
+        if (!skipPrebuilt[i]) {
+          registeredWithPrebuilt.add(dependency.getVersionless());
+        }
+      }
+      tasks.add(
+          () -> {
+            start.countDown();
+            start.await();
+            for (int i = 0; i < indices.length; i++) {
+              dependencyManager.addDependency(dependencies.get(indices[i]), skipPrebuilt[i]);
+            }
+            return null;
+          });
+    }
+    runAll(tasks);
+
+    Map<VersionlessDependency, Collection<ExternalDependency>> dependencyMap =
+        dependencyManager.filterDependencies();
+    assertThat(dependencyMap.keySet()).isEqualTo(expectedVersions.keySet());
+    expectedVersions.forEach(
+        (versionless, versions) -> {
+          assertThat(dependencyMap.get(versionless))
+              .as("versions of %s", versionless)
+              .containsExactlyInAnyOrderElementsOf(versions);
+          assertThat(dependencyManager.skipsPrebuilt(versionless))
+              .as("skips prebuilt for %s", versionless)
+              .isEqualTo(!registeredWithPrebuilt.contains(versionless));
+        });
+  }
+
+  @Test
+  public void addDependencies_fromManyThreads_shouldKeepAllDependencies() throws Exception {
+    List<org.gradle.api.artifacts.ExternalDependency> dependencies = new ArrayList<>();
+    for (int i = 0; i < RAW_DEPENDENCIES; i++) {
+      dependencies.add(
+          (org.gradle.api.artifacts.ExternalDependency)
+              project.getDependencies().create("com.example:lib" + i + ":1.0." + i % VERSIONS));
+    }
+
+    List<Callable<Void>> tasks = new ArrayList<>();
+    CountDownLatch start = new CountDownLatch(THREADS);
+    for (int thread = 0; thread < THREADS; thread++) {
+      List<org.gradle.api.artifacts.ExternalDependency> shuffled = new ArrayList<>(dependencies);
+      Collections.shuffle(shuffled, new Random(thread));
+      tasks.add(
+          () -> {
+            start.countDown();
+            start.await();
+            // Scopes register the dependencies of a configuration at a time
+            for (int i = 0; i < shuffled.size(); i += 10) {
+              dependencyManager.addDependencies(
+                  new HashSet<>(shuffled.subList(i, Math.min(i + 10, shuffled.size()))));
+            }
+            return null;
+          });
+    }
+    runAll(tasks);
+
+    assertThat(dependencyManager.getRawDependencies())
+        .containsExactlyInAnyOrderElementsOf(dependencies);
+  }
+
+  private void runAll(List<Callable<Void>> tasks) throws Exception {
+    for (Future<Void> future : executor.invokeAll(tasks)) {
+      future.get();
+    }
+  }
+}
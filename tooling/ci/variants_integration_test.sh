@@ -0,0 +1,53 @@
+#!/bin/bash
+
+# Generates rules for the debug variants only, and checks that android variants are filtered while
+# jvm projects, which have a single main target, keep it.
+init_script=$(mktemp)
+trap 'rm -f "$init_script"' EXIT
+cat > "$init_script" <<'GRADLE'
+rootProject {
+    afterEvaluate {
+        okbuck.variants {
+            include = [".*Debug", "debug"]
+        }
+    }
+}
+GRADLE
+
+# okbuck only runs when invoked the way buckw invokes it
+./gradlew okbuck -Dokbuck.wrapper=true -I "$init_script" $EXTRA_OKBUCK_ARGS
+if [ $? -ne 0 ]; then
+    echo "okbuck failed with variants filtered. Please revisit any changes you may have made to variant filtering.";
+    exit 1;
+fi
+
+success=y
+for project in libraries/javalibrary libraries/kotlinlibrary libraries/groovylibrary libraries/scalalibrary java-app kotlin-app
+do
+    if grep -q '"src_main"' "$project/BUCK"
+    then :
+    else
+        printf 'no main rule for jvm project %s\n' "$project"
+        success=n
+    fi
+done
+for check in '"src_freeDebug"' '"src_paidDebug"'
+do
+    if grep -q "$check" libraries/common/BUCK
+    then :
+    else
+        printf 'no match for %s\n' "$check"
+        success=n
+    fi
+done
+if grep -q 'Release"' libraries/common/BUCK app/BUCK
+then
+    echo "rules were generated for release variants that are filtered out"
+    success=n
+fi
+if [ "$success" = "y" ]; then
+    echo "Variants were filtered as expected."
+else
+    echo "Variant filtering did not generate the expected rules. Please double check your changes to resolve.";
+    exit 1;
+fi
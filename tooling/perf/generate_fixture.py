@@ -0,0 +1,446 @@
+#!/usr/bin/env python3
+
+"""
+Generates a synthetic gradle build to measure okbuck against, shaped like a large monorepo.
+
+The build has Android, Java and Kotlin library modules whose project dependencies form a layered
+graph with a few heavily used core modules, flavored Android apps at the top, and a local file based
+maven repository of fake jars with transitive dependencies between them. The build applies okbuck
+from this repository's buildSrc, so it always measures the current sources.
+
+    ./tooling/perf/generate_fixture.py --modules 2000 build/perf-fixture
+"""
+
+import argparse
+import bisect
+import itertools
+import json
+import os
+import random
+import shutil
+import sys
+import zipfile
+
+REPO_DIR = os.path.dirname(os.path.dirname(os.path.dirname(os.path.abspath(__file__))))
+
+EXTERNAL_GROUP = "com.example.ext"
+EXTERNAL_LIBS_PER_GROUP = 10
+PACKAGE = "com.example.fixture"
+
+ANDROID = "android"
+KOTLIN_ANDROID = "kotlin-android"
+JAVA = "java"
+KOTLIN = "kotlin"
+JVM_TYPES = (JAVA, KOTLIN)
+
+ROOT_BUILD = """\
+buildscript {{
+    apply from: rootProject.file("dependencies.gradle")
+    repositories {{
+        google()
+        jcenter()
+    }}
+    dependencies {{
+        classpath deps.build.androidPlugin
+        classpath deps.build.kotlinPlugin
+    }}
+}}
+
+allprojects {{
+    repositories {{
+        maven {{ url rootProject.file("repo") }}
+        google()
+        jcenter()
+    }}
+}}
+
+apply plugin: "com.uber.okbuck"
+
+okbuck {{
+    buildToolVersion = "{build_tools}"
+    target = "android-{compile_sdk}"
+    buckProjects = project.subprojects.findAll {{ it.buildFile.exists() }}
+    kotlin {{
+        version = deps.versions.kotlin
+    }}
+}}
+"""
+
+ANDROID_BUILD = """\
+apply plugin: "{plugin}"
+{kotlin_plugin}
+android {{
+    compileSdkVersion {compile_sdk}
+    buildToolsVersion "{build_tools}"
+
+    defaultConfig {{
+        minSdkVersion 16
+        targetSdkVersion {compile_sdk}
+{dimension_strategy}{application_id}    }}
+{flavor_config}{signing_config}}}
+
+dependencies {{
+{dependencies}}}
+"""
+
+JVM_BUILD = """\
+apply plugin: "java-library"
+{kotlin_plugin}
+sourceCompatibility = JavaVersion.VERSION_1_8
+targetCompatibility = JavaVersion.VERSION_1_8
+
+dependencies {{
+{dependencies}}}
+"""
+
+MANIFEST = """\
+<manifest xmlns:android="http://schemas.android.com/apk/res/android" package="{package}">
+    <application android:label="@string/{name}_label" />
+</manifest>
+"""
+
+STRINGS = """\
+<resources>
+    <string name="{name}_label">{name}</string>
+</resources>
+"""
+
+POM = """\
+<?xml version="1.0" encoding="UTF-8"?>
+<project xmlns="http://maven.apache.org/POM/4.0.0">
+  <modelVersion>4.0.0</modelVersion>
+  <groupId>{group}</groupId>
+  <artifactId>{name}</artifactId>
+  <version>{version}</version>
+  <dependencies>
+{dependencies}  </dependencies>
+</project>
+"""
+
+POM_DEPENDENCY = """\
+    <dependency>
+      <groupId>{group}</groupId>
+      <artifactId>{name}</artifactId>
+      <version>{version}</version>
+    </dependency>
+"""
+
+
+class Module(object):
+
+    def __init__(self, index, kind, path):
+        self.index = index
+        self.kind = kind
+        self.path = path
+        self.name = path.split(":")[-1]
+        self.package = PACKAGE + "." + self.name.replace("-", "_")
+        self.flavored = False
+        self.project_deps = []
+        self.external_deps = []
+        self.has_tests = False
+
+    @property
+    def is_android(self):
+        return self.kind not in JVM_TYPES
+
+    @property
+    def is_kotlin(self):
+        return self.kind in (KOTLIN, KOTLIN_ANDROID)
+
+    @property
+    def directory(self):
+        return self.path.lstrip(":").replace(":", os.sep)
+
+
+class ExternalLib(object):
+
+    def __init__(self, index, versions):
+        self.index = index
+        self.group = "{}.g{}".format(EXTERNAL_GROUP, index // EXTERNAL_LIBS_PER_GROUP)
+        self.name = "lib{}".format(index)
+        self.versions = versions
+        self.deps = []
+
+    def coords(self, version):
+        return "{}:{}:{}".format(self.group, self.name, version)
+
+
+def weighted_sample(rng, candidates, weights, count):
+    """Samples up to count distinct candidates, each picked with a probability proportional to its
+    weight."""
+    picked = set()
+    cumulative = list(itertools.accumulate(weights))
+    total = cumulative[-1] if cumulative else 0
+    attempts = 0
+    while len(picked) < min(count, len(candidates)) and attempts < count * 10:
+        attempts += 1
+        picked.add(candidates[bisect.bisect_right(cumulative, rng.random() * total)])
+    return sorted(picked, key=lambda candidate: candidate.index)
+
+
+def generate_graph(args, rng):
+    modules = []
+    library_count = args.modules - args.apps
+    jvm_count = int(library_count * (1 - args.android_fraction))
+    for index in range(library_count):
+        kotlin = rng.random() < args.kotlin_fraction
+        # Plain java and kotlin modules sit at the bottom of the graph since android modules can
+        # depend on them but not the other way around.
+        if index < jvm_count:
+            kind = KOTLIN if kotlin else JAVA
+        else:
+            kind = KOTLIN_ANDROID if kotlin else ANDROID
+        module = Module(index, kind, ":libraries:lib{:04d}".format(index))
+        module.flavored = module.is_android and rng.random() < args.flavored_fraction
+        module.has_tests = rng.random() < args.test_fraction
+        modules.append(module)
+    for app in range(args.apps):
+        module = Module(library_count + app, "app", ":apps:app{:02d}".format(app))
+        module.flavored = True
+        module.has_tests = True
+        modules.append(module)
+
+    # Preferential attachment: modules that are already depended upon are more likely to gain new
+    # dependents, which yields a few core modules with a large fan-in like in real monorepos.
+    fan_in = [0] * len(modules)
+    for module in modules[1:]:
+        candidates = [
+            candidate for candidate in modules[:module.index]
+            if module.is_android or not candidate.is_android
+        ]
+        if not candidates:
+            continue
+        if module.kind == "app":
+            fan_out = rng.randint(args.max_deps, args.max_deps * 4)
+        else:
+            fan_out = min(int(rng.paretovariate(1.5)), args.max_deps)
+        # Recent modules are favored too so that the graph is deep rather than flat
+        weights = [
+            (1 + fan_in[candidate.index]) * (1 + candidate.index / len(modules))
+            for candidate in candidates
+        ]
+        module.project_deps = weighted_sample(rng, candidates, weights, fan_out)
+        for dep in module.project_deps:
+            fan_in[dep.index] += 1
+    return modules
+
+
+def generate_external_libs(args, rng):
+    libs = []
+    for index in range(args.external_libs):
+        # Some libraries are requested at different versions by different modules
+        versions = ["1.0.0", "1.1.0"] if rng.random() < args.conflict_fraction else ["1.0.0"]
+        lib = ExternalLib(index, versions)
+        if index > 0:
+            lib.deps = rng.sample(libs[:index], min(index, rng.randint(0, 3)))
+        libs.append(lib)
+    return libs
+
+
+def assign_external_deps(args, rng, modules, libs):
+    # Popular libraries are used by most modules, following a zipf like distribution
+    weights = [1.0 / (rank + 1) for rank in range(len(libs))]
+    for module in modules:
+        count = rng.randint(0, args.external_deps_per_module * 2)
+        module.external_deps = [
+            lib.coords(rng.choice(lib.versions))
+            for lib in weighted_sample(rng, libs, weights, count)
+        ]
+
+
+def write(path, content):
+    os.makedirs(os.path.dirname(path), exist_ok=True)
+    with open(path, "w") as out:
+        out.write(content)
+
+
+def write_jar(path, class_name):
+    os.makedirs(os.path.dirname(path), exist_ok=True)
+    with zipfile.ZipFile(path, "w") as jar:
+        jar.writestr("META-INF/MANIFEST.MF", "Manifest-Version: 1.0\n")
+        jar.writestr(class_name.replace(".", "/") + ".class", b"\xca\xfe\xba\xbe")
+
+
+def write_repo(fixture_dir, libs):
+    for lib in libs:
+        for version in lib.versions:
+            base = os.path.join(
+                fixture_dir, "repo", *lib.group.split("."), lib.name, version)
+            file_name = "{}-{}".format(lib.name, version)
+            write_jar(
+                os.path.join(base, file_name + ".jar"),
+                "{}.{}.Lib{}".format(lib.group, lib.name, version.replace(".", "")))
+            dependencies = "".join(
+                POM_DEPENDENCY.format(group=dep.group, name=dep.name, version=dep.versions[0])
+                for dep in lib.deps)
+            write(
+                os.path.join(base, file_name + ".pom"),
+                POM.format(
+                    group=lib.group, name=lib.name, version=version, dependencies=dependencies))
+
+
+def dependency_lines(module, configuration):
+    lines = ["    {} project(\"{}\")\n".format(configuration, dep.path)
+             for dep in module.project_deps]
+    lines += ["    {} \"{}\"\n".format(configuration, coords) for coords in module.external_deps]
+    if module.has_tests:
+        lines.append("    testImplementation \"{}:lib0:1.0.0\"\n".format(EXTERNAL_GROUP + ".g0"))
+    return "".join(lines)
+
+
+def write_module(args, fixture_dir, module):
+    module_dir = os.path.join(fixture_dir, module.directory)
+    ext = "kt" if module.is_kotlin else "java"
+    class_name = "".join(part.capitalize() for part in module.name.split("-"))
+    if module.is_kotlin:
+        source = "package {}\n\nclass {}\n".format(module.package, class_name)
+        test_source = "package {}\n\nclass {}Test\n".format(module.package, class_name)
+    else:
+        source = "package {};\n\npublic class {} {{}}\n".format(module.package, class_name)
+        test_source = "package {};\n\npublic class {}Test {{}}\n".format(
+            module.package, class_name)
+    source_dir = "kotlin" if module.kind == KOTLIN else "java"
+    package_dir = module.package.replace(".", os.sep)
+    write(
+        os.path.join(module_dir, "src", "main", source_dir, package_dir, class_name + "." + ext),
+        source)
+    if module.has_tests:
+        write(
+            os.path.join(
+                module_dir, "src", "test", source_dir, package_dir, class_name + "Test." + ext),
+            test_source)
+
+    if not module.is_android:
+        write(
+            os.path.join(module_dir, "build.gradle"),
+            JVM_BUILD.format(
+                kotlin_plugin="apply plugin: \"kotlin\"\n" if module.is_kotlin else "",
+                dependencies=dependency_lines(module, "api")))
+        return
+
+    write(
+        os.path.join(module_dir, "src", "main", "AndroidManifest.xml"),
+        MANIFEST.format(package=module.package, name=module.name.replace("-", "_")))
+    write(
+        os.path.join(module_dir, "src", "main", "res", "values", "strings.xml"),
+        STRINGS.format(name=module.name.replace("-", "_")))
+
+    flavors = ["free", "paid"]
+    flavor_config = ""
+    # Modules without flavors pick one of the flavors of the libraries they depend on
+    dimension_strategy = "        missingDimensionStrategy \"tier\", {}\n".format(
+        ", ".join("\"{}\"".format(flavor) for flavor in flavors))
+    if module.flavored:
+        dimension_strategy = ""
+        flavor_config = (
+            "\n    flavorDimensions \"tier\"\n\n    productFlavors {\n"
+            + "".join("        {} {{}}\n".format(flavor) for flavor in flavors)
+            + "    }\n")
+    application_id = ""
+    signing_config = ""
+    if module.kind == "app":
+        application_id = "        applicationId \"{}\"\n".format(module.package)
+        signing_config = (
+            "\n    signingConfigs {\n        debug {\n"
+            "            storeFile rootProject.file(\"debug.keystore\")\n        }\n    }\n\n"
+            "    buildTypes {\n        release {\n"
+            "            signingConfig signingConfigs.debug\n        }\n    }\n")
+    write(
+        os.path.join(module_dir, "build.gradle"),
+        ANDROID_BUILD.format(
+            plugin="com.android.application" if module.kind == "app" else "com.android.library",
+            kotlin_plugin="apply plugin: \"kotlin-android\"\n" if module.is_kotlin else "",
+            compile_sdk=args.compile_sdk,
+            build_tools=args.build_tools,
+            dimension_strategy=dimension_strategy,
+            application_id=application_id,
+            flavor_config=flavor_config,
+            signing_config=signing_config,
+            dependencies=dependency_lines(
+                module, "implementation" if module.kind == "app" else "api")))
+
+
+def write_root(args, fixture_dir, modules):
+    write(
+        os.path.join(fixture_dir, "settings.gradle"),
+        "".join("include \"{}\"\n".format(module.path) for module in modules))
+    write(
+        os.path.join(fixture_dir, "build.gradle"),
+        ROOT_BUILD.format(build_tools=args.build_tools, compile_sdk=args.compile_sdk))
+    write(
+        os.path.join(fixture_dir, "gradle.properties"),
+        "org.gradle.jvmargs=-Xmx{}\norg.gradle.parallel=true\nsystemProp.okbuck.wrapper=true\n"
+        .format(args.gradle_heap))
+    shutil.copy(os.path.join(REPO_DIR, "dependencies.gradle"), fixture_dir)
+    shutil.copy(os.path.join(REPO_DIR, "config", "signing", "debug.keystore"), fixture_dir)
+    # buildSrc reads ../dependencies.gradle, which resolves to the copy in the fixture
+    os.symlink(os.path.join(REPO_DIR, "buildSrc"), os.path.join(fixture_dir, "buildSrc"))
+    local_properties = os.path.join(REPO_DIR, "local.properties")
+    if os.path.exists(local_properties):
+        shutil.copy(local_properties, fixture_dir)
+
+
+def main():
+    parser = argparse.ArgumentParser(description=__doc__.strip().splitlines()[0])
+    parser.add_argument(
+        "fixture_dir", help="Directory to generate the build in, replaced if it exists")
+    parser.add_argument("--modules", type=int, default=2000, help="Total number of modules")
+    parser.add_argument("--apps", type=int, default=5, help="Number of android apps among them")
+    parser.add_argument("--android-fraction", type=float, default=0.6,
+                        help="Fraction of library modules that are android libraries")
+    parser.add_argument("--kotlin-fraction", type=float, default=0.3,
+                        help="Fraction of library modules written in kotlin")
+    parser.add_argument("--flavored-fraction", type=float, default=0.3,
+                        help="Fraction of android libraries with product flavors")
+    parser.add_argument("--test-fraction", type=float, default=0.5,
+                        help="Fraction of library modules with unit tests")
+    parser.add_argument("--max-deps", type=int, default=15,
+                        help="Maximum number of project dependencies of a library module")
+    parser.add_argument("--external-libs", type=int, default=1000,
+                        help="Number of libraries in the local maven repository")
+    parser.add_argument("--external-deps-per-module", type=int, default=5,
+                        help="Average number of external dependencies declared by a module")
+    parser.add_argument("--conflict-fraction", type=float, default=0.05,
+                        help="Fraction of external libraries requested at two versions")
+    parser.add_argument("--compile-sdk", type=int, default=28)
+    parser.add_argument("--build-tools", default="28.0.3")
+    parser.add_argument("--gradle-heap", default="4g", help="Maximum heap of the gradle daemon")
+    parser.add_argument("--seed", type=int, default=1, help="Seed of the generated graph")
+    args = parser.parse_args()
+
+    if args.apps >= args.modules:
+        parser.error("--apps has to be lower than --modules")
+
+    rng = random.Random(args.seed)
+    modules = generate_graph(args, rng)
+    libs = generate_external_libs(args, rng)
+    assign_external_deps(args, rng, modules, libs)
+
+    fixture_dir = os.path.abspath(args.fixture_dir)
+    if os.path.lexists(fixture_dir):
+        shutil.rmtree(fixture_dir)
+    os.makedirs(fixture_dir)
+
+    write_root(args, fixture_dir, modules)
+    write_repo(fixture_dir, libs)
+    for module in modules:
+        write_module(args, fixture_dir, module)
+
+    parameters = {key: value for key, value in vars(args).items() if key != "fixture_dir"}
+    write(
+        os.path.join(fixture_dir, "fixture.json"),
+        json.dumps(parameters, indent=2, sort_keys=True) + "\n")
+
+    kinds = {}
+    for module in modules:
+        kinds[module.kind] = kinds.get(module.kind, 0) + 1
+    edges = sum(len(module.project_deps) for module in modules)
+    print("Generated {} modules ({}) with {} project dependencies and {} external libraries in {}"
+          .format(len(modules),
+                  ", ".join("{} {}".format(count, kind) for kind, count in sorted(kinds.items())),
+                  edges, len(libs), fixture_dir))
+    return 0
+
+
+if __name__ == "__main__":
+    sys.exit(main())
@@ -0,0 +1,169 @@
+#!/usr/bin/env python3
+
+"""
+Runs okbuck against a fixture generated by generate_fixture.py and records its performance.
+
+Each run measures the wall time of the okbuck task, the largest heap usage after a gc okbuck
+reports and the number of files created or modified in the fixture. Results are appended as json
+lines to the output file so that they can be compared from release to release.
+
+Scenarios:
+    cold  okbuck runs after okbuckClean removed everything it generated
+    noop  okbuck runs again right after a previous run, with nothing changed
+
+    ./tooling/perf/run_perf.py build/perf-fixture --runs 3 --output build/perf-results.jsonl
+"""
+
+import argparse
+import datetime
+import json
+import os
+import re
+import statistics
+import subprocess
+import sys
+import time
+
+REPO_DIR = os.path.dirname(os.path.dirname(os.path.dirname(os.path.abspath(__file__))))
+
+SCENARIOS = ("cold", "noop")
+PEAK_HEAP_AFTER_GC = re.compile(r"okbuck: peak heap after gc (\d+)MB")
+BUCK_FILES = re.compile(r"okbuck: (\d+) buck file\(s\) written")
+DEPENDENCY_INSTANCES = re.compile(r"okbuck: (\d+) external dependency instance\(s\)")
+FINALIZE = re.compile(r"okbuck: managers finalized in (\d+)ms")
+IGNORED_DIRS = {".gradle", "build", "buck-out", "repo", "buildSrc"}
+
+
+def gradle(args, fixture_dir, *tasks):
+    # okbuck refuses to run unless invoked the way buckw invokes it, and reports the metrics
+    # recorded below at info level
+    command = [os.path.join(REPO_DIR, "gradlew"), "-p", fixture_dir, "-Dokbuck.wrapper=true",
+               "--info"]
+    if args.offline:
+        command.append("--offline")
+    if not args.daemon:
+        command.append("--no-daemon")
+    command += list(tasks)
+    process = subprocess.run(
+        command, stdout=subprocess.PIPE, stderr=subprocess.STDOUT, universal_newlines=True)
+    if process.returncode != 0:
+        sys.stderr.write(process.stdout)
+        raise SystemExit("{} failed with exit code {}".format(" ".join(command),
+                                                               process.returncode))
+    return process.stdout
+
+
+def snapshot(fixture_dir):
+    """Returns the modification time of every file okbuck could have written, by path."""
+    files = {}
+    for root, dirs, names in os.walk(fixture_dir):
+        dirs[:] = [name for name in dirs if name not in IGNORED_DIRS]
+        for name in names:
+            path = os.path.join(root, name)
+            try:
+                files[path] = os.lstat(path).st_mtime_ns
+            except OSError:
+                pass
+    return files
+
+
+def files_written(before, after):
+    return sum(1 for path, mtime in after.items() if before.get(path) != mtime)
+
+
+def match(pattern, output):
+    found = pattern.search(output)
+    return int(found.group(1)) if found else None
+
+
+def okbuck_version():
+    with open(os.path.join(REPO_DIR, "buildSrc", "build.gradle")) as build_file:
+        found = re.search(r'publishVersion = "([^"]+)"', build_file.read())
+    return found.group(1) if found else None
+
+
+def git_revision():
+    try:
+        return subprocess.check_output(
+            ["git", "rev-parse", "--short", "HEAD"], cwd=REPO_DIR,
+            universal_newlines=True).strip()
+    except (OSError, subprocess.CalledProcessError):
+        return None
+
+
+def run(args, fixture_dir, scenario):
+    if scenario == "cold":
+        gradle(args, fixture_dir, "okbuckClean")
+    else:
+        gradle(args, fixture_dir, "okbuck")
+
+    before = snapshot(fixture_dir)
+    start = time.monotonic()
+    output = gradle(args, fixture_dir, "okbuck")
+    wall_ms = int((time.monotonic() - start) * 1000)
+    after = snapshot(fixture_dir)
+
+    return {
+        "scenario": scenario,
+        "wall_ms": wall_ms,
+        "peak_heap_after_gc_mb": match(PEAK_HEAP_AFTER_GC, output),
+        "buck_files_written": match(BUCK_FILES, output),
+        "dependency_instances": match(DEPENDENCY_INSTANCES, output),
+        "finalize_ms": match(FINALIZE, output),
+        "files_written": files_written(before, after),
+    }
+
+
+def main():
+    parser = argparse.ArgumentParser(description=__doc__.strip().splitlines()[0])
+    parser.add_argument("fixture_dir", help="Fixture generated by generate_fixture.py")
+    parser.add_argument("--runs", type=int, default=3, help="Number of runs per scenario")
+    parser.add_argument("--scenario", action="append", choices=SCENARIOS,
+                        help="Scenario to run, all of them by default")
+    parser.add_argument("--online", dest="offline", action="store_false",
+                        help="Allow gradle to go online, ex. to populate its cache the first time")
+    parser.add_argument("--daemon", action="store_true",
+                        help="Reuse a gradle daemon instead of a fresh jvm per invocation")
+    parser.add_argument("--output", help="File to append the results to as json lines")
+    args = parser.parse_args()
+
+    fixture_dir = os.path.abspath(args.fixture_dir)
+    with open(os.path.join(fixture_dir, "fixture.json")) as fixture_file:
+        fixture = json.load(fixture_file)
+
+    base = {
+        "timestamp": datetime.datetime.utcnow().replace(microsecond=0).isoformat() + "Z",
+        "okbuck_version": okbuck_version(),
+        "git_revision": git_revision(),
+        "fixture": fixture,
+        "daemon": args.daemon,
+    }
+
+    results = []
+    for scenario in args.scenario or SCENARIOS:
+        for index in range(args.runs):
+            result = dict(base, run=index, **run(args, fixture_dir, scenario))
+            print("{scenario} #{run}: {wall_ms}ms, peak heap after gc {peak_heap_after_gc_mb}MB, "
+                  "{buck_files_written} buck files and {files_written} files written"
+                  .format(**result))
+            results.append(result)
+
+    if args.output:
+        with open(args.output, "a") as output:
+            for result in results:
+                output.write(json.dumps(result, sort_keys=True) + "\n")
+
+    for scenario in args.scenario or SCENARIOS:
+        runs = [result for result in results if result["scenario"] == scenario]
+        heaps = [result["peak_heap_after_gc_mb"] for result in runs
+                 if result["peak_heap_after_gc_mb"] is not None]
+        print("{}: median {}ms, max peak heap after gc {}MB, {} files written".format(
+            scenario,
+            int(statistics.median(result["wall_ms"] for result in runs)),
+            max(heaps) if heaps else "?",
+            runs[-1]["files_written"]))
+    return 0
+
+
+if __name__ == "__main__":
+    sys.exit(main())
@@ -5,11 +5,15 @@ import java.io.IOException;
 import java.nio.file.FileVisitOption;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.List;
 import java.util.stream.Stream;
 
 final class FileUtil {
 
+  private static final String DOT_JAR = ".jar";
+
   private FileUtil() {}
 
   static void deleteDirectory(File path) {
@@ -18,4 +22,20 @@ final class FileUtil {
     } catch (IOException ignored) {
     }
   }
+
+  /** Returns the jars in the folder and its sub folders, in the order they are listed. */
+  static List<File> listJars(File folder) {
+    List<File> jars = new ArrayList<>();
+    File[] listFiles = folder.listFiles();
+    if (listFiles != null) {
+      for (File file : listFiles) {
+        if (file.isDirectory()) {
+          jars.addAll(listJars(file));
+        } else if (file.getAbsolutePath().endsWith(DOT_JAR)) {
+          jars.add(file);
+        }
+      }
+    }
+    return jars;
+  }
 }
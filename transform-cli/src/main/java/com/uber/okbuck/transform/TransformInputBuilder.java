@@ -15,8 +15,6 @@ import java.util.Set;
 /** A builder for {@link TransformInput}. */
 class TransformInputBuilder {
 
-  private static final String DOT_JAR = ".jar";
-
   private final LinkedList<JarInput> jarInputs;
   private final LinkedList<DirectoryInput> directoryInputs;
 
@@ -33,9 +31,21 @@ class TransformInputBuilder {
    * @return this instance of the builder.
    */
   TransformInputBuilder addJarInput(File file) {
-    if (file.exists()) {
-      this.jarInputs.add(new FileJarInput(file));
-      System.out.println("Adding dependency jar: " + file.getAbsolutePath());
+    return addJarInput(file, Status.NOTCHANGED);
+  }
+
+  /**
+   * Adds a jar input with the given status for this transform input. Removed jars are added even
+   * though they don't exist anymore, so that the transform can remove their outputs.
+   *
+   * @param file the file of the jar input.
+   * @param status how the jar changed since the last run of the transform.
+   * @return this instance of the builder.
+   */
+  TransformInputBuilder addJarInput(File file, Status status) {
+    if (status == Status.REMOVED || file.exists()) {
+      this.jarInputs.add(new FileJarInput(file, status));
+      System.out.println("Adding dependency jar: " + file.getAbsolutePath() + " " + status);
     } else {
       System.out.println("Specified jar input doesn't exist: " + file.getAbsolutePath());
     }
@@ -50,18 +60,8 @@ class TransformInputBuilder {
    * @return this instance of the builder.
    */
   TransformInputBuilder addJarInputFolder(File folder) {
-    File[] listFiles = folder.listFiles();
-    if (listFiles != null) {
-      for (File file : listFiles) {
-        if (file.isDirectory()) {
-          addJarInputFolder(file);
-        } else {
-          if (!file.getAbsolutePath().endsWith(DOT_JAR)) {
-            continue;
-          }
-          addJarInput(file);
-        }
-      }
+    for (File file : FileUtil.listJars(folder)) {
+      addJarInput(file);
     }
     return this;
   }
@@ -127,9 +127,11 @@ class TransformInputBuilder {
   private static class FileJarInput implements JarInput {
 
     private final File file;
+    private final Status status;
 
-    FileJarInput(File file) {
+    FileJarInput(File file, Status status) {
       this.file = file;
+      this.status = status;
     }
 
     @Override
@@ -139,7 +141,7 @@ class TransformInputBuilder {
 
     @Override
     public Status getStatus() {
-      throw new UnsupportedOperationException();
+      return status;
     }
 
     @Override
@@ -17,6 +17,7 @@ class TransformInvocationBuilder {
   private final LinkedList<TransformInput> inputs;
   private final LinkedList<TransformInput> referencedInputs;
   private TransformOutputProvider outputProvider;
+  private boolean incremental;
 
   /** Constructor. */
   TransformInvocationBuilder() {
@@ -57,6 +58,18 @@ class TransformInvocationBuilder {
     return this;
   }
 
+  /**
+   * Sets whether the invocation is incremental, in which case the jar inputs carry how they changed
+   * since the last invocation and only the outputs of changed jars were removed.
+   *
+   * @param incremental whether the invocation is incremental.
+   * @return this instance of the builder
+   */
+  TransformInvocationBuilder setIncremental(boolean incremental) {
+    this.incremental = incremental;
+    return this;
+  }
+
   /**
    * Builds the {@link TransformInvocation}.
    *
@@ -66,7 +79,7 @@ class TransformInvocationBuilder {
     if (outputProvider == null) {
       throw new IllegalArgumentException("Output provider needs to be specified.");
     }
-    return new CustomTransformInvocation(inputs, referencedInputs, outputProvider);
+    return new CustomTransformInvocation(inputs, referencedInputs, outputProvider, incremental);
   }
 
   /** The {@link TransformInvocation} built by the builder. */
@@ -78,13 +91,17 @@ class TransformInvocationBuilder {
 
     private final TransformOutputProvider transformOutputProvider;
 
+    private final boolean incremental;
+
     CustomTransformInvocation(
         Collection<TransformInput> inputs,
         Collection<TransformInput> referencedInputs,
-        TransformOutputProvider transformOutputProvider) {
+        TransformOutputProvider transformOutputProvider,
+        boolean incremental) {
       this.inputs = inputs;
       this.referencedInputs = referencedInputs;
       this.transformOutputProvider = transformOutputProvider;
+      this.incremental = incremental;
     }
 
     @Override
@@ -104,7 +121,7 @@ class TransformInvocationBuilder {
 
     @Override
     public boolean isIncremental() {
-      return false;
+      return incremental;
     }
 
     @Override
@@ -0,0 +1,277 @@
+package com.uber.okbuck.transform;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A transform request read by the {@link TransformWorker}, one json object per line. Only flat
+ * objects with string, null and string array values are supported, which is all a request needs.
+ * This needs to be written in vanilla java, since no json library is available here.
+ *
+ * <p>Example: {"id":"1","inJarsDir":"/in","outJarsDir":"/out","configFile":null,
+ * "androidBootClasspath":["/android.jar"],"transformClasspath":[],"transformClass":"a.Transform"}
+ */
+final class TransformRequest {
+
+  private String id = "";
+  private String inJarsDir;
+  private String outJarsDir;
+  private String configFile;
+  private String[] androidBootClasspath = new String[0];
+  private List<String> transformClasspath = Collections.emptyList();
+  private String transformClass;
+
+  private TransformRequest() {}
+
+  /** Returns the id of the request, which the response is tagged with. */
+  String getId() {
+    return id;
+  }
+
+  String getInJarsDir() {
+    return inJarsDir;
+  }
+
+  String getOutJarsDir() {
+    return outJarsDir;
+  }
+
+  /** Returns the config file of the transform, or null if it has none. */
+  String getConfigFile() {
+    return configFile;
+  }
+
+  String[] getAndroidBootClasspath() {
+    return androidBootClasspath;
+  }
+
+  /** Returns the jars to load the transform from in addition to the worker classpath. */
+  List<String> getTransformClasspath() {
+    return transformClasspath;
+  }
+
+  String getTransformClass() {
+    return transformClass;
+  }
+
+  /**
+   * Parses a request.
+   *
+   * @param json the json object of the request.
+   * @return the request.
+   */
+  static TransformRequest fromJson(String json) {
+    TransformRequest request = new TransformRequest();
+    Parser parser = new Parser(json);
+    parser.expect('{');
+    if (!parser.consume('}')) {
+      do {
+        String name = parser.readString();
+        parser.expect(':');
+        switch (name) {
+          case "id":
+            request.id = parser.readNullableString();
+            break;
+          case "inJarsDir":
+            request.inJarsDir = parser.readNullableString();
+            break;
+          case "outJarsDir":
+            request.outJarsDir = parser.readNullableString();
+            break;
+          case "configFile":
+            request.configFile = parser.readNullableString();
+            break;
+          case "androidBootClasspath":
+            request.androidBootClasspath = parser.readStringArray().toArray(new String[0]);
+            break;
+          case "transformClasspath":
+            request.transformClasspath = parser.readStringArray();
+            break;
+          case "transformClass":
+            request.transformClass = parser.readNullableString();
+            break;
+          default:
+            throw new IllegalArgumentException("Unknown request field: " + name);
+        }
+      } while (parser.consume(','));
+      parser.expect('}');
+    }
+    parser.expectEnd();
+
+    if (request.id == null) {
+      request.id = "";
+    }
+    if (request.inJarsDir == null || request.outJarsDir == null) {
+      throw new IllegalArgumentException("Both inJarsDir and outJarsDir need to be specified.");
+    }
+    if (request.transformClass == null) {
+      throw new IllegalArgumentException("No transform class defined.");
+    }
+    return request;
+  }
+
+  /**
+   * Returns the json response to a request.
+   *
+   * @param id the id of the request.
+   * @param error the error the request failed with, or null if it succeeded.
+   * @return the json object of the response, on a single line.
+   */
+  static String toResponse(String id, String error) {
+    StringBuilder sb = new StringBuilder("{\"id\":");
+    appendString(sb, id);
+    sb.append(",\"exitCode\":").append(error == null ? 0 : 1);
+    if (error != null) {
+      sb.append(",\"error\":");
+      appendString(sb, error);
+    }
+    return sb.append('}').toString();
+  }
+
+  private static void appendString(StringBuilder sb, String value) {
+    sb.append('"');
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      switch (c) {
+        case '"':
+          sb.append("\\\"");
+          break;
+        case '\\':
+          sb.append("\\\\");
+          break;
+        case '\n':
+          sb.append("\\n");
+          break;
+        case '\r':
+          sb.append("\\r");
+          break;
+        case '\t':
+          sb.append("\\t");
+          break;
+        default:
+          if (c < 0x20) {
+            sb.append(String.format("\\u%04x", (int) c));
+          } else {
+            sb.append(c);
+          }
+      }
+    }
+    sb.append('"');
+  }
+
+  /** A parser for the subset of json requests are made of. */
+  private static final class Parser {
+
+    private final String json;
+    private int pos;
+
+    Parser(String json) {
+      this.json = json;
+    }
+
+    boolean consume(char c) {
+      skipWhitespace();
+      if (pos < json.length() && json.charAt(pos) == c) {
+        pos++;
+        return true;
+      }
+      return false;
+    }
+
+    void expect(char c) {
+      if (!consume(c)) {
+        throw error("Expected '" + c + "'");
+      }
+    }
+
+    void expectEnd() {
+      skipWhitespace();
+      if (pos != json.length()) {
+        throw error("Unexpected trailing content");
+      }
+    }
+
+    String readNullableString() {
+      skipWhitespace();
+      if (json.startsWith("null", pos)) {
+        pos += 4;
+        return null;
+      }
+      return readString();
+    }
+
+    List<String> readStringArray() {
+      List<String> values = new ArrayList<>();
+      expect('[');
+      if (consume(']')) {
+        return values;
+      }
+      do {
+        values.add(readString());
+      } while (consume(','));
+      expect(']');
+      return values;
+    }
+
+    String readString() {
+      expect('"');
+      StringBuilder sb = new StringBuilder();
+      while (pos < json.length()) {
+        char c = json.charAt(pos++);
+        if (c == '"') {
+          return sb.toString();
+        }
+        if (c != '\\') {
+          sb.append(c);
+          continue;
+        }
+        if (pos >= json.length()) {
+          break;
+        }
+        char escaped = json.charAt(pos++);
+        switch (escaped) {
+          case 'b':
+            sb.append('\b');
+            break;
+          case 'f':
+            sb.append('\f');
+            break;
+          case 'n':
+            sb.append('\n');
+            break;
+          case 'r':
+            sb.append('\r');
+            break;
+          case 't':
+            sb.append('\t');
+            break;
+          case 'u':
+            if (pos + 4 > json.length()) {
+              throw error("Invalid unicode escape");
+            }
+            try {
+              sb.append((char) Integer.parseInt(json.substring(pos, pos + 4), 16));
+            } catch (NumberFormatException e) {
+              throw error("Invalid unicode escape");
+            }
+            pos += 4;
+            break;
+          default:
+            sb.append(escaped);
+        }
+      }
+      throw error("Unterminated string");
+    }
+
+    private void skipWhitespace() {
+      while (pos < json.length() && Character.isWhitespace(json.charAt(pos))) {
+        pos++;
+      }
+    }
+
+    private IllegalArgumentException error(String message) {
+      return new IllegalArgumentException(message + " at " + pos + " in request: " + json);
+    }
+  }
+}
@@ -1,14 +1,22 @@
 package com.uber.okbuck.transform;
 
+import com.android.build.api.transform.Format;
+import com.android.build.api.transform.Status;
 import com.android.build.api.transform.Transform;
 import com.android.build.api.transform.TransformInput;
 import com.android.build.api.transform.TransformInvocation;
 import com.android.build.api.transform.TransformOutputProvider;
 import java.io.File;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.security.CodeSource;
+import java.util.Map;
 
 /** Transform runner that instantiates the transform class and starts the transform invocation. */
 class TransformRunner {
 
+  private static final String STATE_FILE = ".okbuck-transform-state";
+
   private final File inputJarsDir;
   private final File outputJarsDir;
   private final File configFile;
@@ -80,12 +88,36 @@ class TransformRunner {
   private void runTransform(Transform transform, TransformOutputProvider outputProvider)
       throws Exception {
 
-    // Cleaning output directory.
-    FileUtil.deleteDirectory(outputJarsDir);
-    outputJarsDir.mkdirs();
+    // Finding out which jars changed since the last run.
+    File stateFile = new File(outputJarsDir, STATE_FILE);
+    TransformState previousState = TransformState.read(stateFile);
+    TransformState state =
+        TransformState.create(getStateKey(), FileUtil.listJars(inputJarsDir), previousState);
+    Map<String, Status> changes = state.getChanges(previousState);
+    boolean incremental =
+        transform.isIncremental() && canRunIncrementally(previousState, state, outputProvider);
+
+    TransformInputBuilder inputBuilder = new TransformInputBuilder();
+    if (incremental) {
+      // Cleaning the outputs of the jars that changed only.
+      Files.delete(stateFile.toPath());
+      changes.forEach(
+          (path, status) -> {
+            if (status != Status.NOTCHANGED) {
+              getOutput(path, outputProvider).delete();
+            }
+            inputBuilder.addJarInput(new File(path), status);
+          });
+    } else {
+      // Cleaning output directory.
+      FileUtil.deleteDirectory(outputJarsDir);
+      outputJarsDir.mkdirs();
+      state.getJars().forEach(path -> inputBuilder.addJarInput(new File(path)));
+    }
+    System.out.println("Incremental transform: " + incremental);
 
     // Preparing Transform invocation.
-    TransformInput input = new TransformInputBuilder().addJarInputFolder(inputJarsDir).build();
+    TransformInput input = inputBuilder.build();
     TransformInput referencedInput =
         new TransformInputBuilder().addJarInput(androidClassPath).build();
 
@@ -94,9 +126,62 @@ class TransformRunner {
             .addInput(input)
             .addReferencedInput(referencedInput)
             .setOutputProvider(outputProvider)
+            .setIncremental(incremental)
             .build();
 
     // Running the transform invocation.
     transform.transform(invocation);
+
+    // Recording the jars for the next run, once the outputs are complete.
+    outputJarsDir.mkdirs();
+    state.write(stateFile);
+  }
+
+  /**
+   * The outputs of the last run can only be updated if it ran the same transform with the same
+   * configuration, and all the outputs of the jars that didn't change are still there.
+   */
+  private static boolean canRunIncrementally(
+      TransformState previousState,
+      TransformState state,
+      TransformOutputProvider outputProvider) {
+    if (previousState.getJars().isEmpty() || !previousState.getKey().equals(state.getKey())) {
+      return false;
+    }
+    for (String path : previousState.getJars()) {
+      if (!getOutput(path, outputProvider).exists()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static File getOutput(String jarPath, TransformOutputProvider outputProvider) {
+    return outputProvider.getContentLocation(jarPath, null, null, Format.JAR);
+  }
+
+  /**
+   * Returns what the outputs depend on besides the input jars: the transform classes, its config
+   * file and the android classpath.
+   */
+  private String getStateKey() throws URISyntaxException {
+    StringBuilder key = new StringBuilder(transformClass.getName());
+    CodeSource codeSource = transformClass.getProtectionDomain().getCodeSource();
+    if (codeSource != null && "file".equals(codeSource.getLocation().getProtocol())) {
+      File transformJar = new File(codeSource.getLocation().toURI());
+      key.append(" ")
+          .append(transformJar.getAbsolutePath())
+          .append(":")
+          .append(transformJar.length())
+          .append(":")
+          .append(transformJar.lastModified());
+    }
+    if (configFile != null) {
+      key.append(" ").append(TransformState.sha256(configFile));
+    }
+    for (String path : androidClassPath) {
+      key.append(" ").append(path);
+    }
+    return key.toString();
   }
 }
@@ -0,0 +1,194 @@
+package com.uber.okbuck.transform;
+
+import com.android.build.api.transform.Status;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The input jars a transform ran on along with the hash of their contents, persisted with the
+ * outputs of the transform so that the next run can tell which jars were added, changed or removed
+ * since. Jars are only hashed again when their size or modification time changed.
+ *
+ * <p>The state file is a line with the key of the transform followed by a line per jar:
+ * path[tab]size[tab]modified[tab]sha256
+ */
+final class TransformState {
+
+  private static final String SEPARATOR = "\t";
+
+  private final String key;
+  private final Map<String, Entry> entries;
+
+  private TransformState(String key, Map<String, Entry> entries) {
+    this.key = key;
+    this.entries = entries;
+  }
+
+  /** Returns the key of the transform this state was recorded for. */
+  String getKey() {
+    return key;
+  }
+
+  /** Returns the paths of the jars this state was recorded for. */
+  Collection<String> getJars() {
+    return entries.keySet();
+  }
+
+  /**
+   * Records the state of the given jars.
+   *
+   * @param key the key of the transform, any change to it makes the whole state invalid.
+   * @param jars the input jars of the transform.
+   * @param previous the previous state, whose hashes are reused for jars that didn't change.
+   * @return the state of the jars.
+   */
+  static TransformState create(String key, Collection<File> jars, TransformState previous) {
+    Map<String, Entry> entries = new ConcurrentHashMap<>();
+    jars.parallelStream()
+        .forEach(
+            jar -> {
+              String path = jar.getAbsolutePath();
+              long size = jar.length();
+              long modified = jar.lastModified();
+              Entry entry = previous.entries.get(path);
+              if (entry == null || entry.size != size || entry.modified != modified) {
+                entry = new Entry(size, modified, sha256(jar));
+              }
+              entries.put(path, entry);
+            });
+    return new TransformState(key, new TreeMap<>(entries));
+  }
+
+  /**
+   * Returns how each jar changed since the previous state, including the jars that were removed.
+   *
+   * @param previous the previous state.
+   * @return the status of each jar path.
+   */
+  Map<String, Status> getChanges(TransformState previous) {
+    Map<String, Status> changes = new LinkedHashMap<>();
+    entries.forEach(
+        (path, entry) -> {
+          Entry previousEntry = previous.entries.get(path);
+          if (previousEntry == null) {
+            changes.put(path, Status.ADDED);
+          } else if (!previousEntry.hash.equals(entry.hash)) {
+            changes.put(path, Status.CHANGED);
+          } else {
+            changes.put(path, Status.NOTCHANGED);
+          }
+        });
+    previous.entries.keySet().forEach(path -> changes.putIfAbsent(path, Status.REMOVED));
+    return changes;
+  }
+
+  /**
+   * Reads a state file.
+   *
+   * @param file the state file.
+   * @return the state, which is empty if the file doesn't exist or can't be read.
+   */
+  static TransformState read(File file) {
+    if (!file.isFile()) {
+      return empty();
+    }
+    try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+      String key = reader.readLine();
+      if (key == null) {
+        return empty();
+      }
+      Map<String, Entry> entries = new TreeMap<>();
+      String line;
+      while ((line = reader.readLine()) != null) {
+        String[] parts = line.split(SEPARATOR);
+        if (parts.length != 4) {
+          return empty();
+        }
+        entries.put(
+            parts[0], new Entry(Long.parseLong(parts[1]), Long.parseLong(parts[2]), parts[3]));
+      }
+      return new TransformState(key, entries);
+    } catch (IOException | NumberFormatException e) {
+      System.out.println("Ignoring unreadable transform state: " + file.getAbsolutePath());
+      return empty();
+    }
+  }
+
+  /**
+   * Writes this state.
+   *
+   * @param file the state file.
+   */
+  void write(File file) throws IOException {
+    try (BufferedWriter writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+      writer.write(key);
+      writer.newLine();
+      for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+        writer.write(
+            entry.getKey()
+                + SEPARATOR
+                + entry.getValue().size
+                + SEPARATOR
+                + entry.getValue().modified
+                + SEPARATOR
+                + entry.getValue().hash);
+        writer.newLine();
+      }
+    }
+  }
+
+  /** Returns a state without any jar, which any jar is added to. */
+  static TransformState empty() {
+    return new TransformState("", new TreeMap<>());
+  }
+
+  /**
+   * Calculates the sha256 of a file.
+   *
+   * @param file the file to hash.
+   * @return the hex encoded sha256.
+   */
+  static String sha256(File file) {
+    try (InputStream in = Files.newInputStream(file.toPath())) {
+      MessageDigest digest = MessageDigest.getInstance("SHA-256");
+      byte[] buffer = new byte[64 * 1024];
+      int read;
+      while ((read = in.read(buffer)) != -1) {
+        digest.update(buffer, 0, read);
+      }
+      StringBuilder sb = new StringBuilder();
+      for (byte b : digest.digest()) {
+        sb.append(String.format("%02x", b));
+      }
+      return sb.toString();
+    } catch (IOException | NoSuchAlgorithmException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  /** The size, modification time and hash of a jar. */
+  private static final class Entry {
+
+    private final long size;
+    private final long modified;
+    private final String hash;
+
+    Entry(long size, long modified, String hash) {
+      this.size = size;
+      this.modified = modified;
+      this.hash = hash;
+    }
+  }
+}
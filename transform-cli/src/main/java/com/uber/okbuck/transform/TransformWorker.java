@@ -0,0 +1,202 @@
+package com.uber.okbuck.transform;
+
+import com.android.build.api.transform.Transform;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.io.RandomAccessFile;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Long lived entry point for the cli application, which runs the transforms of many requests in
+ * the same jvm instead of starting one per transform. Requests are read from stdin as line
+ * delimited json, see {@link TransformRequest}, and a json response is written to stdout for each
+ * of them. Anything else the transforms print goes to stderr.
+ *
+ * <p>Transform classes are loaded in a class loader per transform classpath, which is kept across
+ * requests so that the classes of a transform are only loaded and jitted once.
+ */
+public final class TransformWorker {
+
+  private static final String PROPERTY_LOCK_FILE = "okbuck.workerLockFile";
+  private static final String PROPERTY_IDLE_TIMEOUT_MINUTES = "okbuck.workerIdleTimeoutMinutes";
+  private static final long DEFAULT_IDLE_TIMEOUT_MINUTES = 60;
+
+  private final TransformRunnerFactory runnerFactory;
+  private final Map<List<String>, ClassLoader> classLoaders = new HashMap<>();
+  private volatile long lastRequestNanos = System.nanoTime();
+
+  TransformWorker(TransformRunnerFactory runnerFactory) {
+    this.runnerFactory = runnerFactory;
+  }
+
+  /**
+   * Main.
+   *
+   * @param args arguments.
+   */
+  public static void main(String[] args) throws IOException {
+    if (args.length != 0) {
+      throw new IllegalArgumentException(
+          "No argument is expected. Transform requests are read from stdin.\n"
+              + PROPERTY_LOCK_FILE
+              + " : file locked by clients while they talk to the worker [optional]\n"
+              + PROPERTY_IDLE_TIMEOUT_MINUTES
+              + " : minutes without requests after which the worker exits [optional]\n");
+    }
+
+    // Responses are the only thing written to stdout.
+    PrintStream responses = System.out;
+    System.setOut(System.err);
+
+    TransformWorker worker =
+        new TransformWorker(
+            (request, classLoader) -> {
+              @SuppressWarnings("unchecked")
+              Class<Transform> transformClass =
+                  (Class<Transform>)
+                      Class.forName(request.getTransformClass(), true, classLoader);
+              return new TransformRunner(
+                  request.getConfigFile(),
+                  request.getInJarsDir(),
+                  request.getOutJarsDir(),
+                  request.getAndroidBootClasspath(),
+                  transformClass);
+            });
+
+    String lockFile = System.getProperty(PROPERTY_LOCK_FILE);
+    if (lockFile != null) {
+      worker.exitWhenIdle(
+          new File(lockFile),
+          Long.getLong(PROPERTY_IDLE_TIMEOUT_MINUTES, DEFAULT_IDLE_TIMEOUT_MINUTES));
+    }
+
+    worker.run(
+        new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8)), responses);
+  }
+
+  /**
+   * Runs the requests until the end of the input.
+   *
+   * @param requests the reader to read requests from, one per line.
+   * @param responses the stream to write responses to, one per line.
+   */
+  void run(BufferedReader requests, PrintStream responses) throws IOException {
+    String line;
+    while ((line = requests.readLine()) != null) {
+      if (line.trim().isEmpty()) {
+        continue;
+      }
+      responses.println(handle(line));
+      responses.flush();
+      lastRequestNanos = System.nanoTime();
+    }
+  }
+
+  /**
+   * Runs a single request.
+   *
+   * @param line the json request.
+   * @return the json response.
+   */
+  String handle(String line) {
+    String id = "";
+    try {
+      TransformRequest request = TransformRequest.fromJson(line);
+      id = request.getId();
+      ClassLoader classLoader = getClassLoader(request.getTransformClasspath());
+
+      Thread thread = Thread.currentThread();
+      ClassLoader previous = thread.getContextClassLoader();
+      thread.setContextClassLoader(classLoader);
+      try {
+        runnerFactory.create(request, classLoader).runTransform();
+      } finally {
+        thread.setContextClassLoader(previous);
+      }
+      return TransformRequest.toResponse(id, null);
+    } catch (Exception | LinkageError e) {
+      e.printStackTrace();
+      return TransformRequest.toResponse(id, e.toString());
+    }
+  }
+
+  /** Returns the class loader for the given transform classpath, creating it on first use. */
+  ClassLoader getClassLoader(List<String> transformClasspath) throws IOException {
+    ClassLoader parent = TransformWorker.class.getClassLoader();
+    if (transformClasspath.isEmpty()) {
+      return parent;
+    }
+    ClassLoader classLoader = classLoaders.get(transformClasspath);
+    if (classLoader == null) {
+      URL[] urls = new URL[transformClasspath.size()];
+      for (int i = 0; i < urls.length; i++) {
+        File file = new File(transformClasspath.get(i));
+        if (!file.exists()) {
+          throw new FileNotFoundException(file.getAbsolutePath());
+        }
+        urls[i] = file.toURI().toURL();
+      }
+      classLoader = new URLClassLoader(urls, parent);
+      classLoaders.put(transformClasspath, classLoader);
+    }
+    return classLoader;
+  }
+
+  /**
+   * Exits once no request was made for the given time. Clients hold the lock file while they talk
+   * to the worker, so the worker only exits when it holds it and no client can be waiting on it.
+   */
+  private void exitWhenIdle(File lockFile, long idleTimeoutMinutes) {
+    long idleTimeoutNanos = TimeUnit.MINUTES.toNanos(idleTimeoutMinutes);
+    Thread watchdog =
+        new Thread(
+            () -> {
+              while (true) {
+                try {
+                  Thread.sleep(TimeUnit.SECONDS.toMillis(30));
+                } catch (InterruptedException e) {
+                  return;
+                }
+                if (System.nanoTime() - lastRequestNanos < idleTimeoutNanos) {
+                  continue;
+                }
+                try (RandomAccessFile file = new RandomAccessFile(lockFile, "rw");
+                    FileLock lock = file.getChannel().tryLock()) {
+                  if (lock != null) {
+                    // The lock is released by the os once the worker is gone.
+                    Runtime.getRuntime().halt(0);
+                  }
+                } catch (IOException e) {
+                  e.printStackTrace();
+                }
+              }
+            },
+            "okbuck-transform-worker-watchdog");
+    watchdog.setDaemon(true);
+    watchdog.start();
+  }
+
+  /** Creates the transform runner of a request, used mainly for testing. */
+  interface TransformRunnerFactory {
+
+    /**
+     * Returns the transform runner for the request.
+     *
+     * @param request the request to run.
+     * @param classLoader the class loader to load the transform class from.
+     * @return the transform runner.
+     */
+    TransformRunner create(TransformRequest request, ClassLoader classLoader) throws Exception;
+  }
+}
@@ -4,6 +4,7 @@ import static org.assertj.core.api.Assertions.assertThat;
 
 import com.android.build.api.transform.DirectoryInput;
 import com.android.build.api.transform.JarInput;
+import com.android.build.api.transform.Status;
 import com.android.build.api.transform.TransformInput;
 import java.io.File;
 import java.io.IOException;
@@ -42,6 +43,17 @@ public class TransformInputBuilderTest {
     assertThat(jarInputs[1].getFile().getAbsolutePath()).isEqualTo(file2.getAbsolutePath());
   }
 
+  @Test
+  public void addJarInput_whenAddRemovedFile_builtShouldReturnFileWithStatus() throws Exception {
+    File file = new File(getTmpFile("tmp").getAbsolutePath() + ".removed");
+
+    TransformInput input = builder.addJarInput(file, Status.REMOVED).build();
+    assertThat(input.getJarInputs()).hasSize(1);
+    JarInput jarInput = input.getJarInputs().toArray(new JarInput[1])[0];
+    assertThat(jarInput.getFile()).isEqualTo(file);
+    assertThat(jarInput.getStatus()).isEqualTo(Status.REMOVED);
+  }
+
   @Test
   public void addDirectoryInput_builtShouldReturnCorrectFile() throws Exception {
     File file = getTmpFile("tmp");
@@ -41,6 +41,12 @@ public class TransformInvocationBuilderTest {
     assertThat(invocation.getOutputProvider()).isEqualTo(outputProvider);
   }
 
+  @Test
+  public void setIncremental_shouldBuildIncrementalInvocation() throws Exception {
+    assertThat(builder.setOutputProvider(outputProvider).build().isIncremental()).isFalse();
+    assertThat(builder.setIncremental(true).build().isIncremental()).isTrue();
+  }
+
   @Test(expected = IllegalArgumentException.class)
   public void whenOutputProviderNotSet_shouldThrowException() throws Exception {
     builder.build();
@@ -0,0 +1,167 @@
+package com.uber.okbuck.transform;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+
+import com.android.build.api.transform.Format;
+import com.android.build.api.transform.JarInput;
+import com.android.build.api.transform.QualifiedContent;
+import com.android.build.api.transform.Status;
+import com.android.build.api.transform.Transform;
+import com.android.build.api.transform.TransformInput;
+import com.android.build.api.transform.TransformInvocation;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.assertj.core.util.Files;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TransformRunnerTest {
+
+  private File inputFolder;
+  private File outputFolder;
+  private File unchangedJar;
+  private File changedJar;
+
+  @Before
+  public void setup() throws Exception {
+    File baseFolder = Files.newTemporaryFolder();
+    inputFolder = new File(baseFolder, "in");
+    outputFolder = new File(baseFolder, "out");
+    outputFolder.mkdirs();
+    unchangedJar = write(new File(inputFolder, "libs/unchanged.jar"), "unchanged");
+    changedJar = write(new File(inputFolder, "changed.jar"), "before");
+    CopyTransform.invocations.clear();
+  }
+
+  @Test
+  public void runTransform_whenOneJarChanged_shouldOnlyRedoThatJar() throws Exception {
+    runTransform();
+    Invocation first = CopyTransform.invocations.get(0);
+    assertThat(first.incremental).isFalse();
+    assertThat(first.statuses)
+        .containsOnly(
+            entry(unchangedJar.getAbsolutePath(), Status.NOTCHANGED),
+            entry(changedJar.getAbsolutePath(), Status.NOTCHANGED));
+
+    write(changedJar, "after");
+    runTransform();
+    Invocation second = CopyTransform.invocations.get(1);
+    assertThat(second.incremental).isTrue();
+    assertThat(second.statuses)
+        .containsOnly(
+            entry(unchangedJar.getAbsolutePath(), Status.NOTCHANGED),
+            entry(changedJar.getAbsolutePath(), Status.CHANGED));
+    // Only the output of the changed jar was deleted before the transform ran.
+    assertThat(second.existingOutputs)
+        .containsOnly(
+            entry(unchangedJar.getAbsolutePath(), true),
+            entry(changedJar.getAbsolutePath(), false));
+    assertThat(read(output(changedJar))).isEqualTo("after");
+  }
+
+  @Test
+  public void runTransform_whenAnOutputIsMissing_shouldRedoAllJars() throws Exception {
+    runTransform();
+    assertThat(output(unchangedJar).delete()).isTrue();
+
+    runTransform();
+    Invocation second = CopyTransform.invocations.get(1);
+    assertThat(second.incremental).isFalse();
+    assertThat(second.statuses.values()).containsOnly(Status.NOTCHANGED);
+    assertThat(output(unchangedJar)).exists();
+  }
+
+  private void runTransform() throws Exception {
+    @SuppressWarnings("unchecked")
+    Class<Transform> transformClass = (Class<Transform>) (Class<?>) CopyTransform.class;
+    new TransformRunner(
+            null,
+            inputFolder.getAbsolutePath(),
+            outputFolder.getAbsolutePath(),
+            new String[0],
+            transformClass)
+        .runTransform();
+  }
+
+  private File output(File jar) {
+    return new JarsTransformOutputProvider(outputFolder, inputFolder)
+        .getContentLocation(jar.getAbsolutePath(), null, null, Format.JAR);
+  }
+
+  private static File write(File file, String contents) throws IOException {
+    file.getParentFile().mkdirs();
+    java.nio.file.Files.write(file.toPath(), contents.getBytes(StandardCharsets.UTF_8));
+    return file;
+  }
+
+  private static String read(File file) throws IOException {
+    return new String(java.nio.file.Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+  }
+
+  /** What a transform invocation was given. */
+  private static final class Invocation {
+    private final boolean incremental;
+    private final Map<String, Status> statuses = new HashMap<>();
+    private final Map<String, Boolean> existingOutputs = new HashMap<>();
+
+    Invocation(boolean incremental) {
+      this.incremental = incremental;
+    }
+  }
+
+  /** An incremental transform copying the jars that changed to their output. */
+  public static class CopyTransform extends Transform {
+
+    static final List<Invocation> invocations = new ArrayList<>();
+
+    @Override
+    public String getName() {
+      return "copy";
+    }
+
+    @Override
+    public Set<QualifiedContent.ContentType> getInputTypes() {
+      return Collections.emptySet();
+    }
+
+    @Override
+    public Set<? super QualifiedContent.Scope> getScopes() {
+      return Collections.emptySet();
+    }
+
+    @Override
+    public boolean isIncremental() {
+      return true;
+    }
+
+    @Override
+    public void transform(TransformInvocation transformInvocation) throws IOException {
+      Invocation invocation = new Invocation(transformInvocation.isIncremental());
+      invocations.add(invocation);
+      for (TransformInput input : transformInvocation.getInputs()) {
+        for (JarInput jarInput : input.getJarInputs()) {
+          File output =
+              transformInvocation
+                  .getOutputProvider()
+                  .getContentLocation(jarInput.getName(), null, null, Format.JAR);
+          invocation.statuses.put(jarInput.getName(), jarInput.getStatus());
+          invocation.existingOutputs.put(jarInput.getName(), output.exists());
+          if (!invocation.incremental || jarInput.getStatus() != Status.NOTCHANGED) {
+            output.getParentFile().mkdirs();
+            java.nio.file.Files.copy(
+                jarInput.getFile().toPath(), output.toPath(), StandardCopyOption.REPLACE_EXISTING);
+          }
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,86 @@
+package com.uber.okbuck.transform;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+
+import com.android.build.api.transform.Status;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import org.assertj.core.util.Files;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TransformStateTest {
+
+  private File folder;
+  private File unchanged;
+  private File changed;
+  private File removed;
+
+  @Before
+  public void setup() throws Exception {
+    folder = Files.newTemporaryFolder();
+    unchanged = write("unchanged.jar", "unchanged");
+    changed = write("changed.jar", "before");
+    removed = write("removed.jar", "removed");
+  }
+
+  @Test
+  public void getChanges_shouldReturnStatusOfEachJar() throws Exception {
+    TransformState previous =
+        TransformState.create(
+            "key", Arrays.asList(unchanged, changed, removed), TransformState.empty());
+
+    write("changed.jar", "after");
+    File added = write("added.jar", "added");
+    TransformState state =
+        TransformState.create("key", Arrays.asList(unchanged, changed, added), previous);
+
+    assertThat(state.getChanges(previous))
+        .containsOnly(
+            entry(unchanged.getAbsolutePath(), Status.NOTCHANGED),
+            entry(changed.getAbsolutePath(), Status.CHANGED),
+            entry(added.getAbsolutePath(), Status.ADDED),
+            entry(removed.getAbsolutePath(), Status.REMOVED));
+  }
+
+  @Test
+  public void getChanges_whenOnlyModifiedTimeChanged_shouldNotChange() throws Exception {
+    TransformState previous =
+        TransformState.create("key", Arrays.asList(unchanged), TransformState.empty());
+
+    unchanged.setLastModified(unchanged.lastModified() - 10000);
+    TransformState state = TransformState.create("key", Arrays.asList(unchanged), previous);
+
+    assertThat(state.getChanges(previous))
+        .containsOnly(entry(unchanged.getAbsolutePath(), Status.NOTCHANGED));
+  }
+
+  @Test
+  public void write_shouldBeReadBack() throws Exception {
+    File stateFile = new File(folder, "state");
+    TransformState state =
+        TransformState.create("a key", Arrays.asList(unchanged, changed), TransformState.empty());
+    state.write(stateFile);
+
+    TransformState read = TransformState.read(stateFile);
+    assertThat(read.getKey()).isEqualTo("a key");
+    assertThat(read.getJars())
+        .containsExactly(changed.getAbsolutePath(), unchanged.getAbsolutePath());
+    assertThat(state.getChanges(read).values()).containsOnly(Status.NOTCHANGED);
+  }
+
+  @Test
+  public void read_whenStateIsMissingOrInvalid_shouldBeEmpty() throws Exception {
+    assertThat(TransformState.read(new File(folder, "missing")).getJars()).isEmpty();
+    assertThat(TransformState.read(write("invalid", "key\nnot a jar line")).getJars()).isEmpty();
+  }
+
+  private File write(String name, String contents) throws IOException {
+    File file = new File(folder, name);
+    java.nio.file.Files.write(file.toPath(), contents.getBytes(StandardCharsets.UTF_8));
+    return file;
+  }
+}
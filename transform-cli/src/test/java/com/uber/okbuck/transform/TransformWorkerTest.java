@@ -0,0 +1,131 @@
+package com.uber.okbuck.transform;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TransformWorkerTest {
+
+  private static final String REQUEST =
+      "{\"id\":\"%s\",\"inJarsDir\":\"/in\",\"outJarsDir\":\"/out\",\"configFile\":null,"
+          + "\"androidBootClasspath\":[\"/a.jar\",\"/b.jar\"],\"transformClasspath\":[],"
+          + "\"transformClass\":\"com.example.Transform\"}";
+
+  private TransformRunner runner;
+  private List<TransformRequest> requests;
+  private TransformWorker worker;
+
+  @Before
+  public void setup() throws Exception {
+    runner = mock(TransformRunner.class);
+    requests = new ArrayList<>();
+    worker =
+        new TransformWorker(
+            (request, classLoader) -> {
+              requests.add(request);
+              return runner;
+            });
+  }
+
+  @Test
+  public void fromJson_shouldReadAllFields() throws Exception {
+    TransformRequest request =
+        TransformRequest.fromJson(
+            "{ \"id\": \"7\", \"inJarsDir\": \"/in dir\", \"outJarsDir\": \"/out\\\\dir\","
+                + " \"configFile\": \"/config\\u0020file\", \"androidBootClasspath\": [],"
+                + " \"transformClasspath\": [\"/t.jar\"], \"transformClass\": \"a.B\" }");
+    assertThat(request.getId()).isEqualTo("7");
+    assertThat(request.getInJarsDir()).isEqualTo("/in dir");
+    assertThat(request.getOutJarsDir()).isEqualTo("/out\\dir");
+    assertThat(request.getConfigFile()).isEqualTo("/config file");
+    assertThat(request.getAndroidBootClasspath()).isEmpty();
+    assertThat(request.getTransformClasspath()).containsExactly("/t.jar");
+    assertThat(request.getTransformClass()).isEqualTo("a.B");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void fromJson_withoutTransformClass_shouldThrowException() throws Exception {
+    TransformRequest.fromJson("{\"inJarsDir\":\"/in\",\"outJarsDir\":\"/out\"}");
+  }
+
+  @Test
+  public void toResponse_shouldEscapeError() throws Exception {
+    assertThat(TransformRequest.toResponse("1", null)).isEqualTo("{\"id\":\"1\",\"exitCode\":0}");
+    assertThat(TransformRequest.toResponse("1", "a \"b\"\n"))
+        .isEqualTo("{\"id\":\"1\",\"exitCode\":1,\"error\":\"a \\\"b\\\"\\n\"}");
+  }
+
+  @Test
+  public void run_shouldRunEachRequestAndRespond() throws Exception {
+    String responses =
+        run(String.format(REQUEST, "1") + "\n\n" + String.format(REQUEST, "2") + "\n");
+
+    verify(runner, times(2)).runTransform();
+    assertThat(requests).hasSize(2);
+    assertThat(requests.get(0).getAndroidBootClasspath()).containsExactly("/a.jar", "/b.jar");
+    assertThat(responses)
+        .isEqualTo("{\"id\":\"1\",\"exitCode\":0}\n{\"id\":\"2\",\"exitCode\":0}\n");
+  }
+
+  @Test
+  public void run_whenTransformFails_shouldRespondWithErrorAndContinue() throws Exception {
+    doThrow(new IllegalStateException("boom")).doNothing().when(runner).runTransform();
+
+    String responses =
+        run(String.format(REQUEST, "1") + "\n" + String.format(REQUEST, "2") + "\n");
+
+    assertThat(responses.split("\n"))
+        .containsExactly(
+            "{\"id\":\"1\",\"exitCode\":1,\"error\":\"java.lang.IllegalStateException: boom\"}",
+            "{\"id\":\"2\",\"exitCode\":0}");
+  }
+
+  @Test
+  public void handle_withInvalidRequest_shouldRespondWithError() throws Exception {
+    assertThat(worker.handle("{\"id\":")).startsWith("{\"id\":\"\",\"exitCode\":1,");
+    verify(runner, times(0)).runTransform();
+  }
+
+  @Test
+  public void getClassLoader_shouldReuseClassLoaderPerClasspath() throws Exception {
+    File jar = File.createTempFile("transform", ".jar");
+    jar.deleteOnExit();
+    List<String> classpath = Collections.singletonList(jar.getAbsolutePath());
+
+    ClassLoader classLoader = worker.getClassLoader(classpath);
+    assertThat(classLoader).isNotEqualTo(TransformWorker.class.getClassLoader());
+    assertThat(worker.getClassLoader(Arrays.asList(jar.getAbsolutePath())))
+        .isSameAs(classLoader);
+    assertThat(worker.getClassLoader(Collections.emptyList()))
+        .isSameAs(TransformWorker.class.getClassLoader());
+  }
+
+  @Test(expected = IOException.class)
+  public void getClassLoader_withMissingJar_shouldThrowException() throws Exception {
+    worker.getClassLoader(Collections.singletonList("/does/not/exist.jar"));
+  }
+
+  private String run(String input) throws Exception {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    worker.run(
+        new BufferedReader(new StringReader(input)),
+        new PrintStream(out, true, StandardCharsets.UTF_8.name()));
+    return new String(out.toByteArray(), StandardCharsets.UTF_8).replace("\r\n", "\n");
+  }
+}